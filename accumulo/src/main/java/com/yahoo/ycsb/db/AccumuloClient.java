@@ -107,6 +107,18 @@ public class AccumuloClient extends DB {
 		CleanUp.shutdownNow();
 	}
 
+	@Override
+	public void flush() throws DBException
+	{
+		try {
+			if (_bw != null) {
+				_bw.flush();
+			}
+		} catch (MutationsRejectedException e) {
+			throw new DBException(e);
+		}
+	}
+
 	/**
 	 * Commonly repeated functionality: Before doing any operation, make sure
 	 * we're working on the correct table. If not, open the correct one.
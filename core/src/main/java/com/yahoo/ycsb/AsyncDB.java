@@ -0,0 +1,107 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.Vector;
+import java.util.concurrent.Executor;
+
+/**
+ * A layer for accessing a database whose client library can have several operations outstanding
+ * at once. Each method issues the operation and returns a DBFuture that the binding completes with
+ * the operation's return code; the result HashMap or Vector must not be touched by the caller until
+ * then.
+ *
+ * The blocking DB methods are implemented by waiting for the corresponding asynchronous call, so an
+ * AsyncDB can also be used wherever a DB is expected. Use the "inflight" property to let each client
+ * thread keep several operations outstanding. As with DB, there is one instance per client thread,
+ * but the binding may complete operations (and so run listeners) on its own threads.
+ */
+public abstract class AsyncDB extends DB
+{
+	/**
+	 * Issue a read of a record. See DB.read().
+	 */
+	public abstract DBFuture readAsync(String table, String key, Set<String> fields, HashMap<String,ByteIterator> result);
+
+	/**
+	 * Issue a range scan. See DB.scan().
+	 */
+	public abstract DBFuture scanAsync(String table, String startkey, int recordcount, Set<String> fields, Vector<HashMap<String,ByteIterator>> result);
+
+	/**
+	 * Issue an update of a record. See DB.update().
+	 */
+	public abstract DBFuture updateAsync(String table, String key, HashMap<String,ByteIterator> values);
+
+	/**
+	 * Issue an insert of a record. See DB.insert().
+	 */
+	public abstract DBFuture insertAsync(String table, String key, HashMap<String,ByteIterator> values);
+
+	/**
+	 * Issue a delete of a record. See DB.delete().
+	 */
+	public abstract DBFuture deleteAsync(String table, String key);
+
+	public int read(String table, String key, Set<String> fields, HashMap<String,ByteIterator> result)
+	{
+		return readAsync(table,key,fields,result).waitForResult();
+	}
+
+	public int scan(String table, String startkey, int recordcount, Set<String> fields, Vector<HashMap<String,ByteIterator>> result)
+	{
+		return scanAsync(table,startkey,recordcount,fields,result).waitForResult();
+	}
+
+	public int update(String table, String key, HashMap<String,ByteIterator> values)
+	{
+		return updateAsync(table,key,values).waitForResult();
+	}
+
+	public int insert(String table, String key, HashMap<String,ByteIterator> values)
+	{
+		return insertAsync(table,key,values).waitForResult();
+	}
+
+	public int delete(String table, String key)
+	{
+		return deleteAsync(table,key).waitForResult();
+	}
+
+	/**
+	 * Issue an insert of several records. See DB.batchInsert(). This implementation runs
+	 * batchInsert() to completion before it returns; bindings that can have several batches
+	 * outstanding should override it.
+	 */
+	public DBFuture batchInsertAsync(String table, List<String> keys, List<HashMap<String,ByteIterator>> values)
+	{
+		return DBFuture.completed(batchInsert(table,keys,values));
+	}
+
+	/**
+	 * Give batchInsertAsync() threads to run batches on, for a DB that cannot have several batches
+	 * outstanding by itself; null to run them on the calling thread again. This implementation
+	 * ignores it, as can bindings that override batchInsertAsync().
+	 */
+	public void setBatchExecutor(Executor executor)
+	{
+	}
+}
@@ -0,0 +1,170 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.Vector;
+import java.util.concurrent.Executor;
+
+/**
+ * Presents a blocking DB as an AsyncDB. Each operation runs to completion on the calling thread and
+ * returns an already completed DBFuture, so a binding without an asynchronous client library keeps
+ * working (with one operation in flight) when the client asks for more. The exception is batch
+ * inserts given an executor with setBatchExecutor(), which run on its threads.
+ */
+public class AsyncDBAdapter extends AsyncDB
+{
+	DB _db;
+	Executor _batchexecutor=null;
+
+	public AsyncDBAdapter(DB db)
+	{
+		_db=db;
+	}
+
+	public void setProperties(Properties p)
+	{
+		_db.setProperties(p);
+	}
+
+	public Properties getProperties()
+	{
+		return _db.getProperties();
+	}
+
+	public void init() throws DBException
+	{
+		_db.init();
+	}
+
+	public void cleanup() throws DBException
+	{
+		_db.cleanup();
+	}
+
+	public void flush() throws DBException
+	{
+		_db.flush();
+	}
+
+	public DBFuture readAsync(String table, String key, Set<String> fields, HashMap<String,ByteIterator> result)
+	{
+		return DBFuture.completed(_db.read(table,key,fields,result));
+	}
+
+	public DBFuture scanAsync(String table, String startkey, int recordcount, Set<String> fields, Vector<HashMap<String,ByteIterator>> result)
+	{
+		return DBFuture.completed(_db.scan(table,startkey,recordcount,fields,result));
+	}
+
+	public DBFuture updateAsync(String table, String key, HashMap<String,ByteIterator> values)
+	{
+		return DBFuture.completed(_db.update(table,key,values));
+	}
+
+	public DBFuture insertAsync(String table, String key, HashMap<String,ByteIterator> values)
+	{
+		return DBFuture.completed(_db.insert(table,key,values));
+	}
+
+	public DBFuture deleteAsync(String table, String key)
+	{
+		return DBFuture.completed(_db.delete(table,key));
+	}
+
+	public int read(String table, String key, Set<String> fields, HashMap<String,ByteIterator> result)
+	{
+		return _db.read(table,key,fields,result);
+	}
+
+	public int scan(String table, String startkey, int recordcount, Set<String> fields, Vector<HashMap<String,ByteIterator>> result)
+	{
+		return _db.scan(table,startkey,recordcount,fields,result);
+	}
+
+	public int update(String table, String key, HashMap<String,ByteIterator> values)
+	{
+		return _db.update(table,key,values);
+	}
+
+	public int insert(String table, String key, HashMap<String,ByteIterator> values)
+	{
+		return _db.insert(table,key,values);
+	}
+
+	public int delete(String table, String key)
+	{
+		return _db.delete(table,key);
+	}
+
+	public void setBatchExecutor(Executor executor)
+	{
+		_batchexecutor=executor;
+	}
+
+	public DBFuture batchInsertAsync(final String table, final List<String> keys, final List<HashMap<String,ByteIterator>> values)
+	{
+		if (_batchexecutor==null)
+		{
+			return DBFuture.completed(_db.batchInsert(table,keys,values));
+		}
+		final DBFuture f=new DBFuture();
+		_batchexecutor.execute(new Runnable()
+		{
+			public void run()
+			{
+				int result;
+				try
+				{
+					result=_db.batchInsert(table,keys,values);
+				}
+				catch (RuntimeException e)
+				{
+					//complete it anyway, or whoever waits for the batch would wait for ever
+					e.printStackTrace();
+					result=-1;
+				}
+				f.complete(result);
+			}
+		});
+		return f;
+	}
+
+	public int batchRead(String table, List<String> keys, Set<String> fields, Vector<HashMap<String,ByteIterator>> result)
+	{
+		return _db.batchRead(table,keys,fields,result);
+	}
+
+	public int batchUpdate(String table, List<String> keys, List<HashMap<String,ByteIterator>> values)
+	{
+		return _db.batchUpdate(table,keys,values);
+	}
+
+	public int batchInsert(String table, List<String> keys, List<HashMap<String,ByteIterator>> values)
+	{
+		return _db.batchInsert(table,keys,values);
+	}
+
+	public int batchDelete(String table, List<String> keys)
+	{
+		return _db.batchDelete(table,keys);
+	}
+}
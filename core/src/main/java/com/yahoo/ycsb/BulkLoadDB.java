@@ -0,0 +1,317 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+
+package com.yahoo.ycsb;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.Vector;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The DB a client hands to the workload in bulk-load mode. Inserts are buffered and written in
+ * batches through AsyncDB.batchInsertAsync(): a batch is issued when it is full, when the oldest
+ * record in it has waited for the flush interval (whether or not more records are inserted), when
+ * the table changes, or at cleanup() or flush(). A client may have a limited number of batches
+ * outstanding, and blocks while that many are.
+ *
+ * A binding that does not extend AsyncDB runs the client's batches on threads of the client's
+ * own, one for each batch that may be outstanding, so the client buffers the next batch while the
+ * last is written; with more than one, the binding's batchInsert() is called from several threads
+ * at once.
+ *
+ * Like PipelinedDB, inserts return zero once buffered; the return codes of the batches are counted
+ * by DBWrapper when they complete. Other operations issue the buffered batch first and then run
+ * to completion.
+ */
+class BulkLoadDB extends DB
+{
+	/**
+	 * How long the timer waits before it looks again at a batch that is due while no more batches
+	 * may be outstanding, in nanoseconds.
+	 */
+	static final long TIMER_RETRY_NS=1000000;
+
+	/**
+	 * Issues the batches that are due, for all the clients; it never blocks, so one thread serves
+	 * them all.
+	 */
+	static ScheduledExecutorService flushtimer=null;
+
+	AsyncDB _db;
+	int _flushsize;
+	long _flushintervalns;
+	int _flushes;
+	Semaphore _outstanding;
+	ExecutorService _executor;
+
+	/**
+	 * The batch being buffered, guarded by this, since the timer may issue it.
+	 */
+	String _table=null;
+	ArrayList<String> _keys;
+	ArrayList<HashMap<String,ByteIterator>> _values;
+	long _firstbufferedns;
+	boolean _timerset=false;
+
+	/**
+	 * Releases a batch's place when it completes.
+	 */
+	DBFuture.Listener _release=new DBFuture.Listener()
+	{
+		public void completed(int result)
+		{
+			_outstanding.release();
+		}
+	};
+
+	Runnable _timedflush=new Runnable()
+	{
+		public void run()
+		{
+			try
+			{
+				issueIfDue();
+			}
+			catch (RuntimeException e)
+			{
+				e.printStackTrace();
+			}
+		}
+	};
+
+	/**
+	 * @param db the DB to write the batches to
+	 * @param flushsize the number of records in a full batch
+	 * @param flushintervalms the longest a record is buffered, in milliseconds
+	 * @param flushes the number of batches that may be outstanding at once
+	 */
+	BulkLoadDB(AsyncDB db, int flushsize, long flushintervalms, int flushes)
+	{
+		_db=db;
+		_flushsize=flushsize;
+		_flushintervalns=flushintervalms*1000000L;
+		_flushes=Math.max(1,flushes);
+		_outstanding=new Semaphore(_flushes);
+		_executor=Executors.newFixedThreadPool(_flushes,new DaemonThreadFactory("bulk load"));
+		_keys=new ArrayList<String>(flushsize);
+		_values=new ArrayList<HashMap<String,ByteIterator>>(flushsize);
+	}
+
+	static class DaemonThreadFactory implements ThreadFactory
+	{
+		String _name;
+
+		DaemonThreadFactory(String name)
+		{
+			_name=name;
+		}
+
+		public Thread newThread(Runnable r)
+		{
+			Thread t=new Thread(r,_name);
+			t.setDaemon(true);
+			return t;
+		}
+	}
+
+	static synchronized ScheduledExecutorService timer()
+	{
+		if (flushtimer==null)
+		{
+			flushtimer=Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("bulk load timer"));
+		}
+		return flushtimer;
+	}
+
+	public void setProperties(Properties p)
+	{
+		_db.setProperties(p);
+	}
+
+	public Properties getProperties()
+	{
+		return _db.getProperties();
+	}
+
+	public void init() throws DBException
+	{
+		_db.init();
+		_db.setBatchExecutor(_executor);
+	}
+
+	public void cleanup() throws DBException
+	{
+		drain();
+		_db.setBatchExecutor(null);
+		_executor.shutdown();
+		_db.cleanup();
+	}
+
+	public void flush() throws DBException
+	{
+		drain();
+		_db.flush();
+	}
+
+	/**
+	 * Issue the buffered records, and wait for every outstanding batch.
+	 */
+	void drain()
+	{
+		issueBatch();
+		_outstanding.acquireUninterruptibly(_flushes);
+		_outstanding.release(_flushes);
+	}
+
+	/**
+	 * Issue the buffered records as one batch, if there are any.
+	 */
+	void issueBatch()
+	{
+		String table;
+		List<String> keys;
+		List<HashMap<String,ByteIterator>> values;
+		synchronized(this)
+		{
+			if (_keys.isEmpty())
+			{
+				return;
+			}
+			table=_table;
+			keys=_keys;
+			values=_values;
+			_keys=new ArrayList<String>(_flushsize);
+			_values=new ArrayList<HashMap<String,ByteIterator>>(_flushsize);
+		}
+		_outstanding.acquireUninterruptibly();
+		issue(table,keys,values);
+	}
+
+	/**
+	 * Issue the buffered records from the timer if the oldest has waited for the flush interval, or
+	 * look again when it will have. If no more batches may be outstanding, look again shortly rather
+	 * than hold up the timer.
+	 */
+	void issueIfDue()
+	{
+		String table;
+		List<String> keys;
+		List<HashMap<String,ByteIterator>> values;
+		synchronized(this)
+		{
+			if (_keys.isEmpty())
+			{
+				_timerset=false;
+				return;
+			}
+			long wait=_firstbufferedns+_flushintervalns-System.nanoTime();
+			if ((wait>0) || !_outstanding.tryAcquire())
+			{
+				timer().schedule(_timedflush,Math.max(wait,TIMER_RETRY_NS),TimeUnit.NANOSECONDS);
+				return;
+			}
+			_timerset=false;
+			table=_table;
+			keys=_keys;
+			values=_values;
+			_keys=new ArrayList<String>(_flushsize);
+			_values=new ArrayList<HashMap<String,ByteIterator>>(_flushsize);
+		}
+		issue(table,keys,values);
+	}
+
+	/**
+	 * Issue a batch that has taken a place among the outstanding ones.
+	 */
+	void issue(String table, List<String> keys, List<HashMap<String,ByteIterator>> values)
+	{
+		try
+		{
+			_db.batchInsertAsync(table,keys,values).addListener(_release);
+		}
+		catch (RuntimeException e)
+		{
+			//the batch was never issued, so nothing will release its place
+			_outstanding.release();
+			throw e;
+		}
+	}
+
+	public int insert(String table, String key, HashMap<String,ByteIterator> values)
+	{
+		if ((_table!=null) && !_table.equals(table))
+		{
+			issueBatch();
+		}
+		boolean full;
+		synchronized(this)
+		{
+			_table=table;
+			if (_keys.isEmpty())
+			{
+				_firstbufferedns=System.nanoTime();
+				if (!_timerset)
+				{
+					_timerset=true;
+					timer().schedule(_timedflush,_flushintervalns,TimeUnit.NANOSECONDS);
+				}
+			}
+			_keys.add(key);
+			_values.add(values);
+			full=(_keys.size()>=_flushsize);
+		}
+		if (full)
+		{
+			issueBatch();
+		}
+		return 0;
+	}
+
+	public int read(String table, String key, Set<String> fields, HashMap<String,ByteIterator> result)
+	{
+		issueBatch();
+		return _db.read(table,key,fields,result);
+	}
+
+	public int scan(String table, String startkey, int recordcount, Set<String> fields, Vector<HashMap<String,ByteIterator>> result)
+	{
+		issueBatch();
+		return _db.scan(table,startkey,recordcount,fields,result);
+	}
+
+	public int update(String table, String key, HashMap<String,ByteIterator> values)
+	{
+		issueBatch();
+		return _db.update(table,key,values);
+	}
+
+	public int delete(String table, String key)
+	{
+		issueBatch();
+		return _db.delete(table,key);
+	}
+}
@@ -18,20 +18,29 @@
 package com.yahoo.ycsb;
 
 
+import com.yahoo.ycsb.measurements.HistogramLogThread;
+import com.yahoo.ycsb.measurements.JvmMonitor;
 import com.yahoo.ycsb.measurements.Measurements;
+import com.yahoo.ycsb.measurements.MetricsServer;
+import com.yahoo.ycsb.measurements.OneMeasurementTimeSeries;
 import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
 import com.yahoo.ycsb.measurements.exporter.TextMeasurementsExporter;
 
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.text.DecimalFormat;
 import java.text.SimpleDateFormat;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.Enumeration;
+import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Properties;
 import java.util.Vector;
+import java.util.concurrent.locks.LockSupport;
 
 //import org.apache.log4j.BasicConfigurator;
 
@@ -46,17 +55,27 @@ class StatusThread extends Thread
 	Vector<Thread> _threads;
 	String _label;
 	boolean _standardstatus;
+	ThroughputSchedule _schedule;
+	JvmMonitor _monitor;
+	long _sleeptime;
 	
 	/**
-	 * The interval for reporting status.
+	 * The default interval for reporting status.
 	 */
 	public static final long sleeptime=10000;
 
-	public StatusThread(Vector<Thread> threads, String label, boolean standardstatus)
+	/**
+	 * @param monitor the monitor of the client's JVM, or null if it is not monitored
+	 * @param sleeptimems the interval for reporting status, in milliseconds
+	 */
+	public StatusThread(Vector<Thread> threads, String label, boolean standardstatus, ThroughputSchedule schedule, JvmMonitor monitor, long sleeptimems)
 	{
 		_threads=threads;
 		_label=label;
 		_standardstatus=standardstatus;
+		_schedule=schedule;
+		_monitor=monitor;
+		_sleeptime=sleeptimems;
 	}
 
 	/**
@@ -76,7 +95,7 @@ class StatusThread extends Thread
 		{
 			alldone=true;
 
-			int totalops=0;
+			long totalops=0;
 
 			//terminate this thread when all the worker threads are done
 			for (Thread t : _threads)
@@ -94,6 +113,11 @@ class StatusThread extends Thread
 
 			long interval=en-st;
 			//double throughput=1000.0*((double)totalops)/((double)interval);
+			String summary=Measurements.getMeasurements().getIntervalSummary(en-lasten);
+			if (_monitor!=null)
+			{
+				summary+=_monitor.getStatus();
+			}
 
 			double curthroughput=1000.0*(((double)(totalops-lasttotalops))/((double)(en-lasten)));
 			
@@ -102,30 +126,26 @@ class StatusThread extends Thread
 			
 			DecimalFormat d = new DecimalFormat("#.##");
 			String label = _label + format.format(new Date());
-			
-			if (totalops==0)
+			if (_schedule != null)
 			{
-				System.err.println(label+ " " +(interval/1000)+" sec: "+totalops+" operations; "+Measurements.getMeasurements().getSummary());
+				label = label + " target " + d.format(_schedule.getTarget(System.nanoTime())) + " ops/sec;";
 			}
-			else
+			
+			String elapsed=d.format(interval/1000.0)+" sec: "+totalops+" operations; ";
+			if (totalops!=0)
 			{
-				System.err.println(label+" " + (interval/1000)+" sec: "+totalops+" operations; "+d.format(curthroughput)+" current ops/sec; "+Measurements.getMeasurements().getSummary());
+				elapsed+=d.format(curthroughput)+" current ops/sec; ";
 			}
+			System.err.println(label+" "+elapsed+summary);
 
 			if (_standardstatus)
 			{
-			if (totalops==0)
-			{
-				System.out.println(label+" "+(interval/1000)+" sec: "+totalops+" operations; "+Measurements.getMeasurements().getSummary());
-			}
-			else
-			{
-				System.out.println(label+" "+(interval/1000)+" sec: "+totalops+" operations; "+d.format(curthroughput)+" current ops/sec; "+Measurements.getMeasurements().getSummary());			}
+				System.out.println(label+" "+elapsed+summary);
 			}
 
 			try
 			{
-				sleep(sleeptime);
+				sleep(_sleeptime);
 			}
 			catch (InterruptedException e)
 			{
@@ -138,168 +158,105 @@ class StatusThread extends Thread
 }
 
 /**
- * A thread for executing transactions or data inserts to the database.
+ * A thread for executing transactions or data inserts to the database. Each thread runs one or
+ * more simulated clients (ClientTasks), always doing the operation of whichever client is due
+ * soonest, so that many clients can be multiplexed over a few threads.
  * 
  * @author cooperb
  *
  */
 class ClientThread extends Thread
 {
-	DB _db;
-	boolean _dotransactions;
 	Workload _workload;
-	int _opcount;
-	double _target;
+	Vector<ClientTask> _tasks;
+
+	/**
+	 * The monitor of the client's JVM, or null if it is not monitored.
+	 */
+	JvmMonitor _monitor;
 
-	int _opsdone;
-	int _threadid;
-	int _threadcount;
-	Object _workloadstate;
-	Properties _props;
+	/**
+	 * The longest the thread parks at a time while waiting for a client's next operation, so it
+	 * notices a stop within 100 ms.
+	 */
+	static final long MAX_PARK_NS=100000000;
 
+	/**
+	 * Orders clients by the intended start time of their next operation.
+	 */
+	static final Comparator<ClientTask> DUE_FIRST=new Comparator<ClientTask>()
+	{
+		public int compare(ClientTask a, ClientTask b)
+		{
+			long diff=a.getNextIntendedStartTimeNs()-b.getNextIntendedStartTimeNs();
+			return (diff<0) ? -1 : ((diff>0) ? 1 : 0);
+		}
+	};
 
 	/**
 	 * Constructor.
-	 * 
-	 * @param db the DB implementation to use
-	 * @param dotransactions true to do transactions, false to insert data
+	 *
 	 * @param workload the workload to use
-	 * @param threadid the id of this thread 
-	 * @param threadcount the total number of threads 
-	 * @param props the properties defining the experiment
-	 * @param opcount the number of operations (transactions or inserts) to do
-	 * @param targetperthreadperms target number of operations per thread per ms
+	 * @param tasks the clients to run on this thread
 	 */
-	public ClientThread(DB db, boolean dotransactions, Workload workload, int threadid, int threadcount, Properties props, int opcount, double targetperthreadperms)
+	public ClientThread(Workload workload, Vector<ClientTask> tasks)
 	{
-		//TODO: consider removing threadcount and threadid
-		_db=db;
-		_dotransactions=dotransactions;
 		_workload=workload;
-		_opcount=opcount;
-		_opsdone=0;
-		_target=targetperthreadperms;
-		_threadid=threadid;
-		_threadcount=threadcount;
-		_props=props;
-		//System.out.println("Interval = "+interval);
+		_tasks=tasks;
 	}
 
-	public int getOpsDone()
+	public long getOpsDone()
 	{
-		return _opsdone;
+		long opsdone=0;
+		for (ClientTask task : _tasks)
+		{
+			opsdone+=task._opsdone;
+		}
+		return opsdone;
 	}
 
-	public void run()
+	/**
+	 * Wait until the deadline, or until the workload is asked to stop. Nothing wakes the thread when
+	 * a stop is requested, so it parks for at most MAX_PARK_NS at a time and checks.
+	 */
+	void sleepUntil(long deadline)
 	{
-		try
-		{
-			_db.init();
-		}
-		catch (DBException e)
+		long now;
+		while (((now=System.nanoTime())<deadline) && !_workload.isStopRequested())
 		{
-			e.printStackTrace();
-			e.printStackTrace(System.out);
-			return;
+			LockSupport.parkNanos(Math.min(deadline-now,MAX_PARK_NS));
 		}
+	}
 
-		try
-		{
-			_workloadstate=_workload.initThread(_props,_threadid,_threadcount);
-		}
-		catch (WorkloadException e)
-		{
-			e.printStackTrace();
-			e.printStackTrace(System.out);
-			return;
-		}
+	public void run()
+	{
+		Vector<ClientTask> initialized=new Vector<ClientTask>();
+		PriorityQueue<ClientTask> due=new PriorityQueue<ClientTask>(Math.max(1,_tasks.size()),DUE_FIRST);
 
-		//spread the thread operations out so they don't all hit the DB at the same time
-		try
-		{
-		   //GH issue 4 - throws exception if _target>1 because random.nextInt argument must be >0
-		   //and the sleep() doesn't make sense for granularities < 1 ms anyway
-		   if ( (_target>0) && (_target<=1.0) ) 
-		   {
-		      sleep(Utils.random().nextInt((int)(1.0/_target)));
-		   }
-		}
-		catch (InterruptedException e)
+		for (ClientTask task : _tasks)
 		{
-		  // do nothing.
+			if (task.init())
+			{
+				initialized.add(task);
+				due.add(task);
+			}
 		}
-		
+
 		try
 		{
-			if (_dotransactions)
+			while (!due.isEmpty())
 			{
-				long st=System.currentTimeMillis();
-
-				while (((_opcount == 0) || (_opsdone < _opcount)) && !_workload.isStopRequested())
+				ClientTask task=due.poll();
+				if (task.isDone())
 				{
-
-					if (!_workload.doTransaction(_db,_workloadstate))
-					{
-						break;
-					}
-
-					_opsdone++;
-
-					//throttle the operations
-					if (_target>0)
-					{
-						//this is more accurate than other throttling approaches we have tried,
-						//like sleeping for (1/target throughput)-operation latency,
-						//because it smooths timing inaccuracies (from sleep() taking an int, 
-						//current time in millis) over many operations
-						while (System.currentTimeMillis()-st<((double)_opsdone)/_target)
-						{
-							try
-							{
-								sleep(1);
-							}
-							catch (InterruptedException e)
-							{
-							  // do nothing.
-							}
-
-						}
-					}
+					continue;
 				}
-			}
-			else
-			{
-				long st=System.currentTimeMillis();
 
-				while (((_opcount == 0) || (_opsdone < _opcount)) && !_workload.isStopRequested())
-				{
+				sleepUntil(task.getNextIntendedStartTimeNs());
 
-					if (!_workload.doInsert(_db,_workloadstate))
-					{
-						break;
-					}
-
-					_opsdone++;
-
-					//throttle the operations
-					if (_target>0)
-					{
-						//this is more accurate than other throttling approaches we have tried,
-						//like sleeping for (1/target throughput)-operation latency,
-						//because it smooths timing inaccuracies (from sleep() taking an int, 
-						//current time in millis) over many operations
-						while (System.currentTimeMillis()-st<((double)_opsdone)/_target)
-						{
-							try 
-							{
-								sleep(1);
-							}
-							catch (InterruptedException e)
-							{
-							  // do nothing.
-							}
-						}
-					}
+				if (task.doOperation())
+				{
+					due.add(task);
 				}
 			}
 		}
@@ -310,15 +267,14 @@ class ClientThread extends Thread
 			System.exit(0);
 		}
 
-		try
+		for (ClientTask task : initialized)
 		{
-			_db.cleanup();
+			task.cleanup();
 		}
-		catch (DBException e)
+
+		if (_monitor!=null)
 		{
-			e.printStackTrace();
-			e.printStackTrace(System.out);
-			return;
+			_monitor.threadFinished(this);
 		}
 	}
 }
@@ -347,6 +303,89 @@ public class Client
    */
   public static final String MAX_EXECUTION_TIME = "maxexecutiontime";
 
+	/**
+	 * How the intended start times of operations are spaced when a target throughput is set:
+	 * "constant" for evenly spaced operations, or "poisson" for exponentially distributed gaps
+	 * with the same mean.
+	 */
+	public static final String ARRIVAL_PROCESS_PROPERTY="arrivalprocess";
+
+	public static final String ARRIVAL_PROCESS_PROPERTY_DEFAULT="constant";
+
+	/**
+	 * The maximum number of operations each client keeps outstanding. With the default of 1, each
+	 * operation completes before the next one is issued; larger windows only overlap operations for
+	 * bindings that extend AsyncDB.
+	 *
+	 * With a larger window the workload's DB calls return as soon as the operation is issued, always
+	 * with zero, and return codes are only counted once the operations complete. A workload that acts
+	 * on a result has to issue the operation through PipelinedDB's asynchronous calls and act when it
+	 * completes: CoreWorkload lets other operations choose a key again when its delete fails, and
+	 * stops a client's load at the insert after one that failed, rather than at the failed one.
+	 */
+	public static final String IN_FLIGHT_PROPERTY="inflight";
+
+	public static final String IN_FLIGHT_PROPERTY_DEFAULT="1";
+
+	/**
+	 * The number of records each client buffers in the load phase before inserting them with one
+	 * batch insert (default: 0, insert each record as it is generated). Batches are measured as
+	 * BATCH-INSERT operations, with their throughput in records and MB; bindings that do not
+	 * implement DB.batchInsert() insert the records of a batch one at a time.
+	 */
+	public static final String BULK_LOAD_FLUSH_SIZE_PROPERTY="bulkload.flushsize";
+
+	public static final String BULK_LOAD_FLUSH_SIZE_PROPERTY_DEFAULT="0";
+
+	/**
+	 * In bulk-load mode, the longest a record is buffered before its batch is inserted, even if the
+	 * batch is not full and no more records are inserted, in milliseconds (default: 1000).
+	 */
+	public static final String BULK_LOAD_FLUSH_INTERVAL_PROPERTY="bulkload.flushinterval";
+
+	public static final String BULK_LOAD_FLUSH_INTERVAL_PROPERTY_DEFAULT="1000";
+
+	/**
+	 * In bulk-load mode, the number of batches each client may have outstanding at once (default: 1).
+	 * For a binding that does not extend AsyncDB, each client runs its batches on that many threads
+	 * of its own, so with more than one the binding's batchInsert() must allow concurrent calls.
+	 * Bindings that extend AsyncDB overlap batches if they override AsyncDB.batchInsertAsync().
+	 */
+	public static final String BULK_LOAD_FLUSHES_PROPERTY="bulkload.flushes";
+
+	public static final String BULK_LOAD_FLUSHES_PROPERTY_DEFAULT="1";
+
+	/**
+	 * The number of simulated clients (default: threadcount). Each client has its own DB instance and
+	 * workload state and an equal share of the operations and target throughput, but clients do not
+	 * get a thread each: they are dealt out to the "threadcount" threads, each of which runs whichever
+	 * of its clients is due next.
+	 *
+	 * More clients than threads needs a binding that extends AsyncDB. A blocking binding, which is
+	 * every binding shipped so far, holds its thread for each call, so no more than "threadcount"
+	 * operations would be in flight however many clients there were, and the intended latencies
+	 * would include queueing the client itself caused; the client refuses to run that way.
+	 */
+	public static final String CLIENT_COUNT_PROPERTY="clientcount";
+
+	/**
+	 * The length of the warm-up phase, in seconds (default: 0, no warm-up). Operations done during
+	 * the warm-up are measured separately, reported under names prefixed with "WARMUP-", and left out
+	 * of the overall runtime and throughput.
+	 */
+	public static final String WARMUP_TIME_PROPERTY="warmuptime";
+
+	/**
+	 * The number of operations in the warm-up phase (default: 0, no limit). If both this and
+	 * "warmuptime" are set, the warm-up ends when the first of them is reached.
+	 */
+	public static final String WARMUP_OPS_PROPERTY="warmupops";
+
+	/**
+	 * How often to show status with -s, in seconds (default: 10). Fractions of a second are allowed.
+	 */
+	public static final String STATUS_INTERVAL_PROPERTY="status.interval";
+
 	public static void usageMessage()
 	{
 		System.out.println("Usage: java com.yahoo.ycsb.Client [options]");
@@ -366,6 +405,9 @@ public class Client
 		System.out.println("                  values in the propertyfile");
 		System.out.println("  -s:  show status during run (default: no status)");
 		System.out.println("  -l label:  use label for status (e.g. to label one experiment out of a whole batch)");
+		System.out.println("  -plan planfile:  run the phases listed in planfile one after the other, reusing the");
+		System.out.println("                   DB instances; each line is a phase name followed by -load or -t and");
+		System.out.println("                   the phase's -P, -p, -threads and -target options");
 		System.out.println("");
 		System.out.println("Required properties:");
 		System.out.println("  "+WORKLOAD_PROPERTY+": the name of the workload class to use (e.g. com.yahoo.ycsb.workloads.CoreWorkload)");
@@ -386,47 +428,98 @@ public class Client
 		return true;
 	}
 
+	/**
+	 * Create the exporter named by the "exporter" property, writing to the "exportfile" or to stdout.
+	 */
+	static MeasurementsExporter newExporter(Properties props) throws IOException
+	{
+		// if no destination file is provided the results will be written to stdout
+		OutputStream out;
+		String exportFile = props.getProperty("exportfile");
+		if (exportFile == null)
+		{
+			// later phases of a run plan still need stdout, so closing the exporter must not close it
+			out = new FilterOutputStream(System.out)
+			{
+				public void close() throws IOException
+				{
+					flush();
+				}
+			};
+		} else
+		{
+			out = new FileOutputStream(exportFile);
+		}
+
+		// if no exporter is provided the default text one will be used
+		MeasurementsExporter exporter;
+		String exporterStr = props.getProperty("exporter", "com.yahoo.ycsb.measurements.exporter.TextMeasurementsExporter");
+		try
+		{
+			exporter = (MeasurementsExporter) Class.forName(exporterStr).getConstructor(OutputStream.class).newInstance(out);
+		} catch (Exception e)
+		{
+			System.err.println("Could not find exporter " + exporterStr
+					+ ", will use default text reporter.");
+			e.printStackTrace();
+			exporter = new TextMeasurementsExporter(out);
+		}
+		return exporter;
+	}
 
 	/**
 	 * Exports the measurements to either sysout or a file using the exporter
 	 * loaded from conf.
 	 * @throws IOException Either failed to write to output stream or failed to close it.
 	 */
-	private static void exportMeasurements(Properties props, int opcount, long runtime)
+	private static void exportMeasurements(Properties props, long opcount, long runtime, long warmupopcount, long warmupruntime, ThroughputSchedule schedule, JvmMonitor monitor)
 			throws IOException
 	{
 		MeasurementsExporter exporter = null;
 		try
 		{
-			// if no destination file is provided the results will be written to stdout
-			OutputStream out;
-			String exportFile = props.getProperty("exportfile");
-			if (exportFile == null)
-			{
-				out = System.out;
-			} else
+			exporter = newExporter(props);
+
+			exporter.write("OVERALL", "RunTime(ms)", runtime);
+			double throughput = 1000.0 * ((double) opcount) / ((double) runtime);
+			exporter.write("OVERALL", "Throughput(ops/sec)", throughput);
+
+			if (warmupruntime > 0)
 			{
-				out = new FileOutputStream(exportFile);
+				exporter.write("WARMUP", "RunTime(ms)", warmupruntime);
+				exporter.write("WARMUP", "Operations", warmupopcount);
+				exporter.write("WARMUP", "Throughput(ops/sec)", 1000.0 * ((double) warmupopcount) / ((double) warmupruntime));
 			}
 
-			// if no exporter is provided the default text one will be used
-			String exporterStr = props.getProperty("exporter", "com.yahoo.ycsb.measurements.exporter.TextMeasurementsExporter");
-			try
-			{
-				exporter = (MeasurementsExporter) Class.forName(exporterStr).getConstructor(OutputStream.class).newInstance(out);
-			} catch (Exception e)
+			if (schedule != null)
 			{
-				System.err.println("Could not find exporter " + exporterStr
-						+ ", will use default text reporter.");
-				e.printStackTrace();
-				exporter = new TextMeasurementsExporter(out);
+				// tag each time series interval with the target in force at its start
+				int granularity = Integer.parseInt(props.getProperty(OneMeasurementTimeSeries.GRANULARITY, OneMeasurementTimeSeries.GRANULARITY_DEFAULT));
+				for (long ms = 0; ms < warmupruntime + runtime; ms += granularity)
+				{
+					exporter.write("TARGET", Long.toString(ms), schedule.getTargetAfterStart(ms * 1000000L));
+				}
 			}
 
-			exporter.write("OVERALL", "RunTime(ms)", runtime);
-			double throughput = 1000.0 * ((double) opcount) / ((double) runtime);
-			exporter.write("OVERALL", "Throughput(ops/sec)", throughput);
+			if (monitor != null)
+			{
+				monitor.exportMeasurements(exporter);
+			}
 
 			Measurements.getMeasurements().exportMeasurements(exporter);
+
+			// batch operations cover several keys each
+			for (Map.Entry<String, long[]> entry : Measurements.getMeasurements().getBatchTotals().entrySet())
+			{
+				long[] totals = entry.getValue();
+				exporter.write(entry.getKey(), "Keys", totals[0]);
+				exporter.write(entry.getKey(), "Throughput(keys/sec)", 1000.0 * ((double) totals[0]) / ((double) runtime));
+				if (totals[1] > 0)
+				{
+					exporter.write(entry.getKey(), "Bytes", totals[1]);
+					exporter.write(entry.getKey(), "Throughput(MB/sec)", 1000.0 * ((double) totals[1]) / (1024.0 * 1024.0) / ((double) runtime));
+				}
+			}
 		} finally
 		{
 			if (exporter != null)
@@ -439,14 +532,12 @@ public class Client
 	@SuppressWarnings("unchecked")
 	public static void main(String[] args)
 	{
-		String dbname;
 		Properties props=new Properties();
 		Properties fileprops=new Properties();
 		boolean dotransactions=true;
-		int threadcount=1;
-		int target=0;
 		boolean status=false;
 		String label="";
+		String planfile=null;
 
 		//parse arguments
 		int argindex=0;
@@ -520,6 +611,17 @@ public class Client
 				label=args[argindex];
 				argindex++;
 			}
+			else if (args[argindex].compareTo("-plan")==0)
+			{
+				argindex++;
+				if (argindex>=args.length)
+				{
+					usageMessage();
+					System.exit(0);
+				}
+				planfile=args[argindex];
+				argindex++;
+			}
 			else if (args[argindex].compareTo("-P")==0)
 			{
 				argindex++;
@@ -606,33 +708,148 @@ public class Client
 
 		props=fileprops;
 
-		if (!checkRequiredProperties(props))
+		if ((planfile==null) && !checkRequiredProperties(props))
 		{
 			System.exit(0);
 		}
-		
+
+		System.out.println("YCSB Client 0.1");
+		System.out.print("Command line:");
+		for (int i=0; i<args.length; i++)
+		{
+			System.out.print(" "+args[i]);
+		}
+		System.out.println();
+		DBPool dbpool=new DBPool();
+
+		//the metrics server runs for all the phases
+		MetricsServer metricsserver=null;
+		try
+		{
+			metricsserver=MetricsServer.start(props);
+		}
+		catch (IOException e)
+		{
+			System.out.println("Could not start the metrics server: "+e.getMessage());
+			System.exit(0);
+		}
+		catch (IllegalArgumentException e)
+		{
+			System.out.println(e.getMessage());
+			System.exit(0);
+		}
+
+		if (planfile==null)
+		{
+			runPhase(props,dotransactions,status,label,dbpool,null,true);
+		}
+		else
+		{
+			RunPlan plan=null;
+			try
+			{
+				plan=RunPlan.load(planfile,props);
+			}
+			catch (IOException e)
+			{
+				System.out.println(e.getMessage());
+				System.exit(0);
+			}
+
+			for (RunPlan.Phase phase : plan._phases)
+			{
+				if (!checkRequiredProperties(phase._props))
+				{
+					System.exit(0);
+				}
+			}
+
+			for (int i=0; i<plan._phases.size(); i++)
+			{
+				RunPlan.Phase phase=plan._phases.get(i);
+				System.err.println("Starting phase "+phase._name+" ("+(i+1)+" of "+plan._phases.size()+").");
+				runPhase(phase._props,phase._dotransactions,status,label+phase._name+" ",dbpool,phase._name,i==plan._phases.size()-1);
+			}
+		}
+
+		dbpool.close();
+
+		if (metricsserver!=null)
+		{
+			metricsserver.stop();
+		}
+
+		System.exit(0);
+	}
+
+	/**
+	 * Run one phase: load the workload, run its clients to completion, and export the measurements.
+	 * If the phase asks for a search for the maximum sustainable throughput, run that instead.
+	 *
+	 * @param props the properties of the phase
+	 * @param dotransactions true to run the transaction phase of the workload, false to load
+	 * @param status true to show status during the phase
+	 * @param label the label for status lines
+	 * @param dbpool where to get the clients' DBs
+	 * @param phasename the name of the phase in a run plan, or null
+	 * @param last true if no phase follows this one, so the clients may clean up their DBs when they finish
+	 */
+	static void runPhase(Properties props, boolean dotransactions, boolean status, String label, DBPool dbpool, String phasename, boolean last)
+	{
+		if (ThroughputSearch.isEnabled(props))
+		{
+			//each window of the search runs the clients again on the same DBs, so they are left for the
+			//pool to clean up when it is closed
+			new ThroughputSearch(props,dotransactions,status,label,dbpool).run();
+			return;
+		}
+		if (last)
+		{
+			dbpool.lastPhase();
+		}
+		runClients(props,dotransactions,status,label,dbpool,phasename,true);
+	}
+
+	/**
+	 * Load the workload and run its clients to completion. The measurements are left in Measurements
+	 * for the caller to look at until the next phase starts.
+	 *
+	 * @param export true to export the measurements
+	 * @return the steady-state throughput, in operations per second
+	 */
+	static double runClients(Properties props, boolean dotransactions, boolean status, String label, DBPool dbpool, String phasename, boolean export)
+	{
 		long maxExecutionTime = Integer.parseInt(props.getProperty(MAX_EXECUTION_TIME, "0"));
 
-		//get number of threads, target and db
-		threadcount=Integer.parseInt(props.getProperty("threadcount","1"));
-		dbname=props.getProperty("db","com.yahoo.ycsb.BasicDB");
-		target=Integer.parseInt(props.getProperty("target","0"));
+		//get number of threads, clients, target and db
+		int threadcount=Integer.parseInt(props.getProperty("threadcount","1"));
+		int clientcount=Integer.parseInt(props.getProperty(CLIENT_COUNT_PROPERTY,threadcount+""));
+		if (clientcount<threadcount)
+		{
+			threadcount=clientcount;
+		}
+		String dbname=props.getProperty("db","com.yahoo.ycsb.BasicDB");
+		int target=Integer.parseInt(props.getProperty("target","0"));
 		
 		//compute the target throughput
-		double targetperthreadperms=-1;
+		double targetperclientperms=-1;
 		if (target>0)
 		{
-			double targetperthread=((double)target)/((double)threadcount);
-			targetperthreadperms=targetperthread/1000.0;
+			double targetperclient=((double)target)/((double)clientcount);
+			targetperclientperms=targetperclient/1000.0;
 		}	 
 
-		System.out.println("YCSB Client 0.1");
-		System.out.print("Command line:");
-		for (int i=0; i<args.length; i++)
+		ThroughputSchedule schedule=null;
+		try
 		{
-			System.out.print(" "+args[i]);
+			schedule=ThroughputSchedule.create(props);
 		}
-		System.out.println();
+		catch (WorkloadException e)
+		{
+			System.out.println(e.getMessage());
+			System.exit(0);
+		}
+
 		System.err.println("Loading workload...");
 		
 		//show a warning message that creating the workload is taking a while
@@ -657,7 +874,15 @@ public class Client
 		warningthread.start();
 		
 		//set up measurements
-		Measurements.setProperties(props);
+		try
+		{
+			Measurements.setProperties(props);
+		}
+		catch (IllegalArgumentException e)
+		{
+			System.out.println(e.getMessage());
+			System.exit(0);
+		}
 		
 		//load the workload
 		ClassLoader classLoader = Client.class.getClassLoader();
@@ -694,31 +919,36 @@ public class Client
 
 		System.err.println("Starting test.");
 
-		int opcount;
+		long opcount;
 		if (dotransactions)
 		{
-			opcount=Integer.parseInt(props.getProperty(OPERATION_COUNT_PROPERTY,"0"));
+			opcount=Long.parseLong(props.getProperty(OPERATION_COUNT_PROPERTY,"0"));
 		}
 		else
 		{
 			if (props.containsKey(INSERT_COUNT_PROPERTY))
 			{
-				opcount=Integer.parseInt(props.getProperty(INSERT_COUNT_PROPERTY,"0"));
+				opcount=Long.parseLong(props.getProperty(INSERT_COUNT_PROPERTY,"0"));
 			}
 			else
 			{
-				opcount=Integer.parseInt(props.getProperty(RECORD_COUNT_PROPERTY,"0"));
+				opcount=Long.parseLong(props.getProperty(RECORD_COUNT_PROPERTY,"0"));
 			}
 		}
 
-		Vector<Thread> threads=new Vector<Thread>();
-
+		//deal the clients out to the threads
+		Vector<Vector<ClientTask>> threadtasks=new Vector<Vector<ClientTask>>();
 		for (int threadid=0; threadid<threadcount; threadid++)
+		{
+			threadtasks.add(new Vector<ClientTask>());
+		}
+
+		for (int clientid=0; clientid<clientcount; clientid++)
 		{
 			DB db=null;
 			try
 			{
-				db=DBFactory.newDB(dbname,props);
+				db=dbpool.get(clientid,dbname,props);
 			}
 			catch (UnknownDBException e)
 			{
@@ -726,12 +956,37 @@ public class Client
 				System.exit(0);
 			}
 
-			Thread t=new ClientThread(db,dotransactions,workload,threadid,threadcount,props,opcount/threadcount,targetperthreadperms);
+			threadtasks.get(clientid%threadcount).add(new ClientTask(db,dotransactions,workload,clientid,clientcount,props,opcount/clientcount,targetperclientperms,schedule));
+		}
+
+		if (clientcount>threadcount)
+		{
+			//the clients would wait on each other's calls, and the latencies would count the wait
+			if (!dbpool.isAsync())
+			{
+				System.out.println(dbname+" is not an AsyncDB, so its calls block their thread: "+CLIENT_COUNT_PROPERTY+" ("+clientcount+
+						") must not be more than threadcount ("+threadcount+")");
+				System.exit(0);
+			}
+			System.err.println("Running "+clientcount+" clients on "+threadcount+" threads.");
+		}
+
+		Vector<Thread> threads=new Vector<Thread>();
+
+		for (Vector<ClientTask> tasks : threadtasks)
+		{
+			Thread t=new ClientThread(workload,tasks);
 
 			threads.add(t);
 			//t.start();
 		}
 
+		JvmMonitor monitor=JvmMonitor.start(props,threads);
+		for (Thread t : threads)
+		{
+			((ClientThread)t)._monitor=monitor;
+		}
+
 		StatusThread statusthread=null;
 
 		if (status)
@@ -741,12 +996,37 @@ public class Client
 			{
 				standardstatus=true;
 			}	
-			statusthread=new StatusThread(threads,label,standardstatus);
+			long statusinterval=(long)(1000*Double.parseDouble(props.getProperty(STATUS_INTERVAL_PROPERTY,(StatusThread.sleeptime/1000)+"")));
+			statusthread=new StatusThread(threads,label,standardstatus,schedule,monitor,statusinterval);
 			statusthread.start();
 		}
 
+		//the trial runs of a throughput search are not logged
+		HistogramLogThread logthread=null;
+		if (export)
+		{
+			try
+			{
+				logthread=HistogramLogThread.start(props);
+			}
+			catch (IOException e)
+			{
+				System.out.println("Could not open the histogram log: "+e.getMessage());
+				System.exit(0);
+			}
+		}
+
 		long st=System.currentTimeMillis();
 
+		if (schedule!=null)
+		{
+			schedule.start();
+		}
+
+		Measurements.getMeasurements().startWarmup(
+				Long.parseLong(props.getProperty(WARMUP_TIME_PROPERTY,"0"))*1000,
+				Long.parseLong(props.getProperty(WARMUP_OPS_PROPERTY,"0")));
+
 		for (Thread t : threads)
 		{
 			t.start();
@@ -759,7 +1039,7 @@ public class Client
       terminator.start();
     }
     
-    int opsDone = 0;
+    long opsDone = 0;
 
 		for (Thread t : threads)
 		{
@@ -784,6 +1064,16 @@ public class Client
 			statusthread.interrupt();
 		}
 
+		if (logthread!=null)
+		{
+			logthread.finish();
+		}
+
+		if (monitor!=null)
+		{
+			monitor.finish();
+		}
+
 		try
 		{
 			workload.cleanup();
@@ -795,16 +1085,34 @@ public class Client
 			System.exit(0);
 		}
 
+		Measurements measurements=Measurements.getMeasurements();
+		if (measurements.isWarmingUp())
+		{
+			System.err.println("WARNING: the run ended before the warm-up did; all operations were measured as warm-up.");
+			measurements.endWarmup();
+		}
+		long warmupms=measurements.getWarmupTimeMs();
+		long warmupops=measurements.getWarmupOperations();
+
+		if (!export)
+		{
+			return 1000.0*((double)(opsDone-warmupops))/((double)(en-st-warmupms));
+		}
+
+		if ((phasename!=null) && (props.getProperty("exportfile")==null))
+		{
+			System.out.println("Phase "+phasename+":");
+		}
+
 		try
 		{
-			exportMeasurements(props, opsDone, en - st);
+			exportMeasurements(props, opsDone - warmupops, en - st - warmupms, warmupops, warmupms, schedule, monitor);
 		} catch (IOException e)
 		{
 			System.err.println("Could not export measurements, error: " + e.getMessage());
 			e.printStackTrace();
 			System.exit(-1);
 		}
-
-		System.exit(0);
+		return 1000.0*((double)(opsDone-warmupops))/((double)(en-st-warmupms));
 	}
 }
@@ -0,0 +1,309 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import java.util.Properties;
+
+import com.yahoo.ycsb.measurements.Measurements;
+
+/**
+ * One simulated client: its own DB instance, its workload state, and the schedule of its operations.
+ * A ClientTask has no thread of its own; a ClientThread runs one or more of them, one operation at a
+ * time, so a large number of clients can share a small number of threads.
+ */
+class ClientTask
+{
+	DB _db;
+	boolean _dotransactions;
+	Workload _workload;
+	long _opcount;
+	double _target;
+
+	/**
+	 * Written only by the thread running this client, and read by the status thread; each client
+	 * counting its own operations keeps the threads from contending for a shared counter.
+	 */
+	volatile long _opsdone;
+	int _clientid;
+	int _clientcount;
+	Object _workloadstate;
+	Properties _props;
+
+	/**
+	 * Mean time between the intended start times of two operations, in nanoseconds.
+	 */
+	double _targettickns;
+	boolean _poissonarrivals;
+	long _nextintendedns;
+
+	/**
+	 * The schedule of the client's total target throughput, or null if the target is fixed.
+	 */
+	ThroughputSchedule _schedule;
+
+	/**
+	 * How far ahead a client looks at a time-varying target in one step when working out its next
+	 * intended start time: a fraction of the gap between operations at the target it sees, so an
+	 * operation takes a few steps however low the rate, but no less than SCHEDULE_STEP_NS.
+	 */
+	static final int SCHEDULE_STEPS_PER_OP=16;
+	static final long SCHEDULE_STEP_NS=1000000;
+	Measurements _measurements;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param db the DB implementation to use
+	 * @param dotransactions true to do transactions, false to insert data
+	 * @param workload the workload to use
+	 * @param clientid the id of this client
+	 * @param clientcount the total number of clients
+	 * @param props the properties defining the experiment
+	 * @param opcount the number of operations (transactions or inserts) to do
+	 * @param targetperclientperms target number of operations per client per ms
+	 * @param schedule the schedule of the total target throughput, or null to use targetperclientperms
+	 */
+	ClientTask(DB db, boolean dotransactions, Workload workload, int clientid, int clientcount, Properties props, long opcount, double targetperclientperms, ThroughputSchedule schedule)
+	{
+		_db=db;
+		int inflight=Integer.parseInt(props.getProperty(Client.IN_FLIGHT_PROPERTY,Client.IN_FLIGHT_PROPERTY_DEFAULT));
+		int flushsize=Integer.parseInt(props.getProperty(Client.BULK_LOAD_FLUSH_SIZE_PROPERTY,Client.BULK_LOAD_FLUSH_SIZE_PROPERTY_DEFAULT));
+		if (!dotransactions && (flushsize>1))
+		{
+			AsyncDB asyncdb=(db instanceof AsyncDB) ? (AsyncDB)db : new AsyncDBAdapter(db);
+			long flushintervalms=Long.parseLong(props.getProperty(Client.BULK_LOAD_FLUSH_INTERVAL_PROPERTY,Client.BULK_LOAD_FLUSH_INTERVAL_PROPERTY_DEFAULT));
+			int flushes=Integer.parseInt(props.getProperty(Client.BULK_LOAD_FLUSHES_PROPERTY,Client.BULK_LOAD_FLUSHES_PROPERTY_DEFAULT));
+			_db=new BulkLoadDB(asyncdb,flushsize,flushintervalms,flushes);
+		}
+		else if (inflight>1)
+		{
+			AsyncDB asyncdb=(db instanceof AsyncDB) ? (AsyncDB)db : new AsyncDBAdapter(db);
+			_db=new PipelinedDB(asyncdb,inflight);
+		}
+		_dotransactions=dotransactions;
+		_workload=workload;
+		_opcount=opcount;
+		_opsdone=0;
+		_target=targetperclientperms;
+		if (_target>0)
+		{
+			_targettickns=1000000.0/_target;
+		}
+		_schedule=schedule;
+		_poissonarrivals=props.getProperty(Client.ARRIVAL_PROCESS_PROPERTY,Client.ARRIVAL_PROCESS_PROPERTY_DEFAULT).compareTo("poisson")==0;
+		_clientid=clientid;
+		_clientcount=clientcount;
+		_props=props;
+		_measurements=Measurements.getMeasurements();
+	}
+
+	/**
+	 * Initialize the DB and this client's workload state.
+	 *
+	 * @return false if either could not be initialized, in which case the client does no operations.
+	 */
+	boolean init()
+	{
+		try
+		{
+			_db.init();
+		}
+		catch (DBException e)
+		{
+			e.printStackTrace();
+			e.printStackTrace(System.out);
+			return false;
+		}
+
+		try
+		{
+			_workloadstate=_workload.initThread(_props,_clientid,_clientcount);
+		}
+		catch (WorkloadException e)
+		{
+			e.printStackTrace();
+			e.printStackTrace(System.out);
+			return false;
+		}
+
+		_nextintendedns=System.nanoTime();
+		if (isThrottled())
+		{
+			//spread the clients' operations out so they don't all hit the DB at the same time
+			_nextintendedns+=(long)(Utils.random().nextDouble()*nextInterArrivalNanos());
+		}
+		return true;
+	}
+
+	/**
+	 * @return true once this client has done its operations, or the workload has been asked to stop.
+	 */
+	boolean isDone()
+	{
+		return ((_opcount!=0) && (_opsdone>=_opcount)) || _workload.isStopRequested();
+	}
+
+	/**
+	 * Do this client's next operation. The caller is responsible for waiting until the operation's
+	 * intended start time, getNextIntendedStartTimeNs().
+	 *
+	 * Operations are scheduled open-loop: intended start times advance by the inter-arrival
+	 * gap regardless of how long earlier operations took, so a stalled store shows up as
+	 * queueing delay on the operations that had to wait rather than as missing samples.
+	 *
+	 * @return false if the workload has nothing more to do for this client.
+	 */
+	boolean doOperation()
+	{
+		if (isThrottled())
+		{
+			_measurements.setIntendedStartTimeNs(_nextintendedns);
+			_measurements.setExpectedIntervalNs(expectedInterArrivalNanos());
+		}
+
+		long spanstart=_measurements.startSpan();
+		boolean more;
+		if (_dotransactions)
+		{
+			more=_workload.doTransaction(_db,_workloadstate);
+		}
+		else
+		{
+			more=_workload.doInsert(_db,_workloadstate);
+		}
+		_measurements.finishSpans(spanstart);
+		if (!more)
+		{
+			return false;
+		}
+
+		_opsdone++;
+
+		if (_measurements.isWarmingUp())
+		{
+			_measurements.warmupOperationDone();
+		}
+
+		if (isThrottled())
+		{
+			_nextintendedns+=nextInterArrivalNanos();
+		}
+		else
+		{
+			//unthrottled clients are due again straight away, behind any others that are waiting
+			_nextintendedns=System.nanoTime();
+		}
+		return true;
+	}
+
+	/**
+	 * The time this client's next operation is intended to start, in nanoseconds.
+	 */
+	long getNextIntendedStartTimeNs()
+	{
+		return _nextintendedns;
+	}
+
+	/**
+	 * @return true if operations are spaced out to meet a target throughput.
+	 */
+	boolean isThrottled()
+	{
+		return (_target>0) || (_schedule!=null);
+	}
+
+	/**
+	 * The gap between this operation's intended start time and the next one's.
+	 */
+	long nextInterArrivalNanos()
+	{
+		if (_schedule!=null)
+		{
+			return nextScheduledInterArrivalNanos();
+		}
+		if (_poissonarrivals)
+		{
+			//exponentially distributed gaps with the same mean as the constant tick
+			return (long)(-Math.log(1.0-Utils.random().nextDouble())*_targettickns);
+		}
+		return (long)_targettickns;
+	}
+
+	/**
+	 * The mean gap between operations at this operation's intended start time, or 0 if the target
+	 * is zero then.
+	 */
+	long expectedInterArrivalNanos()
+	{
+		if (_schedule!=null)
+		{
+			double target=_schedule.getTarget(_nextintendedns);
+			return (target>0) ? (long)(1000000000.0*_clientcount/target) : 0;
+		}
+		return (long)_targettickns;
+	}
+
+	/**
+	 * The gap to the next operation when the target varies over time: the next operation is due
+	 * once the client's share of the target, integrated from this operation's intended start time,
+	 * reaches one operation (or an exponentially distributed amount, for Poisson arrivals). The
+	 * integral is taken in steps of a fraction of the gap at the rate at the start of the step (see
+	 * SCHEDULE_STEPS_PER_OP), so the rate follows the schedule even when the gaps are long, at a
+	 * cost that does not grow with them; stretches where the target is zero are skipped in one go.
+	 */
+	long nextScheduledInterArrivalNanos()
+	{
+		double ops=_poissonarrivals ? -Math.log(1.0-Utils.random().nextDouble()) : 1.0;
+		long gap=0;
+		while (true)
+		{
+			long positive=_schedule.getNextPositiveTime(_nextintendedns+gap);
+			if (positive-_nextintendedns>gap)
+			{
+				gap=positive-_nextintendedns;
+				continue;
+			}
+			double opsperns=_schedule.getTarget(_nextintendedns+gap)/_clientcount/1000000000.0;
+			long step=SCHEDULE_STEP_NS;
+			if (opsperns>0)
+			{
+				step=Math.max(step,(long)(1.0/(opsperns*SCHEDULE_STEPS_PER_OP)));
+			}
+			double stepops=opsperns*step;
+			if ((opsperns>0) && (ops<=stepops))
+			{
+				return gap+(long)(ops/opsperns);
+			}
+			ops-=stepops;
+			gap+=step;
+		}
+	}
+
+	void cleanup()
+	{
+		try
+		{
+			_db.cleanup();
+		}
+		catch (DBException e)
+		{
+			e.printStackTrace();
+			e.printStackTrace(System.out);
+		}
+	}
+}
@@ -18,6 +18,7 @@
 package com.yahoo.ycsb;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Properties;
 import java.util.Set;
 import java.util.Vector;
@@ -81,6 +82,15 @@ public abstract class DB
 	{
 	}
 
+	/**
+	 * Write out anything this DB has buffered, such as writes a binding only sends when it is cleaned
+	 * up. Called instead of cleanup() at the end of a phase of a run plan when a later phase uses the
+	 * same DB, so that the cost lands in the phase that did the writes.
+	 */
+	public void flush() throws DBException
+	{
+	}
+
 	/**
 	 * Read a record from the database. Each field/value pair from the result will be stored in a HashMap.
 	 *
@@ -134,4 +144,101 @@ public abstract class DB
 	 * @return Zero on success, a non-zero error code on error.  See this class's description for a discussion of error codes.
 	 */
 	public abstract int delete(String table, String key);
+
+	/**
+	 * Read several records from the database. The fields of each record are stored in a HashMap of
+	 * their own, added to the result in the order of the keys. This implementation reads the records
+	 * one at a time; bindings whose database can read several records in one request should override it.
+	 *
+	 * @param table The name of the table
+	 * @param keys The record keys of the records to read.
+	 * @param fields The list of fields to read, or null for all of them
+	 * @param result A Vector of HashMaps, where each HashMap is a set field/value pairs for one record
+	 * @return Zero if every record was read, otherwise the first non-zero error code.
+	 */
+	public int batchRead(String table, List<String> keys, Set<String> fields, Vector<HashMap<String,ByteIterator>> result)
+	{
+		int ret=0;
+		for (String key : keys)
+		{
+			HashMap<String,ByteIterator> record=new HashMap<String,ByteIterator>();
+			int res=read(table,key,fields,record);
+			result.add(record);
+			if (ret==0)
+			{
+				ret=res;
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Update several records in the database, as update() would each one. This implementation
+	 * updates the records one at a time; bindings whose database can write several records in one
+	 * request should override it.
+	 *
+	 * @param table The name of the table
+	 * @param keys The record keys of the records to write.
+	 * @param values For each key, a HashMap of field/value pairs to update in its record
+	 * @return Zero if every record was updated, otherwise the first non-zero error code.
+	 */
+	public int batchUpdate(String table, List<String> keys, List<HashMap<String,ByteIterator>> values)
+	{
+		int ret=0;
+		for (int i=0; i<keys.size(); i++)
+		{
+			int res=update(table,keys.get(i),values.get(i));
+			if (ret==0)
+			{
+				ret=res;
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Insert several records in the database, as insert() would each one. This implementation
+	 * inserts the records one at a time; bindings whose database can write several records in one
+	 * request should override it.
+	 *
+	 * @param table The name of the table
+	 * @param keys The record keys of the records to insert.
+	 * @param values For each key, a HashMap of field/value pairs to insert in its record
+	 * @return Zero if every record was inserted, otherwise the first non-zero error code.
+	 */
+	public int batchInsert(String table, List<String> keys, List<HashMap<String,ByteIterator>> values)
+	{
+		int ret=0;
+		for (int i=0; i<keys.size(); i++)
+		{
+			int res=insert(table,keys.get(i),values.get(i));
+			if (ret==0)
+			{
+				ret=res;
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Delete several records from the database. This implementation deletes the records one at a
+	 * time; bindings whose database can delete several records in one request should override it.
+	 *
+	 * @param table The name of the table
+	 * @param keys The record keys of the records to delete.
+	 * @return Zero if every record was deleted, otherwise the first non-zero error code.
+	 */
+	public int batchDelete(String table, List<String> keys)
+	{
+		int ret=0;
+		for (String key : keys)
+		{
+			int res=delete(table,key);
+			if (ret==0)
+			{
+				ret=res;
+			}
+		}
+		return ret;
+	}
 }
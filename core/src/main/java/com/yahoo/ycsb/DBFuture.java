@@ -0,0 +1,168 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import java.util.ArrayList;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Completion handle for an operation issued through an AsyncDB. The binding calls complete() exactly
+ * once with the operation's return code (zero on success, as for the blocking DB methods); listeners
+ * are then notified on the completing thread.
+ */
+public class DBFuture implements Future<Integer>
+{
+	/**
+	 * Notified when the operation completes.
+	 */
+	public interface Listener
+	{
+		void completed(int result);
+	}
+
+	boolean _done=false;
+	int _result;
+	ArrayList<Listener> _listeners=null;
+
+	/**
+	 * Return a handle for an operation that has already completed.
+	 */
+	public static DBFuture completed(int result)
+	{
+		DBFuture f=new DBFuture();
+		f._done=true;
+		f._result=result;
+		return f;
+	}
+
+	/**
+	 * Mark the operation as complete with the given return code, and notify listeners.
+	 */
+	public void complete(int result)
+	{
+		ArrayList<Listener> listeners;
+		synchronized(this)
+		{
+			if (_done)
+			{
+				throw new IllegalStateException("Operation already completed");
+			}
+			_result=result;
+			_done=true;
+			listeners=_listeners;
+			_listeners=null;
+			notifyAll();
+		}
+		if (listeners!=null)
+		{
+			for (Listener l : listeners)
+			{
+				l.completed(result);
+			}
+		}
+	}
+
+	/**
+	 * Register a listener for the completion of this operation. If the operation has already
+	 * completed, the listener is notified immediately on the calling thread.
+	 */
+	public void addListener(Listener l)
+	{
+		synchronized(this)
+		{
+			if (!_done)
+			{
+				if (_listeners==null)
+				{
+					_listeners=new ArrayList<Listener>(2);
+				}
+				_listeners.add(l);
+				return;
+			}
+		}
+		l.completed(_result);
+	}
+
+	/**
+	 * Block until the operation completes, and return its return code.
+	 */
+	public synchronized int waitForResult()
+	{
+		boolean interrupted=false;
+		while (!_done)
+		{
+			try
+			{
+				wait();
+			}
+			catch (InterruptedException e)
+			{
+				interrupted=true;
+			}
+		}
+		if (interrupted)
+		{
+			Thread.currentThread().interrupt();
+		}
+		return _result;
+	}
+
+	public synchronized Integer get() throws InterruptedException
+	{
+		while (!_done)
+		{
+			wait();
+		}
+		return _result;
+	}
+
+	public synchronized Integer get(long timeout, TimeUnit unit) throws InterruptedException, TimeoutException
+	{
+		long deadline=System.nanoTime()+unit.toNanos(timeout);
+		while (!_done)
+		{
+			long remaining=deadline-System.nanoTime();
+			if (remaining<=0)
+			{
+				throw new TimeoutException();
+			}
+			TimeUnit.NANOSECONDS.timedWait(this,remaining);
+		}
+		return _result;
+	}
+
+	public synchronized boolean isDone()
+	{
+		return _done;
+	}
+
+	/**
+	 * Operations sent to the database cannot be cancelled.
+	 */
+	public boolean cancel(boolean mayInterruptIfRunning)
+	{
+		return false;
+	}
+
+	public boolean isCancelled()
+	{
+		return false;
+	}
+}
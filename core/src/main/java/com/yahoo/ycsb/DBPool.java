@@ -0,0 +1,262 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.Vector;
+import java.util.concurrent.Executor;
+
+/**
+ * The DB instances of a run, one per client, kept across the phases of a run plan so that each
+ * binding sets up its connections once. A pooled DB is initialized the first time a client calls
+ * init() on it; until the last phase has started (see lastPhase()), cleanup() only flushes it, so
+ * that whatever a binding buffers is written out in the phase that wrote it, and the DB is cleaned
+ * up at the end of the last phase that uses it, or by close().
+ *
+ * A binding reads its own properties when it is initialized, so it keeps the values of the first
+ * phase that used it.
+ */
+class DBPool
+{
+	/**
+	 * A DB whose lifecycle belongs to the pool rather than to the client using it.
+	 */
+	static class PooledDB extends AsyncDB
+	{
+		DBPool _pool;
+		AsyncDB _db;
+		boolean _initialized=false;
+		boolean _cleanedup=false;
+
+		PooledDB(DBPool pool, AsyncDB db)
+		{
+			_pool=pool;
+			_db=db;
+		}
+
+		public void setProperties(Properties p)
+		{
+			_db.setProperties(p);
+		}
+
+		public Properties getProperties()
+		{
+			return _db.getProperties();
+		}
+
+		public synchronized void init() throws DBException
+		{
+			if (!_initialized)
+			{
+				_db.init();
+				_initialized=true;
+			}
+		}
+
+		public synchronized void cleanup() throws DBException
+		{
+			if (_pool._closing)
+			{
+				close();
+			}
+			else if (_initialized && !_cleanedup)
+			{
+				_db.flush();
+			}
+		}
+
+		public void flush() throws DBException
+		{
+			_db.flush();
+		}
+
+		/**
+		 * @return true if the binding is an AsyncDB, rather than a DB run on the calling thread
+		 */
+		boolean isAsync()
+		{
+			return !(_db instanceof DBWrapper) || ((DBWrapper)_db).isAsync();
+		}
+
+		synchronized void close() throws DBException
+		{
+			if (_initialized && !_cleanedup)
+			{
+				_cleanedup=true;
+				_db.cleanup();
+			}
+		}
+
+		public DBFuture readAsync(String table, String key, Set<String> fields, HashMap<String,ByteIterator> result)
+		{
+			return _db.readAsync(table,key,fields,result);
+		}
+
+		public DBFuture scanAsync(String table, String startkey, int recordcount, Set<String> fields, Vector<HashMap<String,ByteIterator>> result)
+		{
+			return _db.scanAsync(table,startkey,recordcount,fields,result);
+		}
+
+		public DBFuture updateAsync(String table, String key, HashMap<String,ByteIterator> values)
+		{
+			return _db.updateAsync(table,key,values);
+		}
+
+		public DBFuture insertAsync(String table, String key, HashMap<String,ByteIterator> values)
+		{
+			return _db.insertAsync(table,key,values);
+		}
+
+		public DBFuture deleteAsync(String table, String key)
+		{
+			return _db.deleteAsync(table,key);
+		}
+
+		public int read(String table, String key, Set<String> fields, HashMap<String,ByteIterator> result)
+		{
+			return _db.read(table,key,fields,result);
+		}
+
+		public int scan(String table, String startkey, int recordcount, Set<String> fields, Vector<HashMap<String,ByteIterator>> result)
+		{
+			return _db.scan(table,startkey,recordcount,fields,result);
+		}
+
+		public int update(String table, String key, HashMap<String,ByteIterator> values)
+		{
+			return _db.update(table,key,values);
+		}
+
+		public int insert(String table, String key, HashMap<String,ByteIterator> values)
+		{
+			return _db.insert(table,key,values);
+		}
+
+		public int delete(String table, String key)
+		{
+			return _db.delete(table,key);
+		}
+
+		public DBFuture batchInsertAsync(String table, List<String> keys, List<HashMap<String,ByteIterator>> values)
+		{
+			return _db.batchInsertAsync(table,keys,values);
+		}
+
+		public void setBatchExecutor(Executor executor)
+		{
+			_db.setBatchExecutor(executor);
+		}
+
+		public int batchRead(String table, List<String> keys, Set<String> fields, Vector<HashMap<String,ByteIterator>> result)
+		{
+			return _db.batchRead(table,keys,fields,result);
+		}
+
+		public int batchUpdate(String table, List<String> keys, List<HashMap<String,ByteIterator>> values)
+		{
+			return _db.batchUpdate(table,keys,values);
+		}
+
+		public int batchInsert(String table, List<String> keys, List<HashMap<String,ByteIterator>> values)
+		{
+			return _db.batchInsert(table,keys,values);
+		}
+
+		public int batchDelete(String table, List<String> keys)
+		{
+			return _db.batchDelete(table,keys);
+		}
+	}
+
+	String _dbname=null;
+	Vector<PooledDB> _dbs=new Vector<PooledDB>();
+	volatile boolean _closing=false;
+
+	/**
+	 * Return the DB for a client, creating it if this is the first phase with that many clients. If
+	 * the phase uses a different DB class than the earlier ones, the pooled DBs are cleaned up and
+	 * replaced.
+	 */
+	synchronized DB get(int clientid, String dbname, Properties props) throws UnknownDBException
+	{
+		if ((_dbname!=null) && (_dbname.compareTo(dbname)!=0))
+		{
+			closeAll();
+			_dbs.clear();
+		}
+		_dbname=dbname;
+
+		while (_dbs.size()<=clientid)
+		{
+			AsyncDB db=(AsyncDB)DBFactory.newDB(dbname,props);
+			if (db==null)
+			{
+				throw new UnknownDBException("Unknown DB "+dbname);
+			}
+			_dbs.add(new PooledDB(this,db));
+		}
+		return _dbs.get(clientid);
+	}
+
+	/**
+	 * @return true if the pooled DBs are AsyncDBs, which can have several operations in flight on
+	 * one thread
+	 */
+	synchronized boolean isAsync()
+	{
+		return _dbs.isEmpty() || _dbs.get(0).isAsync();
+	}
+
+	/**
+	 * Called before the last phase starts: from then on, a client's call to cleanup() really cleans
+	 * up its DB. Not called for a throughput search, which runs the clients on the same DBs once per
+	 * window; its DBs are cleaned up by close().
+	 */
+	void lastPhase()
+	{
+		_closing=true;
+	}
+
+	/**
+	 * Clean up any DBs that were not cleaned up by the clients of the last phase.
+	 */
+	synchronized void close()
+	{
+		_closing=true;
+		closeAll();
+	}
+
+	void closeAll()
+	{
+		for (PooledDB db : _dbs)
+		{
+			try
+			{
+				db.close();
+			}
+			catch (DBException e)
+			{
+				e.printStackTrace();
+				e.printStackTrace(System.out);
+			}
+		}
+	}
+}
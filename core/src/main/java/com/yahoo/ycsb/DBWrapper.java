@@ -18,26 +18,91 @@
 package com.yahoo.ycsb;
 
 import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.Executor;
 
 import com.yahoo.ycsb.measurements.Measurements;
 
 /**
- * Wrapper around a "real" DB that measures latencies and counts return codes.
+ * Wrapper around a "real" DB that measures latencies and counts return codes. Operations issued
+ * through the asynchronous methods are timed when they complete; if the wrapped DB is not an AsyncDB,
+ * they run on the calling thread through an AsyncDBAdapter.
  */
-public class DBWrapper extends DB
+public class DBWrapper extends AsyncDB
 {
 	DB _db;
+	AsyncDB _asyncdb;
 	Measurements _measurements;
 
 	public DBWrapper(DB db)
 	{
 		_db=db;
+		if (db instanceof AsyncDB)
+		{
+			_asyncdb=(AsyncDB)db;
+		}
+		else
+		{
+			_asyncdb=new AsyncDBAdapter(db);
+		}
 		_measurements=Measurements.getMeasurements();
 	}
 
+	/**
+	 * @return true if the wrapped DB is an AsyncDB, rather than one run on the calling thread
+	 */
+	boolean isAsync()
+	{
+		return _asyncdb==_db;
+	}
+
+	/**
+	 * Measures an asynchronous operation and counts its return code when it completes.
+	 */
+	class MeasuringListener implements DBFuture.Listener
+	{
+		String _op;
+		long _intendedstartns;
+		long _startns;
+
+		/**
+		 * Taken when the operation is issued: the binding may complete it on a thread of its own.
+		 */
+		long _expectedintervalns;
+
+		Thread _issuer;
+
+		/**
+		 * True until the call that issued the operation returns.
+		 */
+		boolean _issuing=true;
+
+		MeasuringListener(String op, long intendedstartns, long startns)
+		{
+			_op=op;
+			_intendedstartns=intendedstartns;
+			_startns=startns;
+			_expectedintervalns=_measurements.getExpectedIntervalNs();
+			_issuer=Thread.currentThread();
+		}
+
+		public void completed(int result)
+		{
+			long en=System.nanoTime();
+			measure(_op,result,_intendedstartns,_expectedintervalns,_startns,en);
+			//the call span belongs to the operation the issuing thread is running, so it is only
+			//known for an operation that completed within the call that issued it
+			if ((Thread.currentThread()==_issuer) && _issuing)
+			{
+				_measurements.measureCallSpan(_op,en-_startns);
+			}
+		}
+	}
+
 	/**
 	 * Set the properties for this DB.
 	 */
@@ -72,7 +137,48 @@ public class DBWrapper extends DB
     long st=System.nanoTime();
 		_db.cleanup();
     long en=System.nanoTime();
-    _measurements.measure("CLEANUP", (int)((en-st)/1000));
+    _measurements.measure("CLEANUP", en-st);
+	}
+
+	/**
+	 * Write out anything the DB has buffered, at the end of a phase that is not its last.
+	 */
+	public void flush() throws DBException
+	{
+		_db.flush();
+	}
+
+	/**
+	 * Record how long an operation took, both from when it actually started and from when it was
+	 * intended to start, and count its return code. Failed operations are measured apart from the
+	 * ones that succeeded.
+	 */
+	void measure(String op, int result, long intendedstartns, long startns, long endns)
+	{
+		measure(op,result,intendedstartns,_measurements.getExpectedIntervalNs(),startns,endns);
+		_measurements.measureCallSpan(op,endns-startns);
+	}
+
+	/**
+	 * As measure(), but without the call span, for an operation issued with the given expected
+	 * interval between operations.
+	 */
+	void measure(String op, int result, long intendedstartns, long expectedintervalns, long startns, long endns)
+	{
+		_measurements.measure(op,endns-startns,result,expectedintervalns);
+		_measurements.measureIntended(op,endns-intendedstartns,result);
+		_measurements.reportReturnCode(op,result);
+	}
+
+	/**
+	 * Measure an operation issued through the asynchronous methods when it completes.
+	 */
+	DBFuture measured(DBFuture f, String op, long intendedstartns, long startns)
+	{
+		MeasuringListener l=new MeasuringListener(op,intendedstartns,startns);
+		f.addListener(l);
+		l._issuing=false;
+		return f;
 	}
 
 	/**
@@ -86,11 +192,11 @@ public class DBWrapper extends DB
 	 */
 	public int read(String table, String key, Set<String> fields, HashMap<String,ByteIterator> result)
 	{
+		long ist=_measurements.getIntendedStartTimeNs();
 		long st=System.nanoTime();
 		int res=_db.read(table,key,fields,result);
 		long en=System.nanoTime();
-		_measurements.measure("READ",(int)((en-st)/1000));
-		_measurements.reportReturnCode("READ",res);
+		measure("READ",res,ist,st,en);
 		return res;
 	}
 
@@ -106,11 +212,11 @@ public class DBWrapper extends DB
 	 */
 	public int scan(String table, String startkey, int recordcount, Set<String> fields, Vector<HashMap<String,ByteIterator>> result)
 	{
+		long ist=_measurements.getIntendedStartTimeNs();
 		long st=System.nanoTime();
 		int res=_db.scan(table,startkey,recordcount,fields,result);
 		long en=System.nanoTime();
-		_measurements.measure("SCAN",(int)((en-st)/1000));
-		_measurements.reportReturnCode("SCAN",res);
+		measure("SCAN",res,ist,st,en);
 		return res;
 	}
 	
@@ -125,11 +231,11 @@ public class DBWrapper extends DB
 	 */
 	public int update(String table, String key, HashMap<String,ByteIterator> values)
 	{
+		long ist=_measurements.getIntendedStartTimeNs();
 		long st=System.nanoTime();
 		int res=_db.update(table,key,values);
 		long en=System.nanoTime();
-		_measurements.measure("UPDATE",(int)((en-st)/1000));
-		_measurements.reportReturnCode("UPDATE",res);
+		measure("UPDATE",res,ist,st,en);
 		return res;
 	}
 
@@ -144,11 +250,11 @@ public class DBWrapper extends DB
 	 */
 	public int insert(String table, String key, HashMap<String,ByteIterator> values)
 	{
+		long ist=_measurements.getIntendedStartTimeNs();
 		long st=System.nanoTime();
 		int res=_db.insert(table,key,values);
 		long en=System.nanoTime();
-		_measurements.measure("INSERT",(int)((en-st)/1000));
-		_measurements.reportReturnCode("INSERT",res);
+		measure("INSERT",res,ist,st,en);
 		return res;
 	}
 
@@ -161,11 +267,164 @@ public class DBWrapper extends DB
 	 */
 	public int delete(String table, String key)
 	{
+		long ist=_measurements.getIntendedStartTimeNs();
 		long st=System.nanoTime();
 		int res=_db.delete(table,key);
 		long en=System.nanoTime();
-		_measurements.measure("DELETE",(int)((en-st)/1000));
-		_measurements.reportReturnCode("DELETE",res);
+		measure("DELETE",res,ist,st,en);
+		return res;
+	}
+
+	/**
+	 * Read several records from the database, measured as one BATCH-READ operation.
+	 *
+	 * @param table The name of the table
+	 * @param keys The record keys of the records to read.
+	 * @param fields The list of fields to read, or null for all of them
+	 * @param result A Vector of HashMaps, where each HashMap is a set field/value pairs for one record
+	 * @return Zero on success, a non-zero error code on error
+	 */
+	public int batchRead(String table, List<String> keys, Set<String> fields, Vector<HashMap<String,ByteIterator>> result)
+	{
+		long ist=_measurements.getIntendedStartTimeNs();
+		long st=System.nanoTime();
+		int res=_db.batchRead(table,keys,fields,result);
+		long en=System.nanoTime();
+		measure("BATCH-READ",res,ist,st,en);
+		_measurements.measureKeys("BATCH-READ",keys.size());
 		return res;
 	}
+
+	/**
+	 * Update several records in the database, measured as one BATCH-UPDATE operation.
+	 *
+	 * @param table The name of the table
+	 * @param keys The record keys of the records to write.
+	 * @param values For each key, a HashMap of field/value pairs to update in its record
+	 * @return Zero on success, a non-zero error code on error
+	 */
+	public int batchUpdate(String table, List<String> keys, List<HashMap<String,ByteIterator>> values)
+	{
+		long ist=_measurements.getIntendedStartTimeNs();
+		long st=System.nanoTime();
+		int res=_db.batchUpdate(table,keys,values);
+		long en=System.nanoTime();
+		measure("BATCH-UPDATE",res,ist,st,en);
+		_measurements.measureKeys("BATCH-UPDATE",keys.size());
+		return res;
+	}
+
+	/**
+	 * Insert several records in the database, measured as one BATCH-INSERT operation.
+	 *
+	 * @param table The name of the table
+	 * @param keys The record keys of the records to insert.
+	 * @param values For each key, a HashMap of field/value pairs to insert in its record
+	 * @return Zero on success, a non-zero error code on error
+	 */
+	public int batchInsert(String table, List<String> keys, List<HashMap<String,ByteIterator>> values)
+	{
+		long ist=_measurements.getIntendedStartTimeNs();
+		long bytes=recordBytes(keys,values);
+		long st=System.nanoTime();
+		int res=_db.batchInsert(table,keys,values);
+		long en=System.nanoTime();
+		measure("BATCH-INSERT",res,ist,st,en);
+		_measurements.measureKeys("BATCH-INSERT",keys.size());
+		_measurements.measureBytes("BATCH-INSERT",bytes);
+		return res;
+	}
+
+	/**
+	 * The size of a batch of records: the keys, field names and values, in bytes (counting a
+	 * character as a byte). Taken before the binding consumes the values.
+	 */
+	static long recordBytes(List<String> keys, List<HashMap<String,ByteIterator>> values)
+	{
+		long bytes=0;
+		for (int i=0; i<keys.size(); i++)
+		{
+			bytes+=keys.get(i).length();
+			for (Map.Entry<String,ByteIterator> entry : values.get(i).entrySet())
+			{
+				bytes+=entry.getKey().length()+entry.getValue().bytesLeft();
+			}
+		}
+		return bytes;
+	}
+
+	/**
+	 * Delete several records from the database, measured as one BATCH-DELETE operation.
+	 *
+	 * @param table The name of the table
+	 * @param keys The record keys of the records to delete.
+	 * @return Zero on success, a non-zero error code on error
+	 */
+	public int batchDelete(String table, List<String> keys)
+	{
+		long ist=_measurements.getIntendedStartTimeNs();
+		long st=System.nanoTime();
+		int res=_db.batchDelete(table,keys);
+		long en=System.nanoTime();
+		measure("BATCH-DELETE",res,ist,st,en);
+		_measurements.measureKeys("BATCH-DELETE",keys.size());
+		return res;
+	}
+
+	public DBFuture readAsync(String table, String key, Set<String> fields, HashMap<String,ByteIterator> result)
+	{
+		long ist=_measurements.getIntendedStartTimeNs();
+		long st=System.nanoTime();
+		DBFuture f=_asyncdb.readAsync(table,key,fields,result);
+		return measured(f,"READ",ist,st);
+	}
+
+	public DBFuture scanAsync(String table, String startkey, int recordcount, Set<String> fields, Vector<HashMap<String,ByteIterator>> result)
+	{
+		long ist=_measurements.getIntendedStartTimeNs();
+		long st=System.nanoTime();
+		DBFuture f=_asyncdb.scanAsync(table,startkey,recordcount,fields,result);
+		return measured(f,"SCAN",ist,st);
+	}
+
+	public DBFuture updateAsync(String table, String key, HashMap<String,ByteIterator> values)
+	{
+		long ist=_measurements.getIntendedStartTimeNs();
+		long st=System.nanoTime();
+		DBFuture f=_asyncdb.updateAsync(table,key,values);
+		return measured(f,"UPDATE",ist,st);
+	}
+
+	public DBFuture insertAsync(String table, String key, HashMap<String,ByteIterator> values)
+	{
+		long ist=_measurements.getIntendedStartTimeNs();
+		long st=System.nanoTime();
+		DBFuture f=_asyncdb.insertAsync(table,key,values);
+		return measured(f,"INSERT",ist,st);
+	}
+
+	public DBFuture deleteAsync(String table, String key)
+	{
+		long ist=_measurements.getIntendedStartTimeNs();
+		long st=System.nanoTime();
+		DBFuture f=_asyncdb.deleteAsync(table,key);
+		return measured(f,"DELETE",ist,st);
+	}
+
+	public void setBatchExecutor(Executor executor)
+	{
+		_asyncdb.setBatchExecutor(executor);
+	}
+
+	public DBFuture batchInsertAsync(String table, List<String> keys, List<HashMap<String,ByteIterator>> values)
+	{
+		long ist=_measurements.getIntendedStartTimeNs();
+		long bytes=recordBytes(keys,values);
+		//count the batch on the issuing thread, where the batches done during a warm-up are known
+		_measurements.measureKeys("BATCH-INSERT",keys.size());
+		_measurements.measureBytes("BATCH-INSERT",bytes);
+		long st=System.nanoTime();
+		DBFuture f=_asyncdb.batchInsertAsync(table,keys,values);
+		return measured(f,"BATCH-INSERT",ist,st);
+	}
 }
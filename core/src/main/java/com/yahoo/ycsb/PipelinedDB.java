@@ -0,0 +1,252 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.Vector;
+import java.util.concurrent.Semaphore;
+
+/**
+ * The DB a client thread hands to the workload when it may keep more than one operation in flight.
+ * Each call issues the operation through the AsyncDB and returns as soon as it has been issued,
+ * blocking only while the window of outstanding operations is full. cleanup() and flush() wait for
+ * everything still outstanding.
+ *
+ * Because the blocking calls return before the operation completes, they always return zero; the
+ * real return codes are counted by DBWrapper when the operations complete. Workloads that need to
+ * act on an operation's result, or on its completion, use the asynchronous calls instead, which take
+ * a slot in the window in the same way and return the operation's DBFuture. Workloads that chain
+ * operations on one record (such as read-modify-write) see those operations overlap. Batch
+ * operations have no asynchronous form: they take a slot in the window and run to completion on the
+ * calling thread.
+ */
+public class PipelinedDB extends AsyncDB
+{
+	AsyncDB _db;
+	int _window;
+	Semaphore _inflight;
+
+	/**
+	 * Releases a slot in the window when an operation completes.
+	 */
+	DBFuture.Listener _release=new DBFuture.Listener()
+	{
+		public void completed(int result)
+		{
+			_inflight.release();
+		}
+	};
+
+	public PipelinedDB(AsyncDB db, int window)
+	{
+		_db=db;
+		_window=window;
+		_inflight=new Semaphore(window);
+	}
+
+	public void setProperties(Properties p)
+	{
+		_db.setProperties(p);
+	}
+
+	public Properties getProperties()
+	{
+		return _db.getProperties();
+	}
+
+	public void init() throws DBException
+	{
+		_db.init();
+	}
+
+	public void cleanup() throws DBException
+	{
+		_inflight.acquireUninterruptibly(_window);
+		_inflight.release(_window);
+		_db.cleanup();
+	}
+
+	public void flush() throws DBException
+	{
+		_inflight.acquireUninterruptibly(_window);
+		_inflight.release(_window);
+		_db.flush();
+	}
+
+	DBFuture issued(DBFuture f)
+	{
+		f.addListener(_release);
+		return f;
+	}
+
+	public DBFuture readAsync(String table, String key, Set<String> fields, HashMap<String,ByteIterator> result)
+	{
+		_inflight.acquireUninterruptibly();
+		try
+		{
+			return issued(_db.readAsync(table,key,fields,result));
+		}
+		catch (RuntimeException e)
+		{
+			//the operation was never issued, so nothing will complete it
+			_inflight.release();
+			throw e;
+		}
+	}
+
+	public DBFuture scanAsync(String table, String startkey, int recordcount, Set<String> fields, Vector<HashMap<String,ByteIterator>> result)
+	{
+		_inflight.acquireUninterruptibly();
+		try
+		{
+			return issued(_db.scanAsync(table,startkey,recordcount,fields,result));
+		}
+		catch (RuntimeException e)
+		{
+			_inflight.release();
+			throw e;
+		}
+	}
+
+	public DBFuture updateAsync(String table, String key, HashMap<String,ByteIterator> values)
+	{
+		_inflight.acquireUninterruptibly();
+		try
+		{
+			return issued(_db.updateAsync(table,key,values));
+		}
+		catch (RuntimeException e)
+		{
+			_inflight.release();
+			throw e;
+		}
+	}
+
+	public DBFuture insertAsync(String table, String key, HashMap<String,ByteIterator> values)
+	{
+		_inflight.acquireUninterruptibly();
+		try
+		{
+			return issued(_db.insertAsync(table,key,values));
+		}
+		catch (RuntimeException e)
+		{
+			_inflight.release();
+			throw e;
+		}
+	}
+
+	public DBFuture deleteAsync(String table, String key)
+	{
+		_inflight.acquireUninterruptibly();
+		try
+		{
+			return issued(_db.deleteAsync(table,key));
+		}
+		catch (RuntimeException e)
+		{
+			_inflight.release();
+			throw e;
+		}
+	}
+
+	public int read(String table, String key, Set<String> fields, HashMap<String,ByteIterator> result)
+	{
+		readAsync(table,key,fields,result);
+		return 0;
+	}
+
+	public int scan(String table, String startkey, int recordcount, Set<String> fields, Vector<HashMap<String,ByteIterator>> result)
+	{
+		scanAsync(table,startkey,recordcount,fields,result);
+		return 0;
+	}
+
+	public int update(String table, String key, HashMap<String,ByteIterator> values)
+	{
+		updateAsync(table,key,values);
+		return 0;
+	}
+
+	public int insert(String table, String key, HashMap<String,ByteIterator> values)
+	{
+		insertAsync(table,key,values);
+		return 0;
+	}
+
+	public int delete(String table, String key)
+	{
+		deleteAsync(table,key);
+		return 0;
+	}
+
+	public int batchRead(String table, List<String> keys, Set<String> fields, Vector<HashMap<String,ByteIterator>> result)
+	{
+		_inflight.acquireUninterruptibly();
+		try
+		{
+			return _db.batchRead(table,keys,fields,result);
+		}
+		finally
+		{
+			_inflight.release();
+		}
+	}
+
+	public int batchUpdate(String table, List<String> keys, List<HashMap<String,ByteIterator>> values)
+	{
+		_inflight.acquireUninterruptibly();
+		try
+		{
+			return _db.batchUpdate(table,keys,values);
+		}
+		finally
+		{
+			_inflight.release();
+		}
+	}
+
+	public int batchInsert(String table, List<String> keys, List<HashMap<String,ByteIterator>> values)
+	{
+		_inflight.acquireUninterruptibly();
+		try
+		{
+			return _db.batchInsert(table,keys,values);
+		}
+		finally
+		{
+			_inflight.release();
+		}
+	}
+
+	public int batchDelete(String table, List<String> keys)
+	{
+		_inflight.acquireUninterruptibly();
+		try
+		{
+			return _db.batchDelete(table,keys);
+		}
+		finally
+		{
+			_inflight.release();
+		}
+	}
+}
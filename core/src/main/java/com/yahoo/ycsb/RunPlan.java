@@ -0,0 +1,191 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.Enumeration;
+import java.util.Properties;
+import java.util.StringTokenizer;
+import java.util.Vector;
+
+import com.yahoo.ycsb.measurements.HistogramLogThread;
+
+/**
+ * A list of phases to run one after the other in the same client, sharing its DB instances. The
+ * plan file has one phase per line: a name followed by the options for that phase, written as on
+ * the command line (-load or -t, -P propertyfile, -p name=value, -threads n, -target n). Blank
+ * lines and lines starting with # are ignored. For example:
+ *
+ * <pre>
+ * load  -load -P workloads/workloada
+ * a     -t -P workloads/workloada -p maxexecutiontime=600
+ * b     -t -P workloads/workloadb -p maxexecutiontime=600
+ * </pre>
+ *
+ * A phase's properties are those given to the client, overridden by the phase's property files,
+ * overridden by its -p options. Use "maxexecutiontime" or "operationcount" to bound each phase. If
+ * the client was given an "exportfile" or a "histogram.log", each phase that does not set its own
+ * writes to that file name followed by "." and the phase's name.
+ */
+class RunPlan
+{
+	/**
+	 * The properties naming a file a phase writes, which each phase gets its own copy of.
+	 */
+	static final String[] PHASE_FILE_PROPERTIES={"exportfile",HistogramLogThread.LOG_FILE_PROPERTY};
+
+	/**
+	 * One phase of the plan.
+	 */
+	static class Phase
+	{
+		String _name;
+		boolean _dotransactions=true;
+		Properties _props;
+	}
+
+	Vector<Phase> _phases=new Vector<Phase>();
+
+	/**
+	 * Read a plan file.
+	 *
+	 * @param planfile the name of the plan file
+	 * @param props the properties given to the client, which each phase starts from
+	 * @throws IOException if the file, or a property file it names, cannot be read or is malformed
+	 */
+	static RunPlan load(String planfile, Properties props) throws IOException
+	{
+		RunPlan plan=new RunPlan();
+		BufferedReader reader=new BufferedReader(new FileReader(planfile));
+		try
+		{
+			String line;
+			int lineno=0;
+			while ((line=reader.readLine())!=null)
+			{
+				lineno++;
+				line=line.trim();
+				if ((line.length()==0) || line.startsWith("#"))
+				{
+					continue;
+				}
+				plan._phases.add(parsePhase(line,props,planfile+":"+lineno));
+			}
+		}
+		finally
+		{
+			reader.close();
+		}
+
+		if (plan._phases.isEmpty())
+		{
+			throw new IOException(planfile+": no phases in run plan");
+		}
+		return plan;
+	}
+
+	static Phase parsePhase(String line, Properties props, String where) throws IOException
+	{
+		Phase phase=new Phase();
+		StringTokenizer tokens=new StringTokenizer(line);
+		phase._name=tokens.nextToken();
+
+		Properties fileprops=new Properties();
+		Properties lineprops=new Properties();
+		while (tokens.hasMoreTokens())
+		{
+			String option=tokens.nextToken();
+			if (option.compareTo("-load")==0)
+			{
+				phase._dotransactions=false;
+			}
+			else if (option.compareTo("-t")==0)
+			{
+				phase._dotransactions=true;
+			}
+			else if ((option.compareTo("-P")==0) || (option.compareTo("-p")==0) || (option.compareTo("-threads")==0) || (option.compareTo("-target")==0))
+			{
+				if (!tokens.hasMoreTokens())
+				{
+					throw new IOException(where+": missing value for "+option);
+				}
+				String value=tokens.nextToken();
+				if (option.compareTo("-P")==0)
+				{
+					FileInputStream in=new FileInputStream(value);
+					try
+					{
+						fileprops.load(in);
+					}
+					finally
+					{
+						in.close();
+					}
+				}
+				else if (option.compareTo("-p")==0)
+				{
+					int eq=value.indexOf('=');
+					if (eq<0)
+					{
+						throw new IOException(where+": expected name=value after -p, found "+value);
+					}
+					lineprops.setProperty(value.substring(0,eq),value.substring(eq+1));
+				}
+				else if (option.compareTo("-threads")==0)
+				{
+					lineprops.setProperty("threadcount",value);
+				}
+				else
+				{
+					lineprops.setProperty("target",value);
+				}
+			}
+			else
+			{
+				throw new IOException(where+": unknown option "+option);
+			}
+		}
+
+		phase._props=new Properties();
+		copy(props,phase._props);
+		copy(fileprops,phase._props);
+		copy(lineprops,phase._props);
+
+		for (String fileprop : PHASE_FILE_PROPERTIES)
+		{
+			String file=props.getProperty(fileprop);
+			if ((file!=null) && (fileprops.getProperty(fileprop)==null) && (lineprops.getProperty(fileprop)==null))
+			{
+				phase._props.setProperty(fileprop,file+"."+phase._name);
+			}
+		}
+		return phase;
+	}
+
+	static void copy(Properties from, Properties to)
+	{
+		for (Enumeration<?> e=from.propertyNames(); e.hasMoreElements(); )
+		{
+			String prop=(String)e.nextElement();
+			to.setProperty(prop,from.getProperty(prop));
+		}
+	}
+}
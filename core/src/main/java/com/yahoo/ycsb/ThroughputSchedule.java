@@ -0,0 +1,482 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.Properties;
+import java.util.StringTokenizer;
+import java.util.Vector;
+
+/**
+ * A target throughput that changes over the course of a run. The target is a function of the time
+ * since start() was called, in total operations per second for the whole client; each simulated
+ * client offers an equal share of it. Schedules are immutable once started, so any thread may ask
+ * for the target.
+ */
+public abstract class ThroughputSchedule
+{
+	/**
+	 * The shape of the target throughput: "constant" (the default, the fixed "target"), "ramp", "step",
+	 * "sine" or "file".
+	 */
+	public static final String TARGET_SCHEDULE_PROPERTY="targetschedule";
+
+	public static final String TARGET_SCHEDULE_PROPERTY_DEFAULT="constant";
+
+	/**
+	 * The target at the start of a ramp or staircase, in operations per second (default: 0).
+	 */
+	public static final String START_PROPERTY="targetschedule.start";
+
+	/**
+	 * The target at the end of a ramp or staircase, in operations per second (default: "target").
+	 */
+	public static final String END_PROPERTY="targetschedule.end";
+
+	/**
+	 * How long a ramp takes to go from the start target to the end target, in seconds. The target
+	 * stays at the end value afterwards.
+	 */
+	public static final String DURATION_PROPERTY="targetschedule.duration";
+
+	/**
+	 * How much a staircase raises the target at each step, in operations per second.
+	 */
+	public static final String STEP_PROPERTY="targetschedule.step";
+
+	/**
+	 * How long each step of a staircase lasts, in seconds.
+	 */
+	public static final String STEP_DURATION_PROPERTY="targetschedule.stepduration";
+
+	/**
+	 * How far a sine wave swings above and below "target", in operations per second.
+	 */
+	public static final String AMPLITUDE_PROPERTY="targetschedule.amplitude";
+
+	/**
+	 * The period of a sine wave, in seconds.
+	 */
+	public static final String PERIOD_PROPERTY="targetschedule.period";
+
+	/**
+	 * A file of "seconds ops/sec" pairs, one per line, in increasing order of time. The target is
+	 * interpolated linearly between the points and stays at the last value after the last one.
+	 */
+	public static final String FILE_PROPERTY="targetschedule.file";
+
+	long _startns;
+
+	/**
+	 * Create the schedule described by the properties.
+	 *
+	 * @return the schedule, or null if the target is constant
+	 * @throws WorkloadException if the schedule is not properly described
+	 */
+	public static ThroughputSchedule create(Properties props) throws WorkloadException
+	{
+		String type=props.getProperty(TARGET_SCHEDULE_PROPERTY,TARGET_SCHEDULE_PROPERTY_DEFAULT);
+		double target=Double.parseDouble(props.getProperty("target","0"));
+		ThroughputSchedule schedule;
+
+		if (type.compareTo("constant")==0)
+		{
+			return null;
+		}
+		else if (type.compareTo("ramp")==0)
+		{
+			schedule=new Ramp(
+					Double.parseDouble(props.getProperty(START_PROPERTY,"0")),
+					Double.parseDouble(props.getProperty(END_PROPERTY,target+"")),
+					seconds(props,DURATION_PROPERTY));
+		}
+		else if (type.compareTo("step")==0)
+		{
+			schedule=new Step(
+					Double.parseDouble(props.getProperty(START_PROPERTY,"0")),
+					Double.parseDouble(props.getProperty(END_PROPERTY,target+"")),
+					Double.parseDouble(props.getProperty(STEP_PROPERTY,"0")),
+					seconds(props,STEP_DURATION_PROPERTY));
+		}
+		else if (type.compareTo("sine")==0)
+		{
+			schedule=new Sine(target,
+					Double.parseDouble(props.getProperty(AMPLITUDE_PROPERTY,"0")),
+					seconds(props,PERIOD_PROPERTY));
+		}
+		else if (type.compareTo("file")==0)
+		{
+			String file=props.getProperty(FILE_PROPERTY);
+			if (file==null)
+			{
+				throw new WorkloadException("Missing property: "+FILE_PROPERTY);
+			}
+			schedule=Piecewise.load(file);
+		}
+		else
+		{
+			throw new WorkloadException("Unknown "+TARGET_SCHEDULE_PROPERTY+" \""+type+"\"");
+		}
+
+		if (schedule.getFinalTarget()<=0)
+		{
+			throw new WorkloadException("The "+type+" target schedule must end with a positive target");
+		}
+		return schedule;
+	}
+
+	static long seconds(Properties props, String property) throws WorkloadException
+	{
+		String value=props.getProperty(property);
+		if (value==null)
+		{
+			throw new WorkloadException("Missing property: "+property);
+		}
+		long ns=(long)(Double.parseDouble(value)*1000000000.0);
+		if (ns<=0)
+		{
+			throw new WorkloadException(property+" must be positive");
+		}
+		return ns;
+	}
+
+	/**
+	 * Start the schedule: times are measured from now.
+	 */
+	public void start()
+	{
+		_startns=System.nanoTime();
+	}
+
+	/**
+	 * The target at a point in time.
+	 *
+	 * @param timens a time from System.nanoTime()
+	 * @return the target in operations per second; never negative
+	 */
+	public double getTarget(long timens)
+	{
+		long elapsed=timens-_startns;
+		return getTargetAfterStart(elapsed<0 ? 0 : elapsed);
+	}
+
+	/**
+	 * The target a given time after the start.
+	 *
+	 * @param elapsedns the time since the start, in nanoseconds
+	 * @return the target in operations per second; never negative
+	 */
+	public double getTargetAfterStart(long elapsedns)
+	{
+		return Math.max(0.0,getTargetAfter(elapsedns));
+	}
+
+	/**
+	 * The first time, from the given one on, that the target may be above zero, so a client waiting
+	 * through a stretch of zero target can skip to its end.
+	 *
+	 * @param timens a time from System.nanoTime()
+	 * @return timens if the target is positive then, or a later time when it may be
+	 */
+	public long getNextPositiveTime(long timens)
+	{
+		long elapsed=timens-_startns;
+		if (elapsed<0)
+		{
+			if (getTargetAfterStart(0)>0)
+			{
+				return timens;
+			}
+			elapsed=0;
+		}
+		else if (getTargetAfterStart(elapsed)>0)
+		{
+			return timens;
+		}
+		return _startns+Math.max(elapsed+1,getPositiveAfter(elapsed));
+	}
+
+	/**
+	 * The target a given time after the start, in operations per second.
+	 */
+	abstract double getTargetAfter(long elapsedns);
+
+	/**
+	 * The time after the start at which a stretch of zero (or negative) target that includes the
+	 * given time ends. It may be a little early, but not late.
+	 */
+	abstract long getPositiveAfter(long elapsedns);
+
+	/**
+	 * The time between from and to at which a straight line from one target to the other crosses zero.
+	 */
+	static long crossing(long from, long to, double fromtarget, double totarget)
+	{
+		return from+(long)((to-from)*(-fromtarget)/(totarget-fromtarget));
+	}
+
+	/**
+	 * The target the schedule settles on, or ends a cycle on; it must be positive, so a client
+	 * waiting for its next operation always gets one.
+	 */
+	abstract double getFinalTarget();
+
+	/**
+	 * A linear ramp from one target to another.
+	 */
+	static class Ramp extends ThroughputSchedule
+	{
+		double _from;
+		double _to;
+		long _durationns;
+
+		Ramp(double from, double to, long durationns)
+		{
+			_from=from;
+			_to=to;
+			_durationns=durationns;
+		}
+
+		double getTargetAfter(long elapsedns)
+		{
+			if (elapsedns>=_durationns)
+			{
+				return _to;
+			}
+			return _from+(_to-_from)*((double)elapsedns)/((double)_durationns);
+		}
+
+		long getPositiveAfter(long elapsedns)
+		{
+			//a rising ramp becomes positive where it crosses zero; a falling one at its end
+			return (_to>_from) ? crossing(0,_durationns,_from,_to) : _durationns;
+		}
+
+		double getFinalTarget()
+		{
+			return _to;
+		}
+	}
+
+	/**
+	 * A staircase: the target rises by a fixed step at fixed intervals until it reaches the end target.
+	 */
+	static class Step extends ThroughputSchedule
+	{
+		double _from;
+		double _to;
+		double _step;
+		long _stepns;
+
+		Step(double from, double to, double step, long stepns) throws WorkloadException
+		{
+			if (step==0)
+			{
+				throw new WorkloadException("Missing property: "+STEP_PROPERTY);
+			}
+			_from=from;
+			_to=to;
+			_step=step;
+			_stepns=stepns;
+		}
+
+		double getTargetAfter(long elapsedns)
+		{
+			double target=_from+_step*(elapsedns/_stepns);
+			return (_step>0) ? Math.min(target,_to) : Math.max(target,_to);
+		}
+
+		long getPositiveAfter(long elapsedns)
+		{
+			//the next step
+			return (elapsedns/_stepns+1)*_stepns;
+		}
+
+		double getFinalTarget()
+		{
+			return _to;
+		}
+	}
+
+	/**
+	 * A sine wave around a mean target.
+	 */
+	static class Sine extends ThroughputSchedule
+	{
+		double _mean;
+		double _amplitude;
+		long _periodns;
+
+		Sine(double mean, double amplitude, long periodns)
+		{
+			_mean=mean;
+			_amplitude=amplitude;
+			_periodns=periodns;
+		}
+
+		double getTargetAfter(long elapsedns)
+		{
+			return _mean+_amplitude*Math.sin(2*Math.PI*((double)(elapsedns%_periodns))/((double)_periodns));
+		}
+
+		long getPositiveAfter(long elapsedns)
+		{
+			//the target is zero or less while the sine is below -mean/amplitude, in the second half of
+			//the period; that ends at the second angle with that sine
+			double angle=2*Math.PI-Math.asin(Math.min(1.0,_mean/Math.abs(_amplitude)));
+			if (_amplitude<0)
+			{
+				//the wave is inverted, so the trough is in the first half
+				angle-=Math.PI;
+			}
+			long cycle=elapsedns-elapsedns%_periodns;
+			return cycle+(long)(angle/(2*Math.PI)*_periodns);
+		}
+
+		double getFinalTarget()
+		{
+			return _mean;
+		}
+	}
+
+	/**
+	 * Straight lines between points read from a file.
+	 */
+	static class Piecewise extends ThroughputSchedule
+	{
+		long[] _times;
+		double[] _targets;
+
+		Piecewise(long[] times, double[] targets)
+		{
+			_times=times;
+			_targets=targets;
+		}
+
+		static Piecewise load(String file) throws WorkloadException
+		{
+			Vector<Long> times=new Vector<Long>();
+			Vector<Double> targets=new Vector<Double>();
+			try
+			{
+				BufferedReader reader=new BufferedReader(new FileReader(file));
+				try
+				{
+					String line;
+					while ((line=reader.readLine())!=null)
+					{
+						line=line.trim();
+						if ((line.length()==0) || line.startsWith("#"))
+						{
+							continue;
+						}
+						StringTokenizer tokens=new StringTokenizer(line," \t,");
+						if (tokens.countTokens()!=2)
+						{
+							throw new WorkloadException(file+": expected \"seconds ops/sec\", found \""+line+"\"");
+						}
+						long time=(long)(Double.parseDouble(tokens.nextToken())*1000000000.0);
+						if (!times.isEmpty() && (time<=times.lastElement()))
+						{
+							throw new WorkloadException(file+": times must increase, found \""+line+"\"");
+						}
+						times.add(time);
+						targets.add(Double.parseDouble(tokens.nextToken()));
+					}
+				}
+				finally
+				{
+					reader.close();
+				}
+			}
+			catch (IOException e)
+			{
+				throw new WorkloadException("Could not read target schedule "+file,e);
+			}
+			catch (NumberFormatException e)
+			{
+				throw new WorkloadException("Could not read target schedule "+file,e);
+			}
+
+			if (times.isEmpty())
+			{
+				throw new WorkloadException(file+": no points in target schedule");
+			}
+
+			long[] t=new long[times.size()];
+			double[] r=new double[times.size()];
+			for (int i=0; i<t.length; i++)
+			{
+				t[i]=times.get(i);
+				r[i]=targets.get(i);
+			}
+			return new Piecewise(t,r);
+		}
+
+		double getTargetAfter(long elapsedns)
+		{
+			if (elapsedns<=_times[0])
+			{
+				return _targets[0];
+			}
+			if (elapsedns>=_times[_times.length-1])
+			{
+				return _targets[_targets.length-1];
+			}
+
+			//find the segment containing the time
+			int lo=0;
+			int hi=_times.length-1;
+			while (hi-lo>1)
+			{
+				int mid=(lo+hi)>>>1;
+				if (_times[mid]<=elapsedns)
+				{
+					lo=mid;
+				}
+				else
+				{
+					hi=mid;
+				}
+			}
+			double fraction=((double)(elapsedns-_times[lo]))/((double)(_times[hi]-_times[lo]));
+			return _targets[lo]+(_targets[hi]-_targets[lo])*fraction;
+		}
+
+		long getPositiveAfter(long elapsedns)
+		{
+			//the first positive point after the time, which the line from the point before it reaches
+			//from zero or less
+			for (int i=1; i<_times.length; i++)
+			{
+				if ((_times[i]>elapsedns) && (_targets[i]>0))
+				{
+					return crossing(_times[i-1],_times[i],_targets[i-1],_targets[i]);
+				}
+			}
+			return elapsedns;
+		}
+
+		double getFinalTarget()
+		{
+			return _targets[_targets.length-1];
+		}
+	}
+}
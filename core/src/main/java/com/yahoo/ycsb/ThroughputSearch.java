@@ -0,0 +1,338 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import java.io.IOException;
+import java.text.DecimalFormat;
+import java.util.Properties;
+import java.util.Vector;
+
+import com.yahoo.ycsb.measurements.Measurements;
+import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
+
+/**
+ * Finds the highest target throughput at which a latency percentile stays within a service level
+ * objective (SLO). The search runs the workload for a short window at each candidate target, reusing
+ * the client's DB instances: it doubles the target until a window misses the SLO, narrows the range
+ * by bisection, and then runs a longer window at the best target found to confirm it. A window
+ * meets the SLO if the chosen percentile of the chosen operation is within the limit and the client
+ * achieved the target to within "slo.throughputtolerance".
+ *
+ * Each window is a fresh run of the workload, with its own warm-up if "warmuptime" or "warmupops"
+ * is set, which gives the store time to settle at the new rate. At the end, the client prints the
+ * latency curve and exports the measurements of the confirmation window, along with the results
+ * of the search.
+ */
+class ThroughputSearch
+{
+	/**
+	 * Set to true to search for the maximum sustainable throughput instead of running at "target".
+	 */
+	public static final String SEARCH_PROPERTY="slo.search";
+
+	/**
+	 * The operation the SLO applies to, named as in the measurements (default: READ). When the
+	 * client is measuring intended latency, "Intended-READ" includes the time operations spend
+	 * waiting to start.
+	 */
+	public static final String OPERATION_PROPERTY="slo.operation";
+
+	/**
+	 * The percentile the SLO applies to (default: 99).
+	 */
+	public static final String PERCENTILE_PROPERTY="slo.percentile";
+
+	/**
+	 * The latency the percentile must not exceed, in milliseconds.
+	 */
+	public static final String LATENCY_PROPERTY="slo.latency";
+
+	/**
+	 * The length of each search window, in seconds (default: 10).
+	 */
+	public static final String WINDOW_PROPERTY="slo.window";
+
+	/**
+	 * The length of the confirmation window, in seconds (default: three search windows).
+	 */
+	public static final String CONFIRM_WINDOW_PROPERTY="slo.confirmwindow";
+
+	/**
+	 * The target to start the search from, in operations per second (default: 1000).
+	 */
+	public static final String MIN_TARGET_PROPERTY="slo.mintarget";
+
+	/**
+	 * The highest target to try, in operations per second (default: no limit).
+	 */
+	public static final String MAX_TARGET_PROPERTY="slo.maxtarget";
+
+	/**
+	 * The search stops when the highest passing and lowest failing targets are within this fraction
+	 * of each other (default: 0.05).
+	 */
+	public static final String PRECISION_PROPERTY="slo.precision";
+
+	/**
+	 * The fraction of the target a window must achieve to pass (default: 0.95).
+	 */
+	public static final String THROUGHPUT_TOLERANCE_PROPERTY="slo.throughputtolerance";
+
+	/**
+	 * How many times the search backs off and retries when a confirmation window fails.
+	 */
+	static final int MAX_CONFIRMATIONS=3;
+
+	/**
+	 * The outcome of one window.
+	 */
+	static class Window
+	{
+		int _target;
+		double _throughput;
+		double _latencyms;
+		boolean _passed;
+		boolean _confirmation;
+	}
+
+	Properties _props;
+	boolean _dotransactions;
+	boolean _status;
+	String _label;
+	DBPool _dbpool;
+
+	String _operation;
+	double _percentile;
+	double _slolatencyms;
+	int _window;
+	int _confirmwindow;
+	int _mintarget;
+	int _maxtarget;
+	double _precision;
+	double _tolerance;
+
+	Vector<Window> _windows=new Vector<Window>();
+
+	static boolean isEnabled(Properties props)
+	{
+		return Boolean.valueOf(props.getProperty(SEARCH_PROPERTY,"false")).booleanValue();
+	}
+
+	ThroughputSearch(Properties props, boolean dotransactions, boolean status, String label, DBPool dbpool)
+	{
+		_props=props;
+		_dotransactions=dotransactions;
+		_status=status;
+		_label=label;
+		_dbpool=dbpool;
+
+		_operation=props.getProperty(OPERATION_PROPERTY,"READ");
+		_percentile=Double.parseDouble(props.getProperty(PERCENTILE_PROPERTY,"99"));
+		String latency=props.getProperty(LATENCY_PROPERTY);
+		if (latency==null)
+		{
+			System.out.println("Missing property: "+LATENCY_PROPERTY);
+			System.exit(0);
+		}
+		_slolatencyms=Double.parseDouble(latency);
+		_window=Integer.parseInt(props.getProperty(WINDOW_PROPERTY,"10"));
+		_confirmwindow=Integer.parseInt(props.getProperty(CONFIRM_WINDOW_PROPERTY,(3*_window)+""));
+		_mintarget=Integer.parseInt(props.getProperty(MIN_TARGET_PROPERTY,"1000"));
+		_maxtarget=Integer.parseInt(props.getProperty(MAX_TARGET_PROPERTY,Integer.MAX_VALUE+""));
+		_precision=Double.parseDouble(props.getProperty(PRECISION_PROPERTY,"0.05"));
+		_tolerance=Double.parseDouble(props.getProperty(THROUGHPUT_TOLERANCE_PROPERTY,"0.95"));
+	}
+
+	/**
+	 * Run the workload for one window at the given target.
+	 */
+	Window runWindow(int target, int seconds, boolean confirmation)
+	{
+		Properties props=new Properties();
+		RunPlan.copy(_props,props);
+		props.setProperty(SEARCH_PROPERTY,"false");
+		props.setProperty("target",target+"");
+		props.setProperty(ThroughputSchedule.TARGET_SCHEDULE_PROPERTY,"constant");
+		props.setProperty(Client.MAX_EXECUTION_TIME,seconds+"");
+		props.setProperty(Client.OPERATION_COUNT_PROPERTY,"0");
+
+		System.err.println((confirmation ? "Confirming" : "Trying")+" target "+target+" ops/sec for "+seconds+" sec.");
+
+		Window w=new Window();
+		w._target=target;
+		w._confirmation=confirmation;
+		w._throughput=Client.runClients(props,_dotransactions,_status,_label+"target "+target+" ",_dbpool,null,false);
+		w._latencyms=Measurements.getMeasurements().getPercentileLatencyMs(_operation,_percentile);
+		if (w._latencyms<0)
+		{
+			System.out.println("No "+_percentile+"th percentile latency for "+_operation+"; the search needs histogram measurements of an operation the workload does.");
+			System.exit(0);
+		}
+		w._passed=(w._latencyms<=_slolatencyms) && (w._throughput>=_tolerance*target);
+		_windows.add(w);
+
+		DecimalFormat d=new DecimalFormat("#.##");
+		System.err.println("Target "+target+" ops/sec: "+d.format(w._throughput)+" ops/sec, "+_operation+" "+d.format(_percentile)+"th percentile "+d.format(w._latencyms)+" ms, "+(w._passed ? "meets" : "misses")+" the SLO.");
+		return w;
+	}
+
+	/**
+	 * Search between a passing and a failing target until they are within the precision.
+	 *
+	 * @param lo a target that passed, or 0
+	 * @param hi a target that failed, or 0 if none has yet
+	 * @return the highest target that passed, or 0 if none did
+	 */
+	int search(int lo, int hi)
+	{
+		int target;
+		if (hi==0)
+		{
+			target=(lo>0) ? (int)Math.min((long)_maxtarget,2L*lo) : Math.min(_mintarget,_maxtarget);
+		}
+		else
+		{
+			target=lo+(hi-lo)/2;
+		}
+
+		while (true)
+		{
+			if (hi==0)
+			{
+				if (lo>=_maxtarget)
+				{
+					return lo;
+				}
+			}
+			else if (hi-lo<=Math.max(1.0,_precision*hi))
+			{
+				return lo;
+			}
+
+			if (runWindow(target,_window,false)._passed)
+			{
+				lo=target;
+			}
+			else
+			{
+				hi=target;
+			}
+
+			if (hi==0)
+			{
+				//no failure yet: keep doubling
+				target=(int)Math.min((long)_maxtarget,2L*lo);
+			}
+			else if ((lo==0) && (hi<=1))
+			{
+				return 0;
+			}
+			else
+			{
+				target=lo+(hi-lo)/2;
+			}
+		}
+	}
+
+	void run()
+	{
+		int lo=0;
+		int hi=0;
+		int best=0;
+		Window confirmed=null;
+
+		for (int attempt=0; attempt<MAX_CONFIRMATIONS; attempt++)
+		{
+			best=search(lo,hi);
+			if (best==0)
+			{
+				break;
+			}
+			Window w=runWindow(best,_confirmwindow,true);
+			if (w._passed)
+			{
+				confirmed=w;
+				break;
+			}
+			//the best target did not hold up over a longer window: search below it
+			hi=best;
+			lo=0;
+			best=0;
+		}
+
+		report(confirmed);
+	}
+
+	void report(Window confirmed)
+	{
+		DecimalFormat d=new DecimalFormat("#.##");
+		System.out.println("Latency curve for "+_operation+" "+d.format(_percentile)+"th percentile, SLO "+d.format(_slolatencyms)+" ms:");
+		System.out.println("  target(ops/sec)  throughput(ops/sec)  latency(ms)  result");
+		for (Window w : _windows)
+		{
+			System.out.println("  "+w._target+"  "+d.format(w._throughput)+"  "+d.format(w._latencyms)+"  "+(w._passed ? "pass" : "fail")+(w._confirmation ? " (confirmation)" : ""));
+		}
+		if (confirmed==null)
+		{
+			System.out.println("No target met the SLO.");
+		}
+		else
+		{
+			System.out.println("Maximum sustainable throughput: "+confirmed._target+" ops/sec ("+d.format(confirmed._throughput)+" achieved).");
+		}
+
+		MeasurementsExporter exporter=null;
+		try
+		{
+			exporter=Client.newExporter(_props);
+			exporter.write("SLO", "MaxSustainableThroughput(ops/sec)", (confirmed==null) ? 0 : confirmed._target);
+			for (int i=0; i<_windows.size(); i++)
+			{
+				Window w=_windows.get(i);
+				exporter.write("SLO", "Window"+i+"-Target(ops/sec)", w._target);
+				exporter.write("SLO", "Window"+i+"-Throughput(ops/sec)", w._throughput);
+				exporter.write("SLO", "Window"+i+"-Latency(ms)", w._latencyms);
+			}
+			if (confirmed!=null)
+			{
+				//the last window run was the confirmation, so its measurements are the current ones
+				Measurements.getMeasurements().exportMeasurements(exporter);
+			}
+		}
+		catch (IOException e)
+		{
+			System.err.println("Could not export measurements, error: " + e.getMessage());
+			e.printStackTrace();
+			System.exit(-1);
+		}
+		finally
+		{
+			if (exporter!=null)
+			{
+				try
+				{
+					exporter.close();
+				}
+				catch (IOException e)
+				{
+					e.printStackTrace();
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,101 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+
+package com.yahoo.ycsb.generator;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A counter whose last value only counts the values that have been acknowledged: lastLong() is the
+ * highest value such that it and every value before it have been passed to acknowledge(). Used for
+ * inserts, so that operations choosing among the keys inserted so far do not choose a key whose
+ * insert is still in progress.
+ *
+ * Acknowledgements are recorded in a ring of slots, one per value in a window after the last value,
+ * and whichever client fills the slot after the last value advances it, with compare-and-set, past
+ * every slot filled since. A value a whole window ahead of the oldest value still in progress
+ * cannot be acknowledged until that one is; acknowledge() does not wait for it, so the caller can
+ * decide how long to keep trying.
+ */
+public class AcknowledgedCounterGenerator extends CounterGenerator
+{
+	/**
+	 * The number of values that can be outstanding at once.
+	 */
+	static final int WINDOW_SIZE=1<<18;
+	static final int WINDOW_MASK=WINDOW_SIZE-1;
+
+	/**
+	 * The value last acknowledged in each slot. A slot holds the value it was filled with, so a value
+	 * from an earlier turn of the ring never looks like an acknowledgement of this one.
+	 */
+	final AtomicLongArray _window;
+
+	final AtomicLong _limit;
+
+	/**
+	 * Create a counter that starts at countstart, with every value before it acknowledged.
+	 */
+	public AcknowledgedCounterGenerator(long countstart)
+	{
+		super(countstart);
+		_window=new AtomicLongArray(WINDOW_SIZE);
+		for (int i=0; i<WINDOW_SIZE; i++)
+		{
+			_window.set(i,-1);
+		}
+		_limit=new AtomicLong(countstart-1);
+	}
+
+	/**
+	 * The highest value that, with every value before it, has been acknowledged.
+	 */
+	@Override
+	public long lastLong()
+	{
+		return _limit.get();
+	}
+
+	/**
+	 * Acknowledge a value returned by nextLong(), once whatever it was used for is done.
+	 *
+	 * @return false if the value is a whole window ahead of the oldest value not yet acknowledged,
+	 * in which case it has not been acknowledged and the caller should try again later
+	 */
+	public boolean acknowledge(long value)
+	{
+		//the slot is still needed by the value a window before this one until that is passed
+		if (value-_limit.get()>WINDOW_SIZE)
+		{
+			return false;
+		}
+		_window.set((int)(value&WINDOW_MASK),value);
+
+		while (true)
+		{
+			long limit=_limit.get();
+			long next=limit+1;
+			if (_window.get((int)(next&WINDOW_MASK))!=next)
+			{
+				return true;
+			}
+			_limit.compareAndSet(limit,next);
+		}
+	}
+}
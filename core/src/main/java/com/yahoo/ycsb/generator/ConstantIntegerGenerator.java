@@ -32,7 +32,7 @@ public class ConstantIntegerGenerator extends IntegerGenerator {
 	}
 
 	@Override
-	public int nextInt() {
+	public long nextLong() {
 		return i;
 	}
 
@@ -25,7 +25,7 @@ package com.yahoo.ycsb.generator;
  */
 public abstract class IntegerGenerator extends Generator 
 {
-	int lastint;
+	long lastint;
 	
 	/**
 	 * Set the last value generated. IntegerGenerator subclasses must use this call
@@ -37,16 +37,33 @@ public abstract class IntegerGenerator extends Generator
 	}
 	
 	/**
-	 * Return the next value as an int. When overriding this method, be sure to call setLastString() properly, or the lastString() call won't work.
+	 * Set the last value generated, for generators whose values may not fit in an int.
 	 */
-	public abstract int nextInt();
+	protected void setLastLong(long last)
+	{
+		lastint=last;
+	}
+	
+	/**
+	 * Return the next value as an int. Values that do not fit in an int are truncated, so use nextLong()
+	 * for anything that may exceed 2^31, such as record numbers.
+	 */
+	public int nextInt()
+	{
+		return (int)nextLong();
+	}
+	
+	/**
+	 * Return the next value as a long. When overriding this method, be sure to call setLastLong() properly, or the lastString() call won't work.
+	 */
+	public abstract long nextLong();
 	
 	/**
 	 * Generate the next string in the distribution.
 	 */
 	public String nextString()
 	{
-		return ""+nextInt();
+		return ""+nextLong();
 	}
 	
 	/**
@@ -57,7 +74,7 @@ public abstract class IntegerGenerator extends Generator
 	@Override
 	public String lastString()
 	{
-		return ""+lastInt();
+		return ""+lastLong();
 	}
 	
 	/**
@@ -65,9 +82,18 @@ public abstract class IntegerGenerator extends Generator
 	 * IntegerGenerator subclasses always return ints for nextInt() (e.g. not arbitrary strings).
 	 */
 	public int lastInt()
+	{
+		return (int)lastLong();
+	}
+	
+	/**
+	 * Return the previous value generated by the distribution, as a long.
+	 */
+	public long lastLong()
 	{
 		return lastint;
 	}
+	
 	/**
 	 * Return the expected value (mean) of the values this generator will return.
 	 */
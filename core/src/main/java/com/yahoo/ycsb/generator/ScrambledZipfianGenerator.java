@@ -94,14 +94,6 @@ public class ScrambledZipfianGenerator extends IntegerGenerator
 	
 	/**************************************************************************************************/
 	
-	/**
-	 * Return the next int in the sequence.
-	 */
-	@Override
-	public int nextInt() {
-		return (int)nextLong();
-	}
-
 	/**
 	 * Return the next long in the sequence.
 	 */
@@ -109,7 +101,7 @@ public class ScrambledZipfianGenerator extends IntegerGenerator
 	{
 		long ret=gen.nextLong();
 		ret=_min+Utils.FNVhash64(ret)%_itemcount;
-		setLastInt((int)ret);
+		setLastLong(ret);
 		return ret;
 	}
 	
@@ -132,6 +124,6 @@ public class ScrambledZipfianGenerator extends IntegerGenerator
 	 */
 	@Override
 	public double mean() {
-		return ((double)(((long)_min) +(long)_max))/2.0;
+		return ((double)(_min + _max))/2.0;
 	}
 }
@@ -28,18 +28,30 @@ public class SkewedLatestGenerator extends IntegerGenerator
 	public SkewedLatestGenerator(CounterGenerator basis)
 	{
 		_basis=basis;
-		_zipfian=new ZipfianGenerator(_basis.lastInt());
-		nextInt();
+		_zipfian=new ZipfianGenerator(_basis.lastLong());
+		nextLong();
+	}
+
+	/**
+	 * Create a generator with the same basis as another, and a Zipfian distribution of its own that starts from the
+	 * other's, so that each thread can have a generator without computing zeta over all the items again.
+	 */
+	public SkewedLatestGenerator(SkewedLatestGenerator other)
+	{
+		_basis=other._basis;
+		_zipfian=new ZipfianGenerator(other._zipfian);
+		nextLong();
 	}
 
 	/**
 	 * Generate the next string in the distribution, skewed Zipfian favoring the items most recently returned by the basis generator.
+	 * The most recent item is the basis's last value, which for an AcknowledgedCounterGenerator is the last one acknowledged.
 	 */
-	public int nextInt()
+	public long nextLong()
 	{
-		int max=_basis.lastInt();
-		int nextint=max-_zipfian.nextInt(max);
-		setLastInt(nextint);
+		long max=_basis.lastLong();
+		long nextint=max-_zipfian.nextLong(max);
+		setLastLong(nextint);
 		return nextint;
 	}
 
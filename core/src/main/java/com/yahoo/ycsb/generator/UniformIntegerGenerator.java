@@ -26,7 +26,7 @@ import com.yahoo.ycsb.Utils;
  */
 public class UniformIntegerGenerator extends IntegerGenerator 
 {
-	int _lb,_ub,_interval;
+	long _lb,_ub,_interval;
 	
 	/**
 	 * Creates a generator that will return integers uniformly randomly from the interval [lb,ub] inclusive (that is, lb and ub are possible values)
@@ -34,7 +34,7 @@ public class UniformIntegerGenerator extends IntegerGenerator
 	 * @param lb the lower bound (inclusive) of generated values
 	 * @param ub the upper bound (inclusive) of generated values
 	 */
-	public UniformIntegerGenerator(int lb, int ub)
+	public UniformIntegerGenerator(long lb, long ub)
 	{
 		_lb=lb;
 		_ub=ub;
@@ -42,16 +42,35 @@ public class UniformIntegerGenerator extends IntegerGenerator
 	}
 	
 	@Override
-	public int nextInt() 
+	public long nextLong() 
 	{
-		int ret=Utils.random().nextInt(_interval)+_lb;
-		setLastInt(ret);
+		long ret=nextLong(Utils.random(),_interval)+_lb;
+		setLastLong(ret);
 		
 		return ret;
 	}
 
+	/**
+	 * A random number between 0 (inclusive) and n (exclusive), for n up to Long.MAX_VALUE.
+	 */
+	static long nextLong(Random random, long n)
+	{
+		if (n<=Integer.MAX_VALUE)
+		{
+			return random.nextInt((int)n);
+		}
+		//rejection sampling over the non-negative longs keeps the draw uniform
+		long bits,val;
+		do
+		{
+			bits=random.nextLong()>>>1;
+			val=bits%n;
+		} while (bits-val+(n-1)<0);
+		return val;
+	}
+
 	@Override
 	public double mean() {
-		return ((double)((long)(_lb + (long)_ub))) / 2.0;
+		return ((double)(_lb + _ub)) / 2.0;
 	}
 }
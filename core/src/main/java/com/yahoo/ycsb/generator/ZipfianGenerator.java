@@ -152,6 +152,31 @@ public class ZipfianGenerator extends IntegerGenerator
 		//System.out.println("XXXX 4 XXXX");
 	}
 	
+	/**
+	 * Create a zipfian generator over the same items as another one, starting from its current value of zeta, which is
+	 * much quicker than computing zeta again for a large number of items. The new generator has state of its own, so
+	 * it can be used by a different thread than the other one.
+	 * 
+	 * @param other The generator to copy.
+	 */
+	public ZipfianGenerator(ZipfianGenerator other)
+	{
+		synchronized(other)
+		{
+			items=other.items;
+			base=other.base;
+			zipfianconstant=other.zipfianconstant;
+			theta=other.theta;
+			zeta2theta=other.zeta2theta;
+			alpha=other.alpha;
+			zetan=other.zetan;
+			countforzeta=other.countforzeta;
+			eta=other.eta;
+			allowitemcountdecrease=other.allowitemcountdecrease;
+		}
+		nextInt();
+	}
+	
 	/**************************************************************************/
 	
 	/**
@@ -285,21 +310,10 @@ public class ZipfianGenerator extends IntegerGenerator
 		}
 
 		long ret=base+(long)((itemcount) * Math.pow(eta*u - eta + 1, alpha));
-		setLastInt((int)ret);
+		setLastLong(ret);
 		return ret;
 	}
 
-	/**
-	 * Return the next value, skewed by the Zipfian distribution. The 0th item will be the most popular, followed by the 1st, followed
-	 * by the 2nd, etc. (Or, if min != 0, the min-th item is the most popular, the min+1th item the next most popular, etc.) If you want the
-	 * popular items scattered throughout the item space, use ScrambledZipfianGenerator instead.
-	 */
-	@Override
-	public int nextInt() 
-	{
-		return (int)nextLong(items);
-	}
-
 	/**
 	 * Return the next value, skewed by the Zipfian distribution. The 0th item will be the most popular, followed by the 1st, followed
 	 * by the 2nd, etc. (Or, if min != 0, the min-th item is the most popular, the min+1th item the next most popular, etc.) If you want the
@@ -0,0 +1,284 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+
+package com.yahoo.ycsb.measurements;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.text.DecimalFormat;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.GZIPInputStream;
+
+import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
+import com.yahoo.ycsb.measurements.exporter.TextMeasurementsExporter;
+
+/**
+ * Reads a log written by HistogramLogWriter. A log that was cut short, e.g. because the client was
+ * killed, is read up to where it was cut.
+ *
+ * Run on its own, it works out the latency percentiles of each operation over a slice of the run:
+ *
+ *   java com.yahoo.ycsb.measurements.HistogramLogReader [-start s] [-end s] [-operation name] [-percentiles list] [-unit u] [-intervals] logfile
+ */
+public class HistogramLogReader
+{
+	/**
+	 * The histogram of one operation over one interval of the run.
+	 */
+	public static class Interval
+	{
+		/**
+		 * The start and end of the interval, in milliseconds since the epoch.
+		 */
+		public long _startms;
+		public long _endms;
+		public String _operation;
+		public LogHistogram _histogram;
+	}
+
+	DataInputStream _in;
+	long _startms;
+
+	public HistogramLogReader(InputStream in) throws IOException
+	{
+		_in=new DataInputStream(new GZIPInputStream(new BufferedInputStream(in)));
+		if (_in.readInt()!=HistogramLogWriter.MAGIC)
+		{
+			throw new IOException("Not a histogram log");
+		}
+		int version=_in.readInt();
+		if (version!=HistogramLogWriter.VERSION)
+		{
+			throw new IOException("Unknown histogram log version "+version);
+		}
+		_startms=_in.readLong();
+	}
+
+	/**
+	 * @return the time the log was started, in milliseconds since the epoch
+	 */
+	public long getStartTimeMs()
+	{
+		return _startms;
+	}
+
+	/**
+	 * @return the next interval histogram in the log, or null at the end of the log
+	 */
+	public Interval next() throws IOException
+	{
+		Interval interval=new Interval();
+		try
+		{
+			interval._startms=_startms+LogHistogram.readVarLong(_in);
+			interval._endms=interval._startms+LogHistogram.readVarLong(_in);
+			interval._operation=_in.readUTF();
+			interval._histogram=LogHistogram.read(_in);
+		}
+		catch (EOFException e)
+		{
+			return null;
+		}
+		return interval;
+	}
+
+	public void close() throws IOException
+	{
+		_in.close();
+	}
+
+	public static void usageMessage()
+	{
+		System.out.println("Usage: java com.yahoo.ycsb.measurements.HistogramLogReader [options] logfile");
+		System.out.println("Options:");
+		System.out.println("  -start s: leave out intervals that start less than s seconds into the log (default: 0)");
+		System.out.println("  -end s: leave out intervals that start s or more seconds into the log (default: no limit)");
+		System.out.println("  -operation name: only show this operation (default: all)");
+		System.out.println("  -percentiles list: the percentiles to show, comma separated (default: "+OneMeasurementHdrHistogram.PERCENTILES_DEFAULT+")");
+		System.out.println("  -unit u: show latencies in ns, us or ms (default: "+LatencyUnit.MEASUREMENT_UNIT_DEFAULT+")");
+		System.out.println("  -intervals: show the percentiles of each interval, rather than of the whole slice");
+	}
+
+	public static void main(String[] args)
+	{
+		double start=0;
+		double end=Double.MAX_VALUE;
+		String operation=null;
+		String percentilelist=OneMeasurementHdrHistogram.PERCENTILES_DEFAULT;
+		String unit=LatencyUnit.MEASUREMENT_UNIT_DEFAULT;
+		boolean intervals=false;
+		String file=null;
+
+		try
+		{
+			for (int i=0; i<args.length; i++)
+			{
+				if ((args[i].compareTo("-start")==0) && (i+1<args.length))
+				{
+					start=Double.parseDouble(args[++i]);
+				}
+				else if ((args[i].compareTo("-end")==0) && (i+1<args.length))
+				{
+					end=Double.parseDouble(args[++i]);
+				}
+				else if ((args[i].compareTo("-operation")==0) && (i+1<args.length))
+				{
+					operation=args[++i];
+				}
+				else if ((args[i].compareTo("-percentiles")==0) && (i+1<args.length))
+				{
+					percentilelist=args[++i];
+				}
+				else if ((args[i].compareTo("-unit")==0) && (i+1<args.length))
+				{
+					unit=args[++i];
+				}
+				else if (args[i].compareTo("-intervals")==0)
+				{
+					intervals=true;
+				}
+				else if ((file==null) && !args[i].startsWith("-"))
+				{
+					file=args[i];
+				}
+				else
+				{
+					usageMessage();
+					System.exit(0);
+				}
+			}
+			if (file==null)
+			{
+				usageMessage();
+				System.exit(0);
+			}
+
+			double[] percentiles=OneMeasurementHdrHistogram.parsePercentiles(percentilelist);
+			LatencyUnit latencyunit=LatencyUnit.parse(unit);
+			HistogramLogReader reader=new HistogramLogReader(new FileInputStream(file));
+			try
+			{
+				report(reader,(long)(start*1000),(end==Double.MAX_VALUE) ? Long.MAX_VALUE : (long)(end*1000),operation,percentiles,latencyunit,intervals);
+			}
+			finally
+			{
+				reader.close();
+			}
+		}
+		catch (NumberFormatException e)
+		{
+			System.out.println("Bad number: "+e.getMessage());
+			System.exit(0);
+		}
+		catch (IllegalArgumentException e)
+		{
+			System.out.println(e.getMessage());
+			System.exit(0);
+		}
+		catch (IOException e)
+		{
+			System.out.println("Could not read "+file+": "+e.getMessage());
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Print the percentiles of the intervals that start between startms and endms after the start of
+	 * the log: of each interval, or summed over the slice for each operation.
+	 */
+	static void report(HistogramLogReader reader, long startms, long endms, String operation, double[] percentiles, LatencyUnit latencyunit, boolean intervals) throws IOException
+	{
+		System.out.println("# Log started at "+new SimpleDateFormat("yyyy-MM-dd HH:mm:ss:SSS").format(new Date(reader.getStartTimeMs())));
+		DecimalFormat d=new DecimalFormat("#.###");
+		if (intervals)
+		{
+			String label="("+latencyunit.getLabel()+")";
+			StringBuilder header=new StringBuilder("# start(s), end(s), operation, operations, ops/sec, min"+label+", average"+label);
+			for (double p : percentiles)
+			{
+				header.append(", ").append(OneMeasurementHdrHistogram.percentileName(p)).append(label);
+			}
+			header.append(", max").append(label);
+			System.out.println(header);
+		}
+
+		TreeMap<String,LogHistogram> totals=new TreeMap<String,LogHistogram>();
+		Interval interval;
+		while ((interval=reader.next())!=null)
+		{
+			long offset=interval._startms-reader.getStartTimeMs();
+			if ((offset<startms) || (offset>=endms) || ((operation!=null) && (operation.compareTo(interval._operation)!=0)))
+			{
+				continue;
+			}
+			LogHistogram h=interval._histogram;
+			if (intervals)
+			{
+				StringBuilder line=new StringBuilder();
+				line.append(d.format(offset/1000.0)).append(", ");
+				line.append(d.format((interval._endms-reader.getStartTimeMs())/1000.0)).append(", ");
+				line.append(interval._operation).append(", ").append(h.getCount()).append(", ");
+				line.append(d.format(1000.0*h.getCount()/Math.max(1,interval._endms-interval._startms))).append(", ");
+				line.append(d.format(latencyunit.convert(h.getMin()))).append(", ").append(d.format(latencyunit.convert(h.getMean())));
+				for (double p : percentiles)
+				{
+					line.append(", ").append(d.format(latencyunit.convert(h.getValueAtPercentile(p))));
+				}
+				line.append(", ").append(d.format(latencyunit.convert(h.getMax())));
+				System.out.println(line);
+			}
+			else
+			{
+				LogHistogram total=totals.get(interval._operation);
+				if (total==null)
+				{
+					totals.put(interval._operation,h);
+				}
+				else
+				{
+					total.add(h);
+				}
+			}
+		}
+
+		if (!intervals)
+		{
+			MeasurementsExporter exporter=new TextMeasurementsExporter(System.out);
+			for (Map.Entry<String,LogHistogram> entry : totals.entrySet())
+			{
+				LogHistogram h=entry.getValue();
+				exporter.write(entry.getKey(), "Operations", h.getCount());
+				latencyunit.export(exporter, entry.getKey(), "AverageLatency", h.getMean());
+				latencyunit.export(exporter, entry.getKey(), "MinLatency", h.getMin());
+				latencyunit.export(exporter, entry.getKey(), "MaxLatency", h.getMax());
+				for (double p : percentiles)
+				{
+					latencyunit.export(exporter, entry.getKey(), OneMeasurementHdrHistogram.percentileName(p), h.getValueAtPercentile(p));
+				}
+			}
+			exporter.close();
+		}
+	}
+}
@@ -0,0 +1,134 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+
+package com.yahoo.ycsb.measurements;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * A thread to write the latency histogram of each operation to a histogram log (see
+ * HistogramLogWriter) at regular intervals while the clients run.
+ */
+public class HistogramLogThread extends Thread
+{
+	/**
+	 * The file to write the histogram log to (default: none, no log). Each phase of a run plan writes
+	 * a log of its own, named after the phase (see RunPlan).
+	 */
+	public static final String LOG_FILE_PROPERTY="histogram.log";
+
+	/**
+	 * How often to write the histograms to the log, in seconds (default: 1). Fractions of a second
+	 * are allowed.
+	 */
+	public static final String LOG_INTERVAL_PROPERTY="histogram.log.interval";
+	public static final String LOG_INTERVAL_PROPERTY_DEFAULT="1";
+
+	HistogramLogWriter _writer;
+	Measurements.IntervalSink _sink;
+	long _intervalms;
+	volatile boolean _done=false;
+
+	/**
+	 * Start a histogram log if the properties ask for one.
+	 *
+	 * @return the thread writing the log, already started, or null if there is no log
+	 */
+	public static HistogramLogThread start(Properties props) throws IOException
+	{
+		String file=props.getProperty(LOG_FILE_PROPERTY);
+		if (file==null)
+		{
+			return null;
+		}
+		long intervalms=(long)(1000*Double.parseDouble(props.getProperty(LOG_INTERVAL_PROPERTY,LOG_INTERVAL_PROPERTY_DEFAULT)));
+		HistogramLogThread thread=new HistogramLogThread(new HistogramLogWriter(new FileOutputStream(file),System.currentTimeMillis()),Math.max(1,intervalms));
+		thread.start();
+		return thread;
+	}
+
+	HistogramLogThread(HistogramLogWriter writer, long intervalms)
+	{
+		super("histogram log");
+		setDaemon(true);
+		_writer=writer;
+		_intervalms=intervalms;
+		_sink=Measurements.getMeasurements().addIntervalSink();
+	}
+
+	public void run()
+	{
+		long last=System.currentTimeMillis();
+		try
+		{
+			while (!_done)
+			{
+				try
+				{
+					sleep(Math.max(0,last+_intervalms-System.currentTimeMillis()));
+				}
+				catch (InterruptedException e)
+				{
+					//finish() wants the last interval written
+				}
+				long now=System.currentTimeMillis();
+				for (Map.Entry<String,LogHistogram> entry : Measurements.getMeasurements().takeIntervals(_sink).entrySet())
+				{
+					_writer.write(last,now,entry.getKey(),entry.getValue());
+				}
+				//so the interval is on disk even if the client is killed
+				_writer.flush();
+				last=now;
+			}
+		}
+		catch (IOException e)
+		{
+			System.err.println("Could not write the histogram log, error: "+e.getMessage());
+		}
+		finally
+		{
+			try
+			{
+				_writer.close();
+			}
+			catch (IOException e)
+			{
+				System.err.println("Could not close the histogram log, error: "+e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Write the last interval and close the log, once the clients are done.
+	 */
+	public void finish()
+	{
+		_done=true;
+		interrupt();
+		try
+		{
+			join();
+		}
+		catch (InterruptedException e)
+		{
+		}
+	}
+}
@@ -0,0 +1,113 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+
+package com.yahoo.ycsb.measurements;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes the latency histogram of each operation in each interval of a run to a compressed log, so
+ * that latency percentiles over any part of the run can be worked out afterwards (see
+ * HistogramLogReader) without keeping every measurement in memory.
+ *
+ * The log is a gzip stream. Each call to flush() ends a gzip member and the next write starts
+ * another, so what has been flushed is complete on disk while the run goes on, and a log cut short
+ * loses no more than the intervals written since.
+ *
+ * The log starts with a magic number, a version and the time the log was started, in milliseconds
+ * since the epoch; then each interval histogram follows as its start, in milliseconds since the
+ * log was started, its length in milliseconds, the name of the operation, and the histogram of its
+ * latencies in nanoseconds, as LogHistogram.write() writes it. (Version 1 logs held microseconds.)
+ */
+public class HistogramLogWriter
+{
+	static final int MAGIC=0x59434c47;
+	static final int VERSION=2;
+
+	OutputStream _file;
+	GZIPOutputStream _gzip;
+	DataOutputStream _out;
+	long _startms;
+
+	/**
+	 * Start a log, and write its header.
+	 *
+	 * @param out where to write the log; it is closed by close()
+	 * @param startms the time the log starts, in milliseconds since the epoch
+	 */
+	public HistogramLogWriter(OutputStream out, long startms) throws IOException
+	{
+		_file=out;
+		_startms=startms;
+		startMember();
+		_out.writeInt(MAGIC);
+		_out.writeInt(VERSION);
+		_out.writeLong(startms);
+		flush();
+	}
+
+	void startMember() throws IOException
+	{
+		_gzip=new GZIPOutputStream(_file);
+		_out=new DataOutputStream(_gzip);
+	}
+
+	/**
+	 * Write the histogram of an operation over an interval.
+	 *
+	 * @param startms the start of the interval, in milliseconds since the epoch
+	 * @param endms the end of the interval, in milliseconds since the epoch
+	 */
+	public void write(long startms, long endms, String operation, LogHistogram histogram) throws IOException
+	{
+		if (_out==null)
+		{
+			startMember();
+		}
+		LogHistogram.writeVarLong(_out,Math.max(0,startms-_startms));
+		LogHistogram.writeVarLong(_out,Math.max(0,endms-startms));
+		_out.writeUTF(operation);
+		histogram.write(_out);
+	}
+
+	/**
+	 * End the current gzip member, if anything has been written since the last flush, and flush the
+	 * output, so that everything written so far can be read back.
+	 */
+	public void flush() throws IOException
+	{
+		if (_out==null)
+		{
+			return;
+		}
+		_out.flush();
+		_gzip.finish();
+		_file.flush();
+		_out=null;
+		_gzip=null;
+	}
+
+	public void close() throws IOException
+	{
+		flush();
+		_file.close();
+	}
+}
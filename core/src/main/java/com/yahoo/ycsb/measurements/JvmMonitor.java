@@ -0,0 +1,381 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+
+package com.yahoo.ycsb.measurements;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.text.DecimalFormat;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
+
+/**
+ * Samples what the client's own JVM is doing while the clients run, so that high latencies caused
+ * by the client can be told from those caused by the database: time spent in garbage collection,
+ * the memory allocated and CPU time used by the client threads, and time spent at safepoints. The
+ * figures are shown in status lines and exported under "JVM".
+ *
+ * After each sample it also looks at the latencies measured since the previous one, and warns if
+ * the client spent at least as long in garbage collection as the operations that were slower than
+ * usual took; those outliers may well be the client's doing.
+ *
+ * Allocation needs a HotSpot-style JVM and safepoint time a HotSpot JVM that lets its internal
+ * runtime bean be read; figures the JVM does not give are left out.
+ */
+public class JvmMonitor extends Thread
+{
+	/**
+	 * Whether to monitor the client's JVM (default: false).
+	 */
+	public static final String MONITOR_PROPERTY="jvm.monitor";
+
+	/**
+	 * How often to sample the JVM and look for outliers, in seconds (default: 1).
+	 */
+	public static final String INTERVAL_PROPERTY="jvm.monitor.interval";
+	public static final String INTERVAL_PROPERTY_DEFAULT="1";
+
+	/**
+	 * The percentile of the latency of an operation so far above which an operation counts as an
+	 * outlier (default: 99).
+	 */
+	public static final String OUTLIER_PERCENTILE_PROPERTY="jvm.monitor.outlierpercentile";
+	public static final String OUTLIER_PERCENTILE_PROPERTY_DEFAULT="99";
+
+	/**
+	 * How many operations of a kind have to be measured before there is a percentile to compare to.
+	 */
+	static final long MIN_HISTORY=100;
+
+	/**
+	 * What the JVM had done up to one point in time. Figures the JVM does not give are -1.
+	 */
+	static class Snapshot
+	{
+		long _timens;
+		long _gccount;
+		long _gctimems;
+		long _allocatedbytes;
+		long _cputimens;
+		long _safepointms;
+	}
+
+	Collection<Thread> _threads;
+	ThreadMXBean _threadbean;
+	com.sun.management.ThreadMXBean _allocationbean;
+	Object _runtimebean;
+	Method _safepointtime;
+
+	/**
+	 * The last CPU time and allocation seen of each client thread, so that they still count once the
+	 * thread has finished.
+	 */
+	HashMap<Long,long[]> _threadtotals=new HashMap<Long,long[]>();
+
+	long _intervalms;
+	double _outlierpercentile;
+	Measurements.IntervalSink _sink;
+	TreeMap<String,LogHistogram> _history=new TreeMap<String,LogHistogram>();
+	long _outlierintervals=0;
+
+	Snapshot _start;
+	Snapshot _laststatus;
+	Snapshot _end;
+	volatile boolean _done=false;
+
+	/**
+	 * Start monitoring the JVM if the properties ask for it.
+	 *
+	 * @param threads the client threads
+	 * @return the monitor, already started, or null if the JVM is not to be monitored
+	 */
+	public static JvmMonitor start(Properties props, Collection<Thread> threads)
+	{
+		if (!Boolean.parseBoolean(props.getProperty(MONITOR_PROPERTY,"false")))
+		{
+			return null;
+		}
+		long intervalms=(long)(1000*Double.parseDouble(props.getProperty(INTERVAL_PROPERTY,INTERVAL_PROPERTY_DEFAULT)));
+		double percentile=Double.parseDouble(props.getProperty(OUTLIER_PERCENTILE_PROPERTY,OUTLIER_PERCENTILE_PROPERTY_DEFAULT));
+		JvmMonitor monitor=new JvmMonitor(threads,Math.max(1,intervalms),percentile);
+		monitor.start();
+		return monitor;
+	}
+
+	JvmMonitor(Collection<Thread> threads, long intervalms, double outlierpercentile)
+	{
+		super("JVM monitor");
+		setDaemon(true);
+		_threads=threads;
+		_intervalms=intervalms;
+		_outlierpercentile=outlierpercentile;
+
+		_threadbean=ManagementFactory.getThreadMXBean();
+		if (_threadbean.isThreadCpuTimeSupported() && !_threadbean.isThreadCpuTimeEnabled())
+		{
+			_threadbean.setThreadCpuTimeEnabled(true);
+		}
+		if (_threadbean instanceof com.sun.management.ThreadMXBean)
+		{
+			com.sun.management.ThreadMXBean bean=(com.sun.management.ThreadMXBean)_threadbean;
+			if (bean.isThreadAllocatedMemorySupported())
+			{
+				bean.setThreadAllocatedMemoryEnabled(true);
+				_allocationbean=bean;
+			}
+		}
+		try
+		{
+			_runtimebean=Class.forName("sun.management.ManagementFactoryHelper").getMethod("getHotspotRuntimeMBean").invoke(null);
+			_safepointtime=_runtimebean.getClass().getMethod("getTotalSafepointTime");
+			_safepointtime.setAccessible(true);
+			_safepointtime.invoke(_runtimebean);
+		}
+		catch (Exception e)
+		{
+			//not a HotSpot JVM, or it does not let us in
+			_safepointtime=null;
+		}
+
+		_sink=Measurements.getMeasurements().addIntervalSink();
+		_start=snapshot();
+		_laststatus=_start;
+	}
+
+	/**
+	 * @return what the JVM has done up to now
+	 */
+	synchronized Snapshot snapshot()
+	{
+		Snapshot s=new Snapshot();
+		s._timens=System.nanoTime();
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+		{
+			s._gccount+=Math.max(0,gc.getCollectionCount());
+			s._gctimems+=Math.max(0,gc.getCollectionTime());
+		}
+
+		for (Thread t : _threads)
+		{
+			long[] totals=updateThread(t);
+			s._cputimens+=totals[0];
+			s._allocatedbytes+=totals[1];
+		}
+		if (!_threadbean.isThreadCpuTimeSupported())
+		{
+			s._cputimens=-1;
+		}
+		if (_allocationbean==null)
+		{
+			s._allocatedbytes=-1;
+		}
+
+		s._safepointms=-1;
+		if (_safepointtime!=null)
+		{
+			try
+			{
+				s._safepointms=((Number)_safepointtime.invoke(_runtimebean)).longValue();
+			}
+			catch (Exception e)
+			{
+				_safepointtime=null;
+			}
+		}
+		return s;
+	}
+
+	/**
+	 * Look at the CPU time and allocation of a client thread.
+	 *
+	 * @return the CPU time and allocation the thread was last seen to have used
+	 */
+	long[] updateThread(Thread t)
+	{
+		long id=t.getId();
+		long[] totals=_threadtotals.get(id);
+		if (totals==null)
+		{
+			totals=new long[] {0,0};
+			_threadtotals.put(id,totals);
+		}
+		//a thread that has not started or has finished gives -1; keep what it had used by then
+		long cpu=_threadbean.isThreadCpuTimeSupported() ? _threadbean.getThreadCpuTime(id) : -1;
+		if (cpu>=0)
+		{
+			totals[0]=cpu;
+		}
+		if (_allocationbean!=null)
+		{
+			long allocated=_allocationbean.getThreadAllocatedBytes(id);
+			if (allocated>=0)
+			{
+				totals[1]=allocated;
+			}
+		}
+		return totals;
+	}
+
+	/**
+	 * Called by each client thread as it finishes, so that what it used is still counted after.
+	 */
+	public synchronized void threadFinished(Thread t)
+	{
+		updateThread(t);
+	}
+
+	public void run()
+	{
+		Snapshot last=_start;
+		while (!_done)
+		{
+			try
+			{
+				sleep(_intervalms);
+			}
+			catch (InterruptedException e)
+			{
+				//finish() wants the last interval looked at
+			}
+			Snapshot now=snapshot();
+			checkOutliers(last,now,Measurements.getMeasurements().takeIntervals(_sink));
+			last=now;
+		}
+	}
+
+	/**
+	 * Warn if the client spent long enough in garbage collection between two snapshots to account
+	 * for the outliers among the latencies measured between them.
+	 */
+	void checkOutliers(Snapshot from, Snapshot to, TreeMap<String,LogHistogram> intervals)
+	{
+		long gcns=(to._gctimems-from._gctimems)*1000000L;
+		boolean overlapped=false;
+		for (Map.Entry<String,LogHistogram> entry : intervals.entrySet())
+		{
+			LogHistogram history=_history.get(entry.getKey());
+			if (history==null)
+			{
+				history=new LogHistogram();
+				_history.put(entry.getKey(),history);
+			}
+			if ((gcns>0) && (history.getCount()>=MIN_HISTORY))
+			{
+				long threshold=history.getValueAtPercentile(_outlierpercentile);
+				long outliers=entry.getValue().getCountAbove(threshold);
+				if ((outliers>0) && (gcns>=threshold))
+				{
+					DecimalFormat d=new DecimalFormat("#.###");
+					System.err.println("WARNING: the client spent "+(gcns/1000000)+" ms in garbage collection between "+
+							d.format((from._timens-_start._timens)/1e9)+" and "+d.format((to._timens-_start._timens)/1e9)+
+							" sec into the run, when "+outliers+" "+entry.getKey()+" operations took longer than their "+
+							d.format(_outlierpercentile)+"th percentile of "+d.format(threshold/1e6)+" ms; the client may have caused them.");
+					overlapped=true;
+				}
+			}
+			history.add(entry.getValue());
+		}
+		if (overlapped)
+		{
+			_outlierintervals++;
+		}
+	}
+
+	/**
+	 * Stop monitoring, once the clients are done.
+	 */
+	public void finish()
+	{
+		_done=true;
+		interrupt();
+		try
+		{
+			join();
+		}
+		catch (InterruptedException e)
+		{
+		}
+		_end=snapshot();
+	}
+
+	/**
+	 * Return a summary of what the JVM did since the last call, for a status line.
+	 */
+	public String getStatus()
+	{
+		Snapshot now=snapshot();
+		Snapshot last;
+		synchronized (this)
+		{
+			last=_laststatus;
+			_laststatus=now;
+		}
+		DecimalFormat d=new DecimalFormat("#.##");
+		double seconds=Math.max(1,now._timens-last._timens)/1e9;
+		StringBuilder status=new StringBuilder("[JVM: ");
+		status.append(now._gccount-last._gccount).append(" GCs ").append(now._gctimems-last._gctimems).append(" ms");
+		if (now._allocatedbytes>=0)
+		{
+			status.append(", alloc ").append(d.format((now._allocatedbytes-last._allocatedbytes)/seconds/(1024*1024))).append(" MB/s");
+		}
+		if (now._cputimens>=0)
+		{
+			status.append(", client CPU ").append(d.format(100.0*(now._cputimens-last._cputimens)/(seconds*1e9))).append("%");
+		}
+		if (now._safepointms>=0)
+		{
+			status.append(", safepoints ").append(now._safepointms-last._safepointms).append(" ms");
+		}
+		status.append("] ");
+		return status.toString();
+	}
+
+	/**
+	 * Export what the JVM did over the whole run. Call finish() first.
+	 */
+	public void exportMeasurements(MeasurementsExporter exporter) throws IOException
+	{
+		Snapshot end=(_end==null) ? snapshot() : _end;
+		double seconds=Math.max(1,end._timens-_start._timens)/1e9;
+		exporter.write("JVM", "GcCount", end._gccount-_start._gccount);
+		exporter.write("JVM", "GcTime(ms)", end._gctimems-_start._gctimems);
+		if (end._allocatedbytes>=0)
+		{
+			exporter.write("JVM", "AllocatedBytes", end._allocatedbytes-_start._allocatedbytes);
+			exporter.write("JVM", "AllocationRate(MB/sec)", (end._allocatedbytes-_start._allocatedbytes)/seconds/(1024*1024));
+		}
+		if (end._cputimens>=0)
+		{
+			exporter.write("JVM", "ClientThreadCpuTime(ms)", (end._cputimens-_start._cputimens)/1000000);
+			exporter.write("JVM", "ClientThreadCpuUtilization(%)", 100.0*(end._cputimens-_start._cputimens)/(seconds*1e9));
+		}
+		if (end._safepointms>=0)
+		{
+			exporter.write("JVM", "SafepointTime(ms)", end._safepointms-_start._safepointms);
+		}
+		exporter.write("JVM", "GcOutlierIntervals", _outlierintervals);
+	}
+}
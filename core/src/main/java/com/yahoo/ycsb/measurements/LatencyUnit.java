@@ -0,0 +1,124 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+
+package com.yahoo.ycsb.measurements;
+
+import java.io.IOException;
+import java.util.Properties;
+
+import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
+
+/**
+ * The unit latencies are exported in. Latencies are measured and kept in nanoseconds, and only
+ * converted when they are exported.
+ */
+public class LatencyUnit
+{
+	/**
+	 * The unit to export latencies in: "ns", "us" (the default) or "ms".
+	 */
+	public static final String MEASUREMENT_UNIT="measurement.unit";
+	public static final String MEASUREMENT_UNIT_DEFAULT="us";
+
+	public static final LatencyUnit NANOSECONDS=new LatencyUnit("ns",1L);
+	public static final LatencyUnit MICROSECONDS=new LatencyUnit("us",1000L);
+	public static final LatencyUnit MILLISECONDS=new LatencyUnit("ms",1000000L);
+
+	String _label;
+	long _nanos;
+
+	LatencyUnit(String label, long nanos)
+	{
+		_label=label;
+		_nanos=nanos;
+	}
+
+	/**
+	 * @throws IllegalArgumentException if the unit is not one of "ns", "us" or "ms"
+	 */
+	public static LatencyUnit parse(String label)
+	{
+		if (label.compareTo("ns")==0)
+		{
+			return NANOSECONDS;
+		}
+		else if (label.compareTo("us")==0)
+		{
+			return MICROSECONDS;
+		}
+		else if (label.compareTo("ms")==0)
+		{
+			return MILLISECONDS;
+		}
+		throw new IllegalArgumentException(MEASUREMENT_UNIT+" must be \"ns\", \"us\" or \"ms\", not \""+label+"\"");
+	}
+
+	/**
+	 * The unit the properties ask for.
+	 */
+	public static LatencyUnit fromProperties(Properties props)
+	{
+		return parse(props.getProperty(MEASUREMENT_UNIT,MEASUREMENT_UNIT_DEFAULT));
+	}
+
+	/**
+	 * @return the unit's abbreviation, e.g. "us"
+	 */
+	public String getLabel()
+	{
+		return _label;
+	}
+
+	/**
+	 * Convert a latency in nanoseconds to this unit. A negative value, such as the -1 a minimum or
+	 * maximum with no samples is given as, is not a latency and is passed through unscaled.
+	 */
+	public double convert(double nanos)
+	{
+		if (nanos<0)
+		{
+			return nanos;
+		}
+		return nanos/_nanos;
+	}
+
+	/**
+	 * Export a latency given in nanoseconds under the measurement name followed by the unit, e.g.
+	 * "MaxLatency(us)". Whole numbers of nanoseconds, and negative values (see convert()), are
+	 * written as such.
+	 */
+	public void export(MeasurementsExporter exporter, String metric, String measurement, long nanos) throws IOException
+	{
+		if ((_nanos==1) || (nanos<0))
+		{
+			exporter.write(metric, measurement+"("+_label+")", nanos);
+		}
+		else
+		{
+			exporter.write(metric, measurement+"("+_label+")", convert(nanos));
+		}
+	}
+
+	/**
+	 * Export a latency given in nanoseconds under the measurement name followed by the unit.
+	 */
+	public void export(MeasurementsExporter exporter, String metric, String measurement, double nanos) throws IOException
+	{
+		exporter.write(metric, measurement+"("+_label+")", convert(nanos));
+	}
+}
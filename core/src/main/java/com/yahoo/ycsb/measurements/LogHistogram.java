@@ -0,0 +1,379 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.measurements;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A histogram of non-negative values with buckets whose width grows with the value, so that it
+ * covers the whole range of a long with a fixed relative error. Values below 2^subbucketbits each
+ * have a bucket of their own; above that, every power of two is split into 2^(subbucketbits-1)
+ * equal buckets, so a recorded value is off by less than 1 part in 2^(subbucketbits-1). The
+ * default of 7 bits is within about 1.6%. The counters only go up to the bucket of the largest value
+ * recorded, so a histogram of latencies up to a second in microseconds is about a thousand counters.
+ *
+ * Histograms with the same layout can be added together, so measurements taken separately (per
+ * thread, or per interval) can be merged. Not thread safe.
+ */
+public class LogHistogram
+{
+	static final int DEFAULT_SUB_BUCKET_BITS=7;
+
+	final int _subbucketbits;
+	final int _subbuckets;
+	final int _halfsubbuckets;
+	final int _buckets;
+
+	long[] _counts;
+	long _count=0;
+	long _total=0;
+	long _min=Long.MAX_VALUE;
+	long _max=-1;
+
+	public LogHistogram()
+	{
+		this(DEFAULT_SUB_BUCKET_BITS);
+	}
+
+	/**
+	 * @param subbucketbits the number of bits of each value that are kept, between 2 and 20
+	 */
+	public LogHistogram(int subbucketbits)
+	{
+		if ((subbucketbits<2) || (subbucketbits>20))
+		{
+			throw new IllegalArgumentException("subbucketbits must be between 2 and 20, not "+subbucketbits);
+		}
+		_subbucketbits=subbucketbits;
+		_subbuckets=1<<subbucketbits;
+		_halfsubbuckets=_subbuckets/2;
+		_buckets=(64-subbucketbits)*_halfsubbuckets+_halfsubbuckets;
+		_counts=new long[_subbuckets];
+	}
+
+	/**
+	 * The number of sub-bucket bits needed to keep the given number of significant decimal digits
+	 * of each value, as HdrHistogram counts precision.
+	 */
+	public static int subBucketBitsForDigits(int digits)
+	{
+		long largest=2*(long)Math.pow(10,digits);
+		return 64-Long.numberOfLeadingZeros(largest-1);
+	}
+
+	/**
+	 * The bucket a value falls in.
+	 */
+	int bucketOf(long value)
+	{
+		if (value<_subbuckets)
+		{
+			return (int)value;
+		}
+		//the position of the highest bit decides the power of two; the next bits pick the sub-bucket
+		int shift=64-Long.numberOfLeadingZeros(value)-_subbucketbits;
+		return shift*_halfsubbuckets+(int)(value>>>shift);
+	}
+
+	/**
+	 * The smallest value that falls in a bucket.
+	 */
+	long lowestValueIn(int bucket)
+	{
+		if (bucket<_subbuckets)
+		{
+			return bucket;
+		}
+		int shift=bucket/_halfsubbuckets-1;
+		long sub=bucket-shift*_halfsubbuckets;
+		return sub<<shift;
+	}
+
+	/**
+	 * The largest value that falls in a bucket.
+	 */
+	long highestValueIn(int bucket)
+	{
+		if (bucket+1>=_buckets)
+		{
+			return Long.MAX_VALUE;
+		}
+		return lowestValueIn(bucket+1)-1;
+	}
+
+	void grow(int bucket)
+	{
+		_counts=Arrays.copyOf(_counts,Math.min(_buckets,Math.max(bucket+1,2*_counts.length)));
+	}
+
+	/**
+	 * Record a value. Negative values are recorded as zero.
+	 */
+	public void record(long value)
+	{
+		if (value<0)
+		{
+			value=0;
+		}
+		int bucket=bucketOf(value);
+		if (bucket>=_counts.length)
+		{
+			grow(bucket);
+		}
+		_counts[bucket]++;
+		_count++;
+		_total+=value;
+		if (value<_min)
+		{
+			_min=value;
+		}
+		if (value>_max)
+		{
+			_max=value;
+		}
+	}
+
+	/**
+	 * Add the values recorded in another histogram to this one.
+	 */
+	public void add(LogHistogram other)
+	{
+		if (other._subbucketbits!=_subbucketbits)
+		{
+			throw new IllegalArgumentException("Cannot add a histogram with "+other._subbucketbits+" sub-bucket bits to one with "+_subbucketbits);
+		}
+		if (other._count==0)
+		{
+			return;
+		}
+		if (other._counts.length>_counts.length)
+		{
+			grow(other._counts.length-1);
+		}
+		for (int i=0; i<other._counts.length; i++)
+		{
+			_counts[i]+=other._counts[i];
+		}
+		_count+=other._count;
+		_total+=other._total;
+		if (other._min<_min)
+		{
+			_min=other._min;
+		}
+		if (other._max>_max)
+		{
+			_max=other._max;
+		}
+	}
+
+	/**
+	 * Forget all recorded values.
+	 */
+	public void reset()
+	{
+		if (_count==0)
+		{
+			return;
+		}
+		Arrays.fill(_counts,0);
+		_count=0;
+		_total=0;
+		_min=Long.MAX_VALUE;
+		_max=-1;
+	}
+
+	public long getCount()
+	{
+		return _count;
+	}
+
+	public long getTotal()
+	{
+		return _total;
+	}
+
+	/**
+	 * @return the smallest value recorded, or -1 if there are none
+	 */
+	public long getMin()
+	{
+		return (_count==0) ? -1 : _min;
+	}
+
+	/**
+	 * @return the largest value recorded, or -1 if there are none
+	 */
+	public long getMax()
+	{
+		return _max;
+	}
+
+	public double getMean()
+	{
+		return (_count==0) ? 0 : ((double)_total)/((double)_count);
+	}
+
+	/**
+	 * Return the value below which the given percentage of the recorded values fall: the highest value
+	 * of the bucket the percentile lands in, but no more than the largest value recorded.
+	 *
+	 * @param percentile the percentile, between 0 and 100
+	 * @return the value, or -1 if there are no values
+	 */
+	public long getValueAtPercentile(double percentile)
+	{
+		if (_count==0)
+		{
+			return -1;
+		}
+		long needed=(long)Math.ceil(_count*Math.min(percentile,100.0)/100.0);
+		if (needed<1)
+		{
+			needed=1;
+		}
+		long seen=0;
+		for (int i=0; i<_counts.length; i++)
+		{
+			seen+=_counts[i];
+			if (seen>=needed)
+			{
+				return Math.min(highestValueIn(i),_max);
+			}
+		}
+		return _max;
+	}
+
+	/**
+	 * Return the number of values recorded that are above the given value. Values in the same bucket
+	 * as it are not counted, so this may be short by that bucket.
+	 */
+	public long getCountAbove(long value)
+	{
+		long count=0;
+		for (int i=_counts.length-1; (i>=0) && (lowestValueIn(i)>value); i--)
+		{
+			count+=_counts[i];
+		}
+		return count;
+	}
+
+	/**
+	 * Write the histogram compactly: only the buckets that have values, each as its distance from
+	 * the previous one and its count, in a variable number of bytes.
+	 */
+	public void write(DataOutput out) throws IOException
+	{
+		out.writeByte(_subbucketbits);
+		int used=0;
+		for (int i=0; i<_counts.length; i++)
+		{
+			if (_counts[i]!=0)
+			{
+				used++;
+			}
+		}
+		writeVarLong(out,used);
+		int previous=-1;
+		for (int i=0; i<_counts.length; i++)
+		{
+			if (_counts[i]!=0)
+			{
+				writeVarLong(out,i-previous);
+				writeVarLong(out,_counts[i]);
+				previous=i;
+			}
+		}
+		if (used>0)
+		{
+			writeVarLong(out,_min);
+			writeVarLong(out,_max);
+			writeVarLong(out,_total);
+		}
+	}
+
+	/**
+	 * Read a histogram written by write().
+	 */
+	public static LogHistogram read(DataInput in) throws IOException
+	{
+		LogHistogram h;
+		try
+		{
+			h=new LogHistogram(in.readByte());
+		}
+		catch (IllegalArgumentException e)
+		{
+			throw new IOException("Corrupt histogram: "+e.getMessage());
+		}
+		long used=readVarLong(in);
+		int bucket=-1;
+		for (long i=0; i<used; i++)
+		{
+			bucket+=(int)readVarLong(in);
+			if ((bucket<0) || (bucket>=h._buckets))
+			{
+				throw new IOException("Corrupt histogram: bucket "+bucket+" out of range");
+			}
+			if (bucket>=h._counts.length)
+			{
+				h.grow(bucket);
+			}
+			h._counts[bucket]=readVarLong(in);
+			h._count+=h._counts[bucket];
+		}
+		if (used>0)
+		{
+			h._min=readVarLong(in);
+			h._max=readVarLong(in);
+			h._total=readVarLong(in);
+		}
+		return h;
+	}
+
+	/**
+	 * Write a non-negative long seven bits at a time, low bits first, with the top bit of each byte
+	 * set if more follow.
+	 */
+	static void writeVarLong(DataOutput out, long value) throws IOException
+	{
+		while ((value&~0x7FL)!=0)
+		{
+			out.writeByte((int)((value&0x7F)|0x80));
+			value>>>=7;
+		}
+		out.writeByte((int)value);
+	}
+
+	static long readVarLong(DataInput in) throws IOException
+	{
+		long value=0;
+		for (int shift=0; shift<64; shift+=7)
+		{
+			int b=in.readUnsignedByte();
+			value|=((long)(b&0x7F))<<shift;
+			if ((b&0x80)==0)
+			{
+				return value;
+			}
+		}
+		throw new IOException("Corrupt histogram: number too long");
+	}
+}
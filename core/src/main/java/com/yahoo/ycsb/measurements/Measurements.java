@@ -18,8 +18,15 @@
 package com.yahoo.ycsb.measurements;
 
 import java.io.IOException;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Map;
 import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
 
@@ -31,17 +38,83 @@ import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
  */
 public class Measurements
 {
+	/**
+	 * How to keep the latencies of each operation: "histogram" (1 ms buckets, the default),
+	 * "hdrhistogram" (logarithmic buckets with nanosecond resolution and configurable percentiles)
+	 * or "timeseries" (the average latency over time).
+	 */
 	private static final String MEASUREMENT_TYPE = "measurementtype";
 
 	private static final String MEASUREMENT_TYPE_DEFAULT = "histogram";
 
+	/**
+	 * What to measure: "op" for the time each operation actually took, "intended" for the time from
+	 * when the operation was scheduled to start (see the target throughput) until it completed, or
+	 * "both". Intended latencies are reported under the operation name prefixed with "Intended-".
+	 */
+	public static final String MEASUREMENT_INTERVAL = "measurement.interval";
+
+	private static final String MEASUREMENT_INTERVAL_DEFAULT = "op";
+
+	/**
+	 * Whether to also keep the operation latencies corrected for coordinated omission (default:
+	 * false). When a target throughput is set, an operation that takes longer than the interval
+	 * between operations holds up the ones due after it; the corrected measurements add the
+	 * latencies those operations would have seen (see OneMeasurement.measure(long,long)). They are
+	 * reported under the operation name prefixed with "Corrected-", next to the raw latencies, and
+	 * only for operations that were throttled and measured with measurement.interval=op or both.
+	 */
+	public static final String MEASUREMENT_CORRECTION = "measurement.correction";
+
+	private static final String MEASUREMENT_CORRECTION_DEFAULT = "false";
+
+	/**
+	 * Whether to break the time of each steady-state operation down into spans (default: false):
+	 * generating the key, generating the values, the binding serializing the request, the call into
+	 * the binding, the binding decoding the result, and everything else the client did for the
+	 * operation. Each span is reported under the name returned by spanName(), e.g.
+	 * "READ-SPAN(KeyGeneration)". The call span leaves out the serialization and decoding spans the
+	 * binding marks within it. Spans are only attributed correctly when each client has one
+	 * operation in flight at a time. An operation issued through an AsyncDB that does not complete
+	 * within the call that issued it has no call span: it completes after the client has moved on,
+	 * on whichever thread the binding completes it.
+	 */
+	public static final String MEASUREMENT_SPANS = "measurement.spans";
+
+	private static final String MEASUREMENT_SPANS_DEFAULT = "false";
+
+	/**
+	 * The spans of an operation.
+	 */
+	public static final int SPAN_KEY=0;
+	public static final int SPAN_VALUE=1;
+	public static final int SPAN_SERIALIZE=2;
+	public static final int SPAN_CALL=3;
+	public static final int SPAN_DECODE=4;
+	static final int SPAN_OTHER=5;
+	static final String[] SPAN_NAMES={"KeyGeneration","ValueGeneration","Serialization","Call","Decode","Other"};
+
 	static Measurements singleton=null;
 	
 	static Properties measurementproperties=null;
 	
-	public static void setProperties(Properties props)
+	/**
+	 * Set the properties for measurements. If measurements have already been taken (by an earlier
+	 * phase of a run plan), they are discarded and the collector is reconfigured from props.
+	 *
+	 * @throws IllegalArgumentException if the measurement properties are not valid
+	 */
+	public synchronized static void setProperties(Properties props)
 	{
 		measurementproperties=props;
+		if (singleton!=null)
+		{
+			singleton.reset(props);
+		}
+		else
+		{
+			singleton=new Measurements(props);
+		}
 	}
 
       /**
@@ -56,60 +129,708 @@ public class Measurements
 		return singleton;
 	}
 
-	HashMap<String,OneMeasurement> data;
-	boolean histogram=true;
+	/**
+	 * Return the singleton Measurements object, or null if no phase has set it up yet.
+	 */
+	synchronized static Measurements peekMeasurements()
+	{
+		return singleton;
+	}
+
+	/**
+	 * The kinds of measurement kept of each operation, and the prefixes they are reported under.
+	 */
+	static final int MEASURED=0;
+	static final int INTENDED=1;
+	static final int CORRECTED=2;
+	static final int WARMUP_MEASURED=3;
+	static final int WARMUP_INTENDED=4;
+	static final int WARMUP_CORRECTED=5;
+	static final String[] PREFIXES={"","Intended-","Corrected-","WARMUP-","WARMUP-Intended-","WARMUP-Corrected-"};
+
+	String measurementtype;
+	LatencyUnit latencyunit;
+	boolean measureop=true;
+	boolean measureintended=false;
+	boolean correct=false;
+	boolean spans=false;
+
+	/**
+	 * While warming up, measurements are kept separately and reported under names prefixed
+	 * with "WARMUP-", so the steady-state measurements start empty when the warm-up ends.
+	 */
+	volatile boolean warmup=false;
+	long warmupdeadlinens;
+	long warmupops;
+	AtomicLong warmupopsdone;
+	long warmupstartms;
+	long warmupendms;
+
+	/**
+	 * What one thread has recorded of one operation. Only that thread records into it, without
+	 * locking. The measurements are merged with the other threads' when they are reported, once the
+	 * threads are done; the latencies and errors of the current status interval are also read while
+	 * the thread runs, so they are kept twice over and the thread's phaser decides which copy it
+	 * records into and which the status thread may read.
+	 */
+	static class OperationRecorder
+	{
+		final OneMeasurement[] _measurements=new OneMeasurement[PREFIXES.length];
+		final LogHistogram[] _interval={new LogHistogram(),new LogHistogram()};
+		final ReturnCodes[] _intervalerrors={new ReturnCodes(),new ReturnCodes()};
+
+		/**
+		 * The number of keys the steady-state operations covered, and their size in bytes, for batch
+		 * operations.
+		 */
+		long _keys=0;
+		long _bytes=0;
+
+		/**
+		 * The measurements of the operations that failed, kept apart from those that succeeded: the
+		 * return codes seen so far and, for each, a measurement of each kind. There are seldom more
+		 * than a few codes, so finding one is a short scan, which allocates nothing.
+		 */
+		int[] _failedcodes=new int[0];
+		OneMeasurement[][] _failedmeasurements=new OneMeasurement[0][];
+
+		OneMeasurement[] failed(int code)
+		{
+			for (int i=0; i<_failedcodes.length; i++)
+			{
+				if (_failedcodes[i]==code)
+				{
+					return _failedmeasurements[i];
+				}
+			}
+			int n=_failedcodes.length;
+			int[] codes=new int[n+1];
+			OneMeasurement[][] measurements=new OneMeasurement[n+1][];
+			System.arraycopy(_failedcodes,0,codes,0,n);
+			System.arraycopy(_failedmeasurements,0,measurements,0,n);
+			codes[n]=code;
+			measurements[n]=new OneMeasurement[PREFIXES.length];
+			_failedcodes=codes;
+			_failedmeasurements=measurements;
+			return measurements[n];
+		}
+	}
+
+	/**
+	 * Everything one thread has recorded.
+	 */
+	static class ThreadRecorder
+	{
+		final WriterReaderPhaser _phaser=new WriterReaderPhaser();
+		final ConcurrentHashMap<String,OperationRecorder> _operations=new ConcurrentHashMap<String,OperationRecorder>();
+
+		/**
+		 * The time spent so far in each span of the operation the thread is running, which spans it
+		 * has entered (a bit for each), and the operation they are attributed to, if it is known yet.
+		 * Then the spans of each operation, which are only read once the thread is done.
+		 */
+		final long[] _spans=new long[SPAN_NAMES.length];
+		int _spansentered;
+		String _spanoperation;
+		final HashMap<String,OneMeasurement[]> _spanmeasurements=new HashMap<String,OneMeasurement[]>();
+
+		OperationRecorder get(String operation)
+		{
+			OperationRecorder recorder=_operations.get(operation);
+			if (recorder==null)
+			{
+				recorder=new OperationRecorder();
+				_operations.put(operation,recorder);
+			}
+			return recorder;
+		}
+	}
+
+	/**
+	 * The recorders of all the threads that have recorded anything, including threads that have
+	 * since finished.
+	 */
+	ConcurrentLinkedQueue<ThreadRecorder> recorders;
+
+	ThreadLocal<ThreadRecorder> tlrecorder;
+
+	/**
+	 * Latencies and errors of each operation since the last status line, whether or not the client
+	 * is warming up, summed over the threads.
+	 */
+	static class IntervalStatus
+	{
+		LogHistogram _latency=new LogHistogram();
+		long _errors=0;
+	}
+
+	TreeMap<String,IntervalStatus> statusdata;
+
+	/**
+	 * What has been measured of an operation over the whole run, as the live metrics report it;
+	 * and its latencies since the metrics were last read.
+	 */
+	static class OperationTotals
+	{
+		long _operations=0;
+		long _latencyns=0;
+		ReturnCodes _errors=new ReturnCodes();
+		LogHistogram _window=new LogHistogram();
+	}
+
+	/**
+	 * The totals of each operation. Unlike the measurements, these are kept from one phase to the
+	 * next, so they only ever go up.
+	 */
+	TreeMap<String,OperationTotals> totals=new TreeMap<String,OperationTotals>();
+
+	/**
+	 * The latencies of each operation since a reader of the intervals, such as the histogram log,
+	 * last took them.
+	 */
+	static class IntervalSink
+	{
+		TreeMap<String,LogHistogram> _data=new TreeMap<String,LogHistogram>();
+
+		void add(String operation, LogHistogram h)
+		{
+			LogHistogram sum=_data.get(operation);
+			if (sum==null)
+			{
+				sum=new LogHistogram();
+				_data.put(operation,sum);
+			}
+			sum.add(h);
+		}
+	}
+
+	/**
+	 * The interval readers of the current phase.
+	 */
+	ArrayList<IntervalSink> sinks;
+
+	/**
+	 * When the first measurement under each name was taken, so that the time series of all the
+	 * threads count their units from the same time.
+	 */
+	HashMap<String,Long> seriesstarts;
 
 	private Properties _props;
+
+	/**
+	 * The intended start time of the operation the current thread is running, or 0 if the
+	 * operation was not scheduled (no target throughput); and the expected time between the
+	 * thread's operations, or 0 if they are not throttled.
+	 */
+	static class StartTimeHolder
+	{
+		long time;
+		long expectedinterval;
+
+		long startTime()
+		{
+			if (time==0)
+			{
+				return System.nanoTime();
+			}
+			return time;
+		}
+	}
+
+	ThreadLocal<StartTimeHolder> tlintendedstarttime=new ThreadLocal<StartTimeHolder>()
+	{
+		protected StartTimeHolder initialValue()
+		{
+			return new StartTimeHolder();
+		}
+	};
 	
       /**
        * Create a new object with the specified properties.
        */
 	public Measurements(Properties props)
 	{
-		data=new HashMap<String,OneMeasurement>();
+		reset(props);
+	}
+
+	/**
+	 * Discard all measurements and warm-up state, and configure from the given properties. Must not
+	 * be called while operations are being measured.
+	 */
+	synchronized void reset(Properties props)
+	{
+		if (recorders!=null)
+		{
+			//keep the totals of the last phase
+			collectIntervals();
+		}
+		final ConcurrentLinkedQueue<ThreadRecorder> all=new ConcurrentLinkedQueue<ThreadRecorder>();
+		recorders=all;
+		tlrecorder=new ThreadLocal<ThreadRecorder>()
+		{
+			protected ThreadRecorder initialValue()
+			{
+				ThreadRecorder recorder=new ThreadRecorder();
+				all.add(recorder);
+				return recorder;
+			}
+		};
+		statusdata=new TreeMap<String,IntervalStatus>();
+		sinks=new ArrayList<IntervalSink>();
+		seriesstarts=new HashMap<String,Long>();
+		warmup=false;
+		warmupdeadlinens=0;
+		warmupops=0;
+		warmupopsdone=new AtomicLong(0);
+		warmupstartms=0;
+		warmupendms=0;
 		
 		_props=props;
 		
-		if (_props.getProperty(MEASUREMENT_TYPE, MEASUREMENT_TYPE_DEFAULT).compareTo("histogram")==0)
+		measurementtype=_props.getProperty(MEASUREMENT_TYPE, MEASUREMENT_TYPE_DEFAULT);
+		latencyunit=LatencyUnit.fromProperties(_props);
+		if (measurementtype.compareTo("hdrhistogram")==0)
 		{
-			histogram=true;
+			//check the histogram properties now, rather than in the middle of an operation
+			new OneMeasurementHdrHistogram("",_props);
+		}
+
+		String interval=_props.getProperty(MEASUREMENT_INTERVAL, MEASUREMENT_INTERVAL_DEFAULT);
+		if (interval.compareTo("op")==0)
+		{
+			measureop=true;
+			measureintended=false;
+		}
+		else if (interval.compareTo("intended")==0)
+		{
+			measureop=false;
+			measureintended=true;
+		}
+		else if (interval.compareTo("both")==0)
+		{
+			measureop=true;
+			measureintended=true;
 		}
 		else
 		{
-			histogram=false;
+			measureop=true;
+			measureintended=false;
+			System.err.println("Unknown "+MEASUREMENT_INTERVAL+" \""+interval+"\", will measure \"op\" latency.");
 		}
+		correct=Boolean.parseBoolean(_props.getProperty(MEASUREMENT_CORRECTION, MEASUREMENT_CORRECTION_DEFAULT));
+		spans=Boolean.parseBoolean(_props.getProperty(MEASUREMENT_SPANS, MEASUREMENT_SPANS_DEFAULT));
 	}
 	
 	OneMeasurement constructOneMeasurement(String name)
 	{
-		if (histogram)
+		if (measurementtype.compareTo("histogram")==0)
 		{
 			return new OneMeasurementHistogram(name,_props);
 		}
+		else if (measurementtype.compareTo("hdrhistogram")==0)
+		{
+			return new OneMeasurementHdrHistogram(name,_props);
+		}
 		else
 		{
-			return new OneMeasurementTimeSeries(name,_props);
+			long start;
+			synchronized (seriesstarts)
+			{
+				Long s=seriesstarts.get(name);
+				if (s==null)
+				{
+					s=System.currentTimeMillis();
+					seriesstarts.put(name,s);
+				}
+				start=s;
+			}
+			return new OneMeasurementTimeSeries(name,_props,start);
 		}
 	}
 
-      /**
-       * Report a single value of a single metric. E.g. for read latency, operation="READ" and latency is the measured value.
-       */
-	public synchronized void measure(String operation, int latency)
+	/**
+	 * Record the time the current thread's next operation was scheduled to start, in nanoseconds.
+	 */
+	public void setIntendedStartTimeNs(long time)
+	{
+		if (!measureintended)
+		{
+			return;
+		}
+		tlintendedstarttime.get().time=time;
+	}
+
+	/**
+	 * Record the expected time between the current thread's operations, in nanoseconds, for the
+	 * corrected measurements; 0 if its operations are not throttled.
+	 */
+	public void setExpectedIntervalNs(long interval)
+	{
+		if (!correct)
+		{
+			return;
+		}
+		tlintendedstarttime.get().expectedinterval=interval;
+	}
+
+	/**
+	 * Return the expected time between the current thread's operations, in nanoseconds, or 0 if they
+	 * are not throttled or the corrected measurements are not kept.
+	 */
+	public long getExpectedIntervalNs()
+	{
+		if (!correct)
+		{
+			return 0L;
+		}
+		return tlintendedstarttime.get().expectedinterval;
+	}
+
+	/**
+	 * Start timing a span of the current thread's operation.
+	 *
+	 * @return the value to pass to endSpan(), or 0 if spans are not measured
+	 */
+	public long startSpan()
+	{
+		if (!spans)
+		{
+			return 0L;
+		}
+		return System.nanoTime();
+	}
+
+	/**
+	 * Add the time since startSpan() to a span, such as SPAN_KEY, of the current thread's operation.
+	 *
+	 * @param start the value startSpan() returned
+	 */
+	public void endSpan(int span, long start)
+	{
+		if (start==0)
+		{
+			return;
+		}
+		addSpan(tlrecorder.get(),span,System.nanoTime()-start);
+	}
+
+	void addSpan(ThreadRecorder thread, int span, long ns)
+	{
+		thread._spans[span]+=ns;
+		thread._spansentered|=(1<<span);
+	}
+
+	/**
+	 * Attribute the spans of the current thread's operation to the given operation, unless they
+	 * already have one; so a workload operation made of several calls, such as a read-modify-write,
+	 * can claim its spans before its first call.
+	 */
+	public void nameSpans(String operation)
+	{
+		if (!spans)
+		{
+			return;
+		}
+		ThreadRecorder thread=tlrecorder.get();
+		if (thread._spanoperation==null)
+		{
+			thread._spanoperation=operation;
+		}
+	}
+
+	/**
+	 * Add the time a call into the binding took to the current thread's operation, naming the
+	 * operation after the call if it has no name yet.
+	 */
+	public void measureCallSpan(String operation, long ns)
+	{
+		if (!spans)
+		{
+			return;
+		}
+		nameSpans(operation);
+		addSpan(tlrecorder.get(),SPAN_CALL,ns);
+	}
+
+	/**
+	 * Finish the current thread's operation: record the time of each span it entered, and the rest of
+	 * the time since start as the "Other" span, then start afresh for the next operation. Operations
+	 * that made no call into the binding, and operations during the warm-up, are not recorded.
+	 *
+	 * @param start the value startSpan() returned when the operation began
+	 */
+	public void finishSpans(long start)
+	{
+		if (start==0)
+		{
+			return;
+		}
+		long total=System.nanoTime()-start;
+		ThreadRecorder thread=tlrecorder.get();
+		long[] t=thread._spans;
+		if ((thread._spanoperation!=null) && !warmup)
+		{
+			//the binding serializes and decodes within its call
+			t[SPAN_CALL]=Math.max(0,t[SPAN_CALL]-t[SPAN_SERIALIZE]-t[SPAN_DECODE]);
+			long other=total;
+			for (int i=0; i<SPAN_OTHER; i++)
+			{
+				other-=t[i];
+			}
+			addSpan(thread,SPAN_OTHER,Math.max(0,other));
+
+			OneMeasurement[] m=thread._spanmeasurements.get(thread._spanoperation);
+			if (m==null)
+			{
+				m=new OneMeasurement[SPAN_NAMES.length];
+				thread._spanmeasurements.put(thread._spanoperation,m);
+			}
+			for (int i=0; i<SPAN_NAMES.length; i++)
+			{
+				if ((thread._spansentered&(1<<i))==0)
+				{
+					continue;
+				}
+				if (m[i]==null)
+				{
+					m[i]=constructOneMeasurement(spanName(thread._spanoperation,i));
+				}
+				m[i].measure(t[i]);
+			}
+		}
+		for (int i=0; i<t.length; i++)
+		{
+			t[i]=0;
+		}
+		thread._spansentered=0;
+		thread._spanoperation=null;
+	}
+
+	/**
+	 * The name a span of an operation is reported under, e.g. "READ-SPAN(Call)".
+	 */
+	static String spanName(String operation, int span)
+	{
+		return operation+"-SPAN("+SPAN_NAMES[span]+")";
+	}
+
+	/**
+	 * Return the time the current thread's operation was scheduled to start, or the current time if
+	 * it was not scheduled, in nanoseconds.
+	 */
+	public long getIntendedStartTimeNs()
+	{
+		if (!measureintended)
+		{
+			return 0L;
+		}
+		return tlintendedstarttime.get().startTime();
+	}
+
+	/**
+	 * Start a warm-up phase, which ends after the given time or number of operations, whichever
+	 * comes first. A value of zero means no limit of that kind; if both are zero there is no warm-up.
+	 */
+	public synchronized void startWarmup(long durationms, long ops)
+	{
+		if ((durationms<=0) && (ops<=0))
+		{
+			return;
+		}
+		warmupstartms=System.currentTimeMillis();
+		if (durationms>0)
+		{
+			warmupdeadlinens=System.nanoTime()+durationms*1000000L;
+		}
+		warmupops=ops;
+		warmup=true;
+	}
+
+	/**
+	 * @return true while measurements are being recorded as warm-up measurements.
+	 */
+	public boolean isWarmingUp()
+	{
+		return warmup;
+	}
+
+	/**
+	 * Count an operation done during the warm-up, and end the warm-up if it has run its course.
+	 */
+	public void warmupOperationDone()
+	{
+		long done=warmupopsdone.incrementAndGet();
+		if ( ((warmupops>0) && (done>=warmupops)) ||
+		     ((warmupdeadlinens!=0) && (System.nanoTime()-warmupdeadlinens>=0)) )
+		{
+			endWarmup();
+		}
+	}
+
+	/**
+	 * End the warm-up phase, if there is one. Measurements from here on are steady-state measurements.
+	 */
+	public synchronized void endWarmup()
+	{
+		if (!warmup)
+		{
+			return;
+		}
+		warmup=false;
+		warmupendms=System.currentTimeMillis();
+		System.err.println("Warm-up finished after "+(warmupendms-warmupstartms)+" ms and "+warmupopsdone.get()+" operations.");
+	}
+
+	/**
+	 * @return the number of operations done during the warm-up.
+	 */
+	public long getWarmupOperations()
+	{
+		return warmupopsdone.get();
+	}
+
+	/**
+	 * @return how long the warm-up lasted, in milliseconds, or 0 if there was none.
+	 */
+	public synchronized long getWarmupTimeMs()
+	{
+		return warmupendms-warmupstartms;
+	}
+
+	/**
+	 * Return a percentile of the steady-state latency of an operation, in milliseconds. The name is
+	 * the one the operation is exported under, so "Intended-READ" gives the intended latency of reads
+	 * and "Corrected-READ" the corrected latency.
+	 *
+	 * @return the latency, or -1 if the operation has no measurements or they do not give percentiles
+	 */
+	public synchronized double getPercentileLatencyMs(String name, double percentile)
+	{
+		int kind=MEASURED;
+		for (int k=INTENDED; k<WARMUP_MEASURED; k++)
+		{
+			if (name.startsWith(PREFIXES[k]))
+			{
+				kind=k;
+			}
+		}
+		OneMeasurement m=merge(kind).get(name.substring(PREFIXES[kind].length()));
+		if (m==null)
+		{
+			return -1;
+		}
+		return m.getPercentileLatencyMs(percentile);
+	}
+
+	/**
+	 * Merge the threads' measurements of one kind, by operation. Only call this once the threads
+	 * that recorded them are done.
+	 */
+	HashMap<String,OneMeasurement> merge(int kind)
 	{
-		if (!data.containsKey(operation))
+		HashMap<String,OneMeasurement> merged=new HashMap<String,OneMeasurement>();
+		for (ThreadRecorder recorder : recorders)
 		{
-			synchronized(this)
+			for (Map.Entry<String,OperationRecorder> entry : recorder._operations.entrySet())
 			{
-				if (!data.containsKey(operation))
+				OperationRecorder r=entry.getValue();
+				merge(merged,entry.getKey(),r._measurements[kind],kind);
+				for (int i=0; i<r._failedcodes.length; i++)
 				{
-					data.put(operation,constructOneMeasurement(operation));
+					merge(merged,failedName(entry.getKey(),r._failedcodes[i]),r._failedmeasurements[i][kind],kind);
 				}
 			}
 		}
+		return merged;
+	}
+
+	void merge(HashMap<String,OneMeasurement> merged, String name, OneMeasurement m, int kind)
+	{
+		if (m==null)
+		{
+			return;
+		}
+		OneMeasurement sum=merged.get(name);
+		if (sum==null)
+		{
+			sum=constructOneMeasurement(PREFIXES[kind]+name);
+			merged.put(name,sum);
+		}
+		sum.add(m);
+	}
+
+	/**
+	 * Merge the threads' spans, by operation and span. Only call this once the threads that recorded
+	 * them are done.
+	 */
+	TreeMap<String,OneMeasurement> mergeSpans()
+	{
+		TreeMap<String,OneMeasurement> merged=new TreeMap<String,OneMeasurement>();
+		for (ThreadRecorder recorder : recorders)
+		{
+			for (Map.Entry<String,OneMeasurement[]> entry : recorder._spanmeasurements.entrySet())
+			{
+				for (int i=0; i<SPAN_NAMES.length; i++)
+				{
+					OneMeasurement m=entry.getValue()[i];
+					if (m==null)
+					{
+						continue;
+					}
+					//sorts the spans of an operation together, in the order they are listed
+					String key=entry.getKey()+"\0"+i;
+					OneMeasurement sum=merged.get(key);
+					if (sum==null)
+					{
+						sum=constructOneMeasurement(m.getName());
+						merged.put(key,sum);
+					}
+					sum.add(m);
+				}
+			}
+		}
+		return merged;
+	}
+
+	/**
+	 * The measurement of an operation the current thread records into, creating it under the
+	 * kind's prefix if this is the thread's first measurement of that kind.
+	 */
+	OneMeasurement getOrCreate(OperationRecorder recorder, String operation, int kind)
+	{
+		return getOrCreate(recorder,operation,0,kind);
+	}
+
+	/**
+	 * The measurement the current thread records the latencies of an operation that returned the
+	 * given code into: the operation's own if it succeeded, or the one kept for that code if it
+	 * failed, named as failedName() gives.
+	 */
+	OneMeasurement getOrCreate(OperationRecorder recorder, String operation, int code, int kind)
+	{
+		OneMeasurement[] measurements=(code==0) ? recorder._measurements : recorder.failed(code);
+		OneMeasurement m=measurements[kind];
+		if (m==null)
+		{
+			m=constructOneMeasurement(PREFIXES[kind]+((code==0) ? operation : failedName(operation,code)));
+			measurements[kind]=m;
+		}
+		return m;
+	}
+
+	/**
+	 * Record a latency into the measurement of the operation for the code, and, if status is true,
+	 * into the operation's current status interval. The interval counts failed operations along
+	 * with the rest, so that the status lines and live metrics give the operation's full throughput.
+	 */
+	void measure(String operation, int code, long latency, int kind, boolean status)
+	{
+		ThreadRecorder thread=tlrecorder.get();
+		OperationRecorder recorder=thread.get(operation);
+		OneMeasurement m=getOrCreate(recorder,operation,code,warmup ? kind+WARMUP_MEASURED : kind);
 		try
 		{
-			data.get(operation).measure(latency);
+			m.measure(latency);
 		}
 		catch (java.lang.ArrayIndexOutOfBoundsException e)
 		{
@@ -117,6 +838,146 @@ public class Measurements
 			e.printStackTrace();
 			e.printStackTrace(System.out);
 		}
+		if (status)
+		{
+			long phase=thread._phaser.writerEnter();
+			try
+			{
+				recorder._interval[WriterReaderPhaser.bufferIndex(phase)].record(latency);
+			}
+			finally
+			{
+				thread._phaser.writerExit(phase);
+			}
+		}
+	}
+
+      /**
+       * Report a single value of a single metric. E.g. for read latency, operation="READ" and latency is the measured value,
+       * in nanoseconds. Each thread records into measurements of its own, so this neither locks nor, after the thread's first
+       * measurement of an operation, allocates.
+       */
+	public void measure(String operation, long latency)
+	{
+		measure(operation,latency,0);
+	}
+
+	/**
+	 * Report the latency of an operation measured from its intended start time, rather than from
+	 * when it actually started, in nanoseconds.
+	 */
+	public void measureIntended(String operation, long latency)
+	{
+		measureIntended(operation,latency,0);
+	}
+
+	/**
+	 * Report the latency of an operation that returned the given code. The latencies of failed
+	 * operations are exported under the name returned by failedName(), so that fast failures do not
+	 * make the operations that succeeded look faster than they were; they still count towards the
+	 * operation's throughput in the status lines and live metrics.
+	 */
+	public void measure(String operation, long latency, int code)
+	{
+		measure(operation,latency,code,getExpectedIntervalNs());
+	}
+
+	/**
+	 * Report the latency of an operation that returned the given code, correcting it with the
+	 * expected interval between the operations of the client that issued it rather than the current
+	 * thread's; for an operation that completes on another thread than the one that issued it.
+	 *
+	 * @param expectedinterval the value getExpectedIntervalNs() returned when the operation was issued
+	 */
+	public void measure(String operation, long latency, int code, long expectedinterval)
+	{
+		if (!measureop)
+		{
+			return;
+		}
+		measure(operation,code,latency,MEASURED,true);
+		if (correct && (expectedinterval>0))
+		{
+			ThreadRecorder thread=tlrecorder.get();
+			getOrCreate(thread.get(operation),operation,code,warmup ? WARMUP_CORRECTED : CORRECTED).measure(latency,expectedinterval);
+		}
+	}
+
+	/**
+	 * Report the intended latency of an operation that returned the given code, apart from the
+	 * operations that succeeded if it failed.
+	 */
+	public void measureIntended(String operation, long latency, int code)
+	{
+		if (!measureintended)
+		{
+			return;
+		}
+		measure(operation,code,latency,INTENDED,!measureop);
+	}
+
+	/**
+	 * Count the keys a batch operation covered, so its throughput can be given in keys as well as in
+	 * operations. Batches done during the warm-up are not counted.
+	 */
+	public void measureKeys(String operation, int keys)
+	{
+		if (warmup)
+		{
+			return;
+		}
+		tlrecorder.get().get(operation)._keys+=keys;
+	}
+
+	/**
+	 * Count the bytes a batch operation wrote, for its throughput in MB/sec. Only steady-state
+	 * batches are counted.
+	 */
+	public void measureBytes(String operation, long bytes)
+	{
+		if (warmup)
+		{
+			return;
+		}
+		tlrecorder.get().get(operation)._bytes+=bytes;
+	}
+
+	/**
+	 * Return the number of keys each batch operation covered and the number of bytes it wrote, in
+	 * that order, summed over the threads. Only call this once the threads that counted them are done.
+	 */
+	public synchronized TreeMap<String,long[]> getBatchTotals()
+	{
+		TreeMap<String,long[]> totals=new TreeMap<String,long[]>();
+		for (ThreadRecorder recorder : recorders)
+		{
+			for (Map.Entry<String,OperationRecorder> entry : recorder._operations.entrySet())
+			{
+				OperationRecorder r=entry.getValue();
+				if (r._keys==0)
+				{
+					continue;
+				}
+				long[] sum=totals.get(entry.getKey());
+				if (sum==null)
+				{
+					sum=new long[2];
+					totals.put(entry.getKey(),sum);
+				}
+				sum[0]+=r._keys;
+				sum[1]+=r._bytes;
+			}
+		}
+		return totals;
+	}
+
+	/**
+	 * The name the latencies of an operation that failed with the given code are exported under,
+	 * e.g. "READ-FAILED(-1)". Only built when the measurements are merged.
+	 */
+	public static String failedName(String operation, int code)
+	{
+		return operation+"-FAILED("+code+")";
 	}
 
       /**
@@ -124,44 +985,185 @@ public class Measurements
        */
 	public void reportReturnCode(String operation, int code)
 	{
-		if (!data.containsKey(operation))
+		ThreadRecorder thread=tlrecorder.get();
+		OperationRecorder recorder=thread.get(operation);
+		//if only intended latencies are reported, keep the return codes next to them
+		int kind=measureop ? MEASURED : INTENDED;
+		getOrCreate(recorder,operation,warmup ? kind+WARMUP_MEASURED : kind).reportReturnCode(code);
+		if (code!=0)
+		{
+			long phase=thread._phaser.writerEnter();
+			try
+			{
+				recorder._intervalerrors[WriterReaderPhaser.bufferIndex(phase)].report(code);
+			}
+			finally
+			{
+				thread._phaser.writerExit(phase);
+			}
+		}
+	}
+
+	IntervalStatus getStatus(String operation)
+	{
+		IntervalStatus status=statusdata.get(operation);
+		if (status==null)
+		{
+			status=new IntervalStatus();
+			statusdata.put(operation,status);
+		}
+		return status;
+	}
+	
+	/**
+	 * Collect what the threads have recorded since the last call into the status data, the totals,
+	 * and the interval sinks.
+	 */
+	void collectIntervals()
+	{
+		//send each thread to its other copy of the interval, and collect the one it was using
+		for (ThreadRecorder thread : recorders)
 		{
-			synchronized(this)
+			int retired=thread._phaser.flipPhase();
+			for (Map.Entry<String,OperationRecorder> entry : thread._operations.entrySet())
 			{
-				if (!data.containsKey(operation))
+				OperationRecorder recorder=entry.getValue();
+				IntervalStatus status=getStatus(entry.getKey());
+				status._latency.add(recorder._interval[retired]);
+				long errors=recorder._intervalerrors[retired].count();
+				status._errors+=errors;
+				OperationTotals total=totals.get(entry.getKey());
+				if (total==null)
+				{
+					total=new OperationTotals();
+					totals.put(entry.getKey(),total);
+				}
+				total._operations+=recorder._interval[retired].getCount();
+				total._latencyns+=recorder._interval[retired].getTotal();
+				total._errors.add(recorder._intervalerrors[retired]);
+				total._window.add(recorder._interval[retired]);
+				for (IntervalSink sink : sinks)
 				{
-					data.put(operation,constructOneMeasurement(operation));
+					sink.add(entry.getKey(),recorder._interval[retired]);
 				}
+				recorder._interval[retired].reset();
+				recorder._intervalerrors[retired].reset();
 			}
 		}
-		data.get(operation).reportReturnCode(code);
 	}
-	
+
+	/**
+	 * Return a copy of the totals of each operation, for the live metrics. The latencies since the
+	 * last call are moved into the copy, so each call sees a new window.
+	 */
+	synchronized TreeMap<String,OperationTotals> getTotals()
+	{
+		collectIntervals();
+		TreeMap<String,OperationTotals> copy=new TreeMap<String,OperationTotals>();
+		for (Map.Entry<String,OperationTotals> entry : totals.entrySet())
+		{
+			OperationTotals total=entry.getValue();
+			OperationTotals c=new OperationTotals();
+			c._operations=total._operations;
+			c._latencyns=total._latencyns;
+			c._errors.add(total._errors);
+			c._window.add(total._window);
+			total._window.reset();
+			copy.put(entry.getKey(),c);
+		}
+		return copy;
+	}
+
+	/**
+	 * Start keeping the latencies of each interval for a reader of the intervals, from now on until
+	 * the next phase.
+	 */
+	synchronized IntervalSink addIntervalSink()
+	{
+		collectIntervals();
+		IntervalSink sink=new IntervalSink();
+		sinks.add(sink);
+		return sink;
+	}
+
+	/**
+	 * Return the latencies of each operation since the last call (or addIntervalSink()), leaving
+	 * out operations that have none. Starts a new interval.
+	 */
+	synchronized TreeMap<String,LogHistogram> takeIntervals(IntervalSink sink)
+	{
+		collectIntervals();
+		TreeMap<String,LogHistogram> taken=new TreeMap<String,LogHistogram>();
+		for (Map.Entry<String,LogHistogram> entry : sink._data.entrySet())
+		{
+			LogHistogram h=entry.getValue();
+			if (h.getCount()==0)
+			{
+				continue;
+			}
+			LogHistogram copy=new LogHistogram();
+			copy.add(h);
+			taken.put(entry.getKey(),copy);
+			h.reset();
+		}
+		return taken;
+	}
+
+	/**
+	 * Return a one line summary of each operation since the last call: its throughput, latency
+	 * percentiles (in the export unit) and number of errors. Starts a new interval.
+	 *
+	 * @param intervalms the length of the interval, in milliseconds
+	 */
+	public synchronized String getIntervalSummary(long intervalms)
+	{
+		collectIntervals();
+
+		DecimalFormat d=new DecimalFormat("#.##");
+		StringBuilder summary=new StringBuilder();
+		for (Map.Entry<String,IntervalStatus> entry : statusdata.entrySet())
+		{
+			IntervalStatus status=entry.getValue();
+			LogHistogram h=status._latency;
+			if ((h.getCount()==0) && (status._errors==0))
+			{
+				continue;
+			}
+			summary.append("[").append(entry.getKey()).append(": ");
+			summary.append(d.format(1000.0*h.getCount()/Math.max(1,intervalms))).append(" ops/sec");
+			if (h.getCount()>0)
+			{
+				summary.append(", p50=").append(d.format(latencyunit.convert(h.getValueAtPercentile(50))));
+				summary.append(" p99=").append(d.format(latencyunit.convert(h.getValueAtPercentile(99))));
+				summary.append(" p99.9=").append(d.format(latencyunit.convert(h.getValueAtPercentile(99.9))));
+				summary.append(" max=").append(d.format(latencyunit.convert(h.getMax()))).append(" ").append(latencyunit.getLabel());
+			}
+			summary.append(", ").append(status._errors).append(" errors] ");
+			h.reset();
+			status._errors=0;
+		}
+		return summary.toString();
+	}
+
   /**
-   * Export the current measurements to a suitable format.
+   * Export the current measurements to a suitable format. The threads' measurements are merged,
+   * so call this once the threads that recorded them are done.
    * 
    * @param exporter Exporter representing the type of format to write to.
    * @throws IOException Thrown if the export failed.
    */
-  public void exportMeasurements(MeasurementsExporter exporter) throws IOException
+  public synchronized void exportMeasurements(MeasurementsExporter exporter) throws IOException
   {
-    for (OneMeasurement measurement : data.values())
+    for (int kind=0; kind<PREFIXES.length; kind++)
+    {
+      for (OneMeasurement measurement : merge(kind).values())
+      {
+        measurement.exportMeasurements(exporter);
+      }
+    }
+    for (OneMeasurement measurement : mergeSpans().values())
     {
       measurement.exportMeasurements(exporter);
     }
   }
-	
-      /**
-       * Return a one line summary of the measurements.
-       */
-	public String getSummary()
-	{
-		String ret="";
-		for (OneMeasurement m : data.values())
-		{
-			ret+=m.getSummary()+" ";
-		}
-		
-		return ret;
-	}
 }
@@ -0,0 +1,213 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+
+package com.yahoo.ycsb.measurements;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.net.InetSocketAddress;
+import java.text.DecimalFormat;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Serves the live metrics of the client over HTTP, in the Prometheus text format, so that they can
+ * be scraped next to the metrics of the servers under test. For each operation it gives the number
+ * of operations and errors (by return code) so far, and a summary of the latencies since the last
+ * scrape; and a few figures about the client's JVM.
+ *
+ * The metrics come from the same per-thread interval histograms as the status lines, so serving
+ * them adds nothing to the measured operations. Each scrape starts a new latency window, so there
+ * should only be one scraper.
+ */
+public class MetricsServer implements HttpHandler
+{
+	/**
+	 * The port to serve the metrics on, at /metrics (default: none, no metrics server).
+	 */
+	public static final String PORT_PROPERTY="metrics.port";
+
+	HttpServer _server;
+	double[] _percentiles;
+
+	/**
+	 * Start a metrics server if the properties ask for one.
+	 *
+	 * @return the server, already started, or null if there is none
+	 */
+	public static MetricsServer start(Properties props) throws IOException
+	{
+		String port=props.getProperty(PORT_PROPERTY);
+		if (port==null)
+		{
+			return null;
+		}
+		double[] percentiles=OneMeasurementHdrHistogram.parsePercentiles(props.getProperty(OneMeasurementHdrHistogram.PERCENTILES,OneMeasurementHdrHistogram.PERCENTILES_DEFAULT));
+		MetricsServer server=new MetricsServer(Integer.parseInt(port),percentiles);
+		server._server.start();
+		return server;
+	}
+
+	MetricsServer(int port, double[] percentiles) throws IOException
+	{
+		_percentiles=percentiles;
+		_server=HttpServer.create(new InetSocketAddress(port),0);
+		_server.createContext("/metrics",this);
+	}
+
+	public void stop()
+	{
+		_server.stop(0);
+	}
+
+	public void handle(HttpExchange exchange) throws IOException
+	{
+		byte[] body=getMetrics().getBytes("UTF-8");
+		exchange.getResponseHeaders().set("Content-Type","text/plain; version=0.0.4; charset=utf-8");
+		exchange.sendResponseHeaders(200,body.length);
+		OutputStream out=exchange.getResponseBody();
+		try
+		{
+			out.write(body);
+		}
+		finally
+		{
+			out.close();
+		}
+	}
+
+	/**
+	 * @return the metrics, in the Prometheus text format
+	 */
+	String getMetrics()
+	{
+		StringBuilder out=new StringBuilder();
+		Measurements measurements=Measurements.peekMeasurements();
+		if (measurements!=null)
+		{
+			writeOperations(out,measurements.getTotals());
+		}
+		writeJvm(out);
+		return out.toString();
+	}
+
+	void writeOperations(StringBuilder out, TreeMap<String,Measurements.OperationTotals> totals)
+	{
+		header(out,"ycsb_operations_total","counter","Operations measured so far.");
+		for (Map.Entry<String,Measurements.OperationTotals> entry : totals.entrySet())
+		{
+			sample(out,"ycsb_operations_total","operation",entry.getKey(),null,null,entry.getValue()._operations);
+		}
+
+		header(out,"ycsb_operation_errors_total","counter","Operations that returned an error so far, by return code.");
+		for (Map.Entry<String,Measurements.OperationTotals> entry : totals.entrySet())
+		{
+			for (Map.Entry<Integer,long[]> code : entry.getValue()._errors._others.entrySet())
+			{
+				sample(out,"ycsb_operation_errors_total","operation",entry.getKey(),"code",code.getKey().toString(),code.getValue()[0]);
+			}
+		}
+
+		header(out,"ycsb_operation_latency_seconds","summary","Latency of the operations; the quantiles are of the operations since the last scrape.");
+		for (Map.Entry<String,Measurements.OperationTotals> entry : totals.entrySet())
+		{
+			Measurements.OperationTotals total=entry.getValue();
+			for (double p : _percentiles)
+			{
+				double value=(total._window.getCount()==0) ? Double.NaN : total._window.getValueAtPercentile(p)/1e9;
+				sample(out,"ycsb_operation_latency_seconds","operation",entry.getKey(),"quantile",new DecimalFormat("0.######").format(p/100),value);
+			}
+			sample(out,"ycsb_operation_latency_seconds_sum","operation",entry.getKey(),null,null,total._latencyns/1e9);
+			sample(out,"ycsb_operation_latency_seconds_count","operation",entry.getKey(),null,null,total._operations);
+		}
+	}
+
+	void writeJvm(StringBuilder out)
+	{
+		MemoryUsage heap=ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+		MemoryUsage nonheap=ManagementFactory.getMemoryMXBean().getNonHeapMemoryUsage();
+		header(out,"jvm_memory_bytes_used","gauge","Memory used by the client JVM.");
+		sample(out,"jvm_memory_bytes_used","area","heap",null,null,heap.getUsed());
+		sample(out,"jvm_memory_bytes_used","area","nonheap",null,null,nonheap.getUsed());
+		header(out,"jvm_memory_bytes_committed","gauge","Memory committed by the client JVM.");
+		sample(out,"jvm_memory_bytes_committed","area","heap",null,null,heap.getCommitted());
+		sample(out,"jvm_memory_bytes_committed","area","nonheap",null,null,nonheap.getCommitted());
+
+		header(out,"jvm_gc_collection_seconds","summary","Time the client JVM spent in garbage collections.");
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+		{
+			sample(out,"jvm_gc_collection_seconds_count","gc",gc.getName(),null,null,gc.getCollectionCount());
+			sample(out,"jvm_gc_collection_seconds_sum","gc",gc.getName(),null,null,gc.getCollectionTime()/1e3);
+		}
+
+		header(out,"jvm_threads_current","gauge","Threads in the client JVM.");
+		sample(out,"jvm_threads_current",null,null,null,null,ManagementFactory.getThreadMXBean().getThreadCount());
+		header(out,"process_uptime_seconds","gauge","How long the client has been running.");
+		sample(out,"process_uptime_seconds",null,null,null,null,ManagementFactory.getRuntimeMXBean().getUptime()/1e3);
+	}
+
+	static void header(StringBuilder out, String name, String type, String help)
+	{
+		out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+		out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+	}
+
+	/**
+	 * Write one sample, with up to two labels (a null label name leaves the label out).
+	 */
+	static void sample(StringBuilder out, String name, String label1, String value1, String label2, String value2, double value)
+	{
+		out.append(name);
+		if (label1!=null)
+		{
+			out.append('{').append(label1).append("=\"").append(escape(value1)).append('"');
+			if (label2!=null)
+			{
+				out.append(',').append(label2).append("=\"").append(escape(value2)).append('"');
+			}
+			out.append('}');
+		}
+		out.append(' ');
+		if (Double.isNaN(value))
+		{
+			out.append("NaN");
+		}
+		else if (value==Math.rint(value) && Math.abs(value)<1e15)
+		{
+			out.append((long)value);
+		}
+		else
+		{
+			out.append(value);
+		}
+		out.append('\n');
+	}
+
+	static String escape(String value)
+	{
+		return value.replace("\\","\\\\").replace("\"","\\\"").replace("\n","\\n");
+	}
+}
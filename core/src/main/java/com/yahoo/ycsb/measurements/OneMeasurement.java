@@ -22,7 +22,8 @@ import java.io.IOException;
 import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
 
 /**
- * A single measured metric (such as READ LATENCY)
+ * A single measured metric (such as READ LATENCY). Not thread safe: each thread records into
+ * measurements of its own, which are merged with add() when they are reported.
  */
 public abstract class OneMeasurement {
 
@@ -41,10 +42,51 @@ public abstract class OneMeasurement {
 
 	public abstract void reportReturnCode(int code);
 
-	public abstract void measure(int latency);
+	/**
+	 * Record a latency, in nanoseconds.
+	 */
+	public abstract void measure(long latency);
+
+	/**
+	 * Record a latency, in nanoseconds, of an operation that was meant to be issued every
+	 * expectedinterval nanoseconds, correcting for coordinated omission: an operation that took
+	 * several intervals held up the operations due behind it, which a closed-loop client never
+	 * issued, so the latencies they would have seen are recorded too, each one interval shorter
+	 * than the one before. This is HdrHistogram's recordValueWithExpectedInterval().
+	 *
+	 * @param expectedinterval the expected time between operations, or 0 to record only the latency
+	 */
+	public void measure(long latency, long expectedinterval)
+	{
+		measure(latency);
+		if (expectedinterval<=0)
+		{
+			return;
+		}
+		for (long missing=latency-expectedinterval; missing>=expectedinterval; missing-=expectedinterval)
+		{
+			measure(missing);
+		}
+	}
 
 	public abstract String getSummary();
 
+	/**
+	 * Add the measurements recorded in another measurement of the same kind and metric to this one.
+	 */
+	public abstract void add(OneMeasurement other);
+
+	/**
+	 * Return the latency below which the given fraction of the measurements fall, in milliseconds,
+	 * or -1 if this kind of measurement does not keep enough information to tell.
+	 *
+	 * @param percentile the percentile, between 0 and 100
+	 */
+	public double getPercentileLatencyMs(double percentile)
+	{
+		return -1;
+	}
+
   /**
    * Export the current measurements to a suitable format.
    * 
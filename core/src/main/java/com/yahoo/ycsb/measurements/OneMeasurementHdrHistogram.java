@@ -0,0 +1,166 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.measurements;
+
+import java.io.IOException;
+import java.text.DecimalFormat;
+import java.util.Properties;
+import java.util.StringTokenizer;
+
+import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
+
+/**
+ * Take measurements and maintain a high resolution histogram of a given metric, in the manner of
+ * HdrHistogram: the buckets grow logarithmically, so latencies from a nanosecond to hours are
+ * recorded to a fixed number of significant digits, and the histograms of separate measurements
+ * of the same metric can be merged. Selected with measurementtype=hdrhistogram.
+ */
+public class OneMeasurementHdrHistogram extends OneMeasurement
+{
+	/**
+	 * The percentiles to report, as a comma separated list.
+	 */
+	public static final String PERCENTILES="hdrhistogram.percentiles";
+	public static final String PERCENTILES_DEFAULT="50,90,99,99.9,99.99";
+
+	/**
+	 * The number of significant decimal digits each latency is recorded to, between 1 and 5.
+	 */
+	public static final String SIGNIFICANT_DIGITS="hdrhistogram.significantdigits";
+	public static final String SIGNIFICANT_DIGITS_DEFAULT="3";
+
+	LogHistogram histogram;
+	double[] percentiles;
+
+	//keep a windowed version of these stats for printing status
+	long windowoperations;
+	long windowtotallatency;
+
+	ReturnCodes returncodes;
+	LatencyUnit latencyunit;
+
+	public OneMeasurementHdrHistogram(String name, Properties props)
+	{
+		super(name);
+		int digits=Integer.parseInt(props.getProperty(SIGNIFICANT_DIGITS, SIGNIFICANT_DIGITS_DEFAULT));
+		if ((digits<1) || (digits>5))
+		{
+			throw new IllegalArgumentException(SIGNIFICANT_DIGITS+" must be between 1 and 5, not "+digits);
+		}
+		histogram=new LogHistogram(LogHistogram.subBucketBitsForDigits(digits));
+		percentiles=parsePercentiles(props.getProperty(PERCENTILES, PERCENTILES_DEFAULT));
+		windowoperations=0;
+		windowtotallatency=0;
+		returncodes=new ReturnCodes();
+		latencyunit=LatencyUnit.fromProperties(props);
+	}
+
+	static double[] parsePercentiles(String list)
+	{
+		StringTokenizer tokens=new StringTokenizer(list,", ");
+		double[] ret=new double[tokens.countTokens()];
+		for (int i=0; i<ret.length; i++)
+		{
+			ret[i]=Double.parseDouble(tokens.nextToken());
+			if ((ret[i]<=0) || (ret[i]>100))
+			{
+				throw new IllegalArgumentException(PERCENTILES+" must be between 0 and 100, not "+ret[i]);
+			}
+		}
+		return ret;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.yahoo.ycsb.OneMeasurement#reportReturnCode(int)
+	 */
+	public void reportReturnCode(int code)
+	{
+		returncodes.report(code);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.yahoo.ycsb.OneMeasurement#measure(long)
+	 */
+	public void measure(long latency)
+	{
+		histogram.record(latency);
+		windowoperations++;
+		windowtotallatency+=latency;
+	}
+
+	/**
+	 * Add the measurements of another histogram of the same metric to this one.
+	 *
+	 * @throws IllegalArgumentException if the two do not record to the same number of significant digits
+	 */
+	@Override
+	public void add(OneMeasurement other)
+	{
+		OneMeasurementHdrHistogram h=(OneMeasurementHdrHistogram)other;
+		histogram.add(h.histogram);
+		windowoperations+=h.windowoperations;
+		windowtotallatency+=h.windowtotallatency;
+		returncodes.add(h.returncodes);
+	}
+
+	/**
+	 * The name a percentile is exported under, without the unit, e.g. "99.9thPercentileLatency".
+	 */
+	static String percentileName(double percentile)
+	{
+		return new DecimalFormat("#.####").format(percentile)+"thPercentileLatency";
+	}
+
+	@Override
+	public void exportMeasurements(MeasurementsExporter exporter) throws IOException
+	{
+		exporter.write(getName(), "Operations", histogram.getCount());
+		latencyunit.export(exporter, getName(), "AverageLatency", histogram.getMean());
+		latencyunit.export(exporter, getName(), "MinLatency", histogram.getMin());
+		latencyunit.export(exporter, getName(), "MaxLatency", histogram.getMax());
+		for (double p : percentiles)
+		{
+			latencyunit.export(exporter, getName(), percentileName(p), histogram.getValueAtPercentile(p));
+		}
+
+		returncodes.export(exporter, getName());
+	}
+
+	@Override
+	public double getPercentileLatencyMs(double percentile)
+	{
+		if (histogram.getCount()==0)
+		{
+			return -1;
+		}
+		return histogram.getValueAtPercentile(percentile)/1000000.0;
+	}
+
+	@Override
+	public String getSummary() {
+		if (windowoperations==0)
+		{
+			return "";
+		}
+		DecimalFormat d = new DecimalFormat("#.##");
+		double report=((double)windowtotallatency)/((double)windowoperations);
+		windowtotallatency=0;
+		windowoperations=0;
+		return "["+getName()+" AverageLatency("+latencyunit.getLabel()+")="+d.format(latencyunit.convert(report))+"]";
+	}
+}
@@ -19,7 +19,6 @@ package com.yahoo.ycsb.measurements;
 
 import java.io.IOException;
 import java.text.DecimalFormat;
-import java.util.HashMap;
 import java.util.Properties;
 
 import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
@@ -37,24 +36,25 @@ public class OneMeasurementHistogram extends OneMeasurement
 	public static final String BUCKETS_DEFAULT="1000";
 
 	int _buckets;
-	int[] histogram;
-	int histogramoverflow;
-	int operations;
+	long[] histogram;
+	long histogramoverflow;
+	long operations;
 	long totallatency;
 	
 	//keep a windowed version of these stats for printing status
-	int windowoperations;
+	long windowoperations;
 	long windowtotallatency;
 	
-	int min;
-	int max;
-	HashMap<Integer,int[]> returncodes;
+	long min;
+	long max;
+	ReturnCodes returncodes;
+	LatencyUnit latencyunit;
 
 	public OneMeasurementHistogram(String name, Properties props)
 	{
 		super(name);
 		_buckets=Integer.parseInt(props.getProperty(BUCKETS, BUCKETS_DEFAULT));
-		histogram=new int[_buckets];
+		histogram=new long[_buckets];
 		histogramoverflow=0;
 		operations=0;
 		totallatency=0;
@@ -62,37 +62,32 @@ public class OneMeasurementHistogram extends OneMeasurement
 		windowtotallatency=0;
 		min=-1;
 		max=-1;
-		returncodes=new HashMap<Integer,int[]>();
+		returncodes=new ReturnCodes();
+		latencyunit=LatencyUnit.fromProperties(props);
 	}
 
 	/* (non-Javadoc)
 	 * @see com.yahoo.ycsb.OneMeasurement#reportReturnCode(int)
 	 */
-	public synchronized void reportReturnCode(int code)
+	public void reportReturnCode(int code)
 	{
-		Integer Icode=code;
-		if (!returncodes.containsKey(Icode))
-		{
-			int[] val=new int[1];
-			val[0]=0;
-			returncodes.put(Icode,val);
-		}
-		returncodes.get(Icode)[0]++;
+		returncodes.report(code);
 	}
 
 
 	/* (non-Javadoc)
-	 * @see com.yahoo.ycsb.OneMeasurement#measure(int)
+	 * @see com.yahoo.ycsb.OneMeasurement#measure(long)
 	 */
-	public synchronized void measure(int latency)
+	public void measure(long latency)
 	{
-		if (latency/1000>=_buckets)
+		long bucket=latency/1000000;
+		if (bucket>=_buckets)
 		{
 			histogramoverflow++;
 		}
 		else
 		{
-			histogram[latency/1000]++;
+			histogram[(int)bucket]++;
 		}
 		operations++;
 		totallatency+=latency;
@@ -115,11 +110,11 @@ public class OneMeasurementHistogram extends OneMeasurement
   public void exportMeasurements(MeasurementsExporter exporter) throws IOException
   {
     exporter.write(getName(), "Operations", operations);
-    exporter.write(getName(), "AverageLatency(us)", (((double)totallatency)/((double)operations)));
-    exporter.write(getName(), "MinLatency(us)", min);
-    exporter.write(getName(), "MaxLatency(us)", max);
+    latencyunit.export(exporter, getName(), "AverageLatency", (operations==0) ? 0 : (((double)totallatency)/((double)operations)));
+    latencyunit.export(exporter, getName(), "MinLatency", min);
+    latencyunit.export(exporter, getName(), "MaxLatency", max);
     
-    int opcounter=0;
+    long opcounter=0;
     boolean done95th=false;
     for (int i=0; i<_buckets; i++)
     {
@@ -136,11 +131,7 @@ public class OneMeasurementHistogram extends OneMeasurement
       }
     }
 
-    for (Integer I : returncodes.keySet())
-    {
-      int[] val=returncodes.get(I);
-      exporter.write(getName(), "Return="+I, val[0]);
-    }     
+    returncodes.export(exporter, getName());
 
     for (int i=0; i<_buckets; i++)
     {
@@ -149,6 +140,59 @@ public class OneMeasurementHistogram extends OneMeasurement
     exporter.write(getName(), ">"+_buckets, histogramoverflow);
   }
 
+	/**
+	 * Measurements are bucketed by the millisecond, so this returns the upper end of the bucket the
+	 * percentile falls in (or the maximum latency, if that is lower).
+	 */
+	@Override
+	public double getPercentileLatencyMs(double percentile)
+	{
+		if (operations==0)
+		{
+			return -1;
+		}
+		double maxms=max/1000000.0;
+		long needed=(long)Math.ceil(operations*percentile/100.0);
+		long opcounter=0;
+		for (int i=0; i<_buckets; i++)
+		{
+			opcounter+=histogram[i];
+			if (opcounter>=needed)
+			{
+				return Math.min(i+1,maxms);
+			}
+		}
+		return maxms;
+	}
+
+	@Override
+	public void add(OneMeasurement other)
+	{
+		OneMeasurementHistogram h=(OneMeasurementHistogram)other;
+		for (int i=0; i<Math.min(_buckets,h._buckets); i++)
+		{
+			histogram[i]+=h.histogram[i];
+		}
+		for (int i=_buckets; i<h._buckets; i++)
+		{
+			histogramoverflow+=h.histogram[i];
+		}
+		histogramoverflow+=h.histogramoverflow;
+		operations+=h.operations;
+		totallatency+=h.totallatency;
+		windowoperations+=h.windowoperations;
+		windowtotallatency+=h.windowtotallatency;
+		if ( (h.min>=0) && ((min<0) || (h.min<min)) )
+		{
+			min=h.min;
+		}
+		if (h.max>max)
+		{
+			max=h.max;
+		}
+		returncodes.add(h.returncodes);
+	}
+
 	@Override
 	public String getSummary() {
 		if (windowoperations==0)
@@ -159,7 +203,7 @@ public class OneMeasurementHistogram extends OneMeasurement
 		double report=((double)windowtotallatency)/((double)windowoperations);
 		windowtotallatency=0;
 		windowoperations=0;
-		return "["+getName()+" AverageLatency(us)="+d.format(report)+"]";
+		return "["+getName()+" AverageLatency("+latencyunit.getLabel()+")="+d.format(latencyunit.convert(report))+"]";
 	}
 
 }
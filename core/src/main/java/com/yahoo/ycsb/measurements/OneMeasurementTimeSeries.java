@@ -19,8 +19,8 @@ package com.yahoo.ycsb.measurements;
 
 import java.io.IOException;
 import java.text.DecimalFormat;
-import java.util.HashMap;
 import java.util.Properties;
+import java.util.TreeMap;
 import java.util.Vector;
 
 import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
@@ -30,17 +30,26 @@ class SeriesUnit
 	/**
 	 * @param time
 	 * @param average
+	 * @param count
+	 * @param errors
 	 */
-	public SeriesUnit(long time, double average) {
+	public SeriesUnit(long time, double average, long count, long errors) {
 		this.time = time;
 		this.average = average;
+		this.count = count;
+		this.errors = errors;
 	}
 	public long time;
 	public double average; 
+	public long count;
+	public long errors;
 }
 
 /**
- * A time series measurement of a metric, such as READ LATENCY.
+ * A time series measurement of a metric, such as READ LATENCY. For each unit of time it exports
+ * the average latency, and under separate metrics, the throughput and the number of operations
+ * that returned an error. The throughput counts the failed operations as well, although their
+ * latencies are measured apart (see Measurements.failedName()).
  */
 public class OneMeasurementTimeSeries extends OneMeasurement 
 {
@@ -56,26 +65,42 @@ public class OneMeasurementTimeSeries extends OneMeasurement
 	
 	long start=-1;
 	long currentunit=-1;
-	int count=0;
-	int sum=0;
-	int operations=0;
+	long count=0;
+	long sum=0;
+	long errors=0;
+	long operations=0;
 	long totallatency=0;
 	
 	//keep a windowed version of these stats for printing status
-	int windowoperations=0;
+	long windowoperations=0;
 	long windowtotallatency=0;
 	
-	int min=-1;
-	int max=-1;
+	long min=-1;
+	long max=-1;
 
-	private HashMap<Integer, int[]> returncodes;
+	private ReturnCodes returncodes;
+	LatencyUnit latencyunit;
 	
 	public OneMeasurementTimeSeries(String name, Properties props)
 	{
 		super(name);
 		_granularity=Integer.parseInt(props.getProperty(GRANULARITY,GRANULARITY_DEFAULT));
 		_measurements=new Vector<SeriesUnit>();
-		returncodes=new HashMap<Integer,int[]>();
+		returncodes=new ReturnCodes();
+		latencyunit=LatencyUnit.fromProperties(props);
+	}
+
+	/**
+	 * Create a time series whose units are counted from a given time rather than from its first
+	 * measurement, so that it lines up with the other threads' series of the same metric.
+	 *
+	 * @param startms the start of the first unit, from System.currentTimeMillis()
+	 */
+	public OneMeasurementTimeSeries(String name, Properties props, long startms)
+	{
+		this(name,props);
+		start=startms;
+		currentunit=0;
 	}
 	
 	void checkEndOfUnit(boolean forceend)
@@ -92,18 +117,22 @@ public class OneMeasurementTimeSeries extends OneMeasurement
 		
 		if ( (unit>currentunit) || (forceend) )
 		{
-			double avg=((double)sum)/((double)count);
-			_measurements.add(new SeriesUnit(currentunit,avg));
+			if ((count>0) || (errors>0))
+			{
+				double avg=(count==0) ? 0 : ((double)sum)/((double)count);
+				_measurements.add(new SeriesUnit(currentunit,avg,count,errors));
+			}
 			
 			currentunit=unit;
 			
 			count=0;
 			sum=0;
+			errors=0;
 		}
 	}
 	
 	@Override
-	public void measure(int latency) 
+	public void measure(long latency)  
 	{
 		checkEndOfUnit(false);
 		
@@ -132,35 +161,108 @@ public class OneMeasurementTimeSeries extends OneMeasurement
     checkEndOfUnit(true);
 
     exporter.write(getName(), "Operations", operations);
-    exporter.write(getName(), "AverageLatency(us)", (((double)totallatency)/((double)operations)));
-    exporter.write(getName(), "MinLatency(us)", min);
-    exporter.write(getName(), "MaxLatency(us)", max);
+    latencyunit.export(exporter, getName(), "AverageLatency", (operations==0) ? 0 : (((double)totallatency)/((double)operations)));
+    latencyunit.export(exporter, getName(), "MinLatency", min);
+    latencyunit.export(exporter, getName(), "MaxLatency", max);
 
     //TODO: 95th and 99th percentile latency
 
-    for (Integer I : returncodes.keySet())
-    {
-      int[] val=returncodes.get(I);
-      exporter.write(getName(), "Return="+I, val[0]);
-    }     
+    returncodes.export(exporter, getName());
 
     for (SeriesUnit unit : _measurements)
     {
-      exporter.write(getName(), Long.toString(unit.time), unit.average);
+      if (unit.count>0)
+      {
+        exporter.write(getName(), Long.toString(unit.time), latencyunit.convert(unit.average));
+      }
+    }
+
+    //units without operations are left out above, but here they count, as zero throughput
+    if (!_measurements.isEmpty())
+    {
+      long last=_measurements.lastElement().time;
+      int i=0;
+      for (long time=_measurements.firstElement().time; time<=last; time+=_granularity)
+      {
+        SeriesUnit unit=null;
+        if (_measurements.get(i).time==time)
+        {
+          unit=_measurements.get(i++);
+        }
+        exporter.write(getName()+" Throughput(ops/sec)", Long.toString(time), (unit==null) ? 0 : 1000.0*(unit.count+unit.errors)/_granularity);
+      }
+      for (SeriesUnit unit : _measurements)
+      {
+        if (unit.errors>0)
+        {
+          exporter.write(getName()+" Errors", Long.toString(unit.time), unit.errors);
+        }
+      }
     }
   }
 	
 	@Override
 	public void reportReturnCode(int code) {
-		Integer Icode=code;
-		if (!returncodes.containsKey(Icode))
+		returncodes.report(code);
+		if (code!=0)
 		{
-			int[] val=new int[1];
-			val[0]=0;
-			returncodes.put(Icode,val);
+			checkEndOfUnit(false);
+			errors++;
 		}
-		returncodes.get(Icode)[0]++;
+	}
+
+	/**
+	 * Add another series of the same metric to this one, unit by unit. The units line up if both
+	 * series were created with the same start time.
+	 */
+	@Override
+	public void add(OneMeasurement other)
+	{
+		OneMeasurementTimeSeries s=(OneMeasurementTimeSeries)other;
+		s.checkEndOfUnit(true);
+		checkEndOfUnit(true);
 
+		TreeMap<Long,SeriesUnit> units=new TreeMap<Long,SeriesUnit>();
+		for (SeriesUnit unit : _measurements)
+		{
+			addUnit(units,unit);
+		}
+		for (SeriesUnit unit : s._measurements)
+		{
+			addUnit(units,unit);
+		}
+		_measurements=new Vector<SeriesUnit>(units.values());
+
+		operations+=s.operations;
+		totallatency+=s.totallatency;
+		windowoperations+=s.windowoperations;
+		windowtotallatency+=s.windowtotallatency;
+		if ( (s.min>=0) && ((min<0) || (s.min<min)) )
+		{
+			min=s.min;
+		}
+		if (s.max>max)
+		{
+			max=s.max;
+		}
+		returncodes.add(s.returncodes);
+	}
+
+	static void addUnit(TreeMap<Long,SeriesUnit> units, SeriesUnit unit)
+	{
+		SeriesUnit sum=units.get(unit.time);
+		if (sum==null)
+		{
+			units.put(unit.time,new SeriesUnit(unit.time,unit.average,unit.count,unit.errors));
+			return;
+		}
+		long count=sum.count+unit.count;
+		if (count>0)
+		{
+			sum.average=(sum.average*sum.count+unit.average*unit.count)/count;
+		}
+		sum.count=count;
+		sum.errors+=unit.errors;
 	}
 
 	@Override
@@ -173,7 +275,7 @@ public class OneMeasurementTimeSeries extends OneMeasurement
 		double report=((double)windowtotallatency)/((double)windowoperations);
 		windowtotallatency=0;
 		windowoperations=0;
-		return "["+getName()+" AverageLatency(us)="+d.format(report)+"]";
+		return "["+getName()+" AverageLatency("+latencyunit.getLabel()+")="+d.format(latencyunit.convert(report))+"]";
 	}
 
 }
@@ -0,0 +1,110 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.measurements;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
+
+/**
+ * Counts of the codes an operation returned. Success, by far the most common, is a plain counter;
+ * other codes are looked up in a map. Not thread safe.
+ */
+class ReturnCodes
+{
+	long _ok=0;
+	TreeMap<Integer,long[]> _others=new TreeMap<Integer,long[]>();
+
+	void report(int code)
+	{
+		if (code==0)
+		{
+			_ok++;
+			return;
+		}
+		add(code,1);
+	}
+
+	void add(int code, long count)
+	{
+		long[] val=_others.get(code);
+		if (val==null)
+		{
+			val=new long[1];
+			_others.put(code,val);
+		}
+		val[0]+=count;
+	}
+
+	void add(ReturnCodes other)
+	{
+		_ok+=other._ok;
+		for (Map.Entry<Integer,long[]> entry : other._others.entrySet())
+		{
+			add(entry.getKey(),entry.getValue()[0]);
+		}
+	}
+
+	/**
+	 * @return the number of codes reported
+	 */
+	long count()
+	{
+		long count=_ok;
+		for (long[] val : _others.values())
+		{
+			count+=val[0];
+		}
+		return count;
+	}
+
+	void reset()
+	{
+		_ok=0;
+		_others.clear();
+	}
+
+	/**
+	 * Write a "Return=code" line for each code returned, in order of the codes, and the percentage of
+	 * codes that were errors (non-zero).
+	 */
+	void export(MeasurementsExporter exporter, String name) throws IOException
+	{
+		boolean okdone=(_ok==0);
+		for (Map.Entry<Integer,long[]> entry : _others.entrySet())
+		{
+			if (!okdone && (entry.getKey()>0))
+			{
+				exporter.write(name, "Return=0", _ok);
+				okdone=true;
+			}
+			exporter.write(name, "Return="+entry.getKey(), entry.getValue()[0]);
+		}
+		if (!okdone)
+		{
+			exporter.write(name, "Return=0", _ok);
+		}
+		long count=count();
+		if (count>0)
+		{
+			exporter.write(name, "FailureRate(%)", 100.0*(count-_ok)/count);
+		}
+	}
+}
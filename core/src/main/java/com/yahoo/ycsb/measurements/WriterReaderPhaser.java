@@ -0,0 +1,95 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.measurements;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lets writers record into one of two buffers while a reader swaps them, without the writers ever
+ * waiting: entering and leaving a write only increments a counter, and the reader waits for the
+ * writers still using the old buffer before it reads it. This is the scheme of the
+ * WriterReaderPhaser in HdrHistogram.
+ */
+class WriterReaderPhaser
+{
+	final AtomicLong _startepoch=new AtomicLong(0);
+	final AtomicLong _evenendepoch=new AtomicLong(0);
+	final AtomicLong _oddendepoch=new AtomicLong(Long.MIN_VALUE);
+
+	/**
+	 * Start writing.
+	 *
+	 * @return the value to pass to writerExit(), and to bufferIndex() to find the buffer to write to
+	 */
+	long writerEnter()
+	{
+		return _startepoch.getAndIncrement();
+	}
+
+	/**
+	 * Finish writing.
+	 *
+	 * @param enter the value writerEnter() returned
+	 */
+	void writerExit(long enter)
+	{
+		if (enter<0)
+		{
+			_oddendepoch.getAndIncrement();
+		}
+		else
+		{
+			_evenendepoch.getAndIncrement();
+		}
+	}
+
+	/**
+	 * The buffer, 0 or 1, a writer that entered with the given value writes to.
+	 */
+	static int bufferIndex(long enter)
+	{
+		return (enter<0) ? 1 : 0;
+	}
+
+	/**
+	 * Send writers to the other buffer, and wait for the writers still using the old one to finish.
+	 * Only one reader may flip at a time.
+	 *
+	 * @return the buffer the writers were using, which the reader now has to itself until the next flip
+	 */
+	int flipPhase()
+	{
+		boolean nextphaseiseven=(_startepoch.get()<0);
+		long initialstartvalue=nextphaseiseven ? 0 : Long.MIN_VALUE;
+		if (nextphaseiseven)
+		{
+			_evenendepoch.set(initialstartvalue);
+		}
+		else
+		{
+			_oddendepoch.set(initialstartvalue);
+		}
+		long startvalueatflip=_startepoch.getAndSet(initialstartvalue);
+		AtomicLong oldendepoch=nextphaseiseven ? _oddendepoch : _evenendepoch;
+		while (oldendepoch.get()!=startvalueatflip)
+		{
+			Thread.yield();
+		}
+		return nextphaseiseven ? 1 : 0;
+	}
+}
@@ -19,7 +19,7 @@ package com.yahoo.ycsb.workloads;
 
 import java.util.Properties;
 import com.yahoo.ycsb.*;
-import com.yahoo.ycsb.generator.CounterGenerator;
+import com.yahoo.ycsb.generator.AcknowledgedCounterGenerator;
 import com.yahoo.ycsb.generator.DiscreteGenerator;
 import com.yahoo.ycsb.generator.ExponentialGenerator;
 import com.yahoo.ycsb.generator.Generator;
@@ -34,9 +34,12 @@ import com.yahoo.ycsb.generator.ZipfianGenerator;
 import com.yahoo.ycsb.measurements.Measurements;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Vector;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * The core benchmark scenario. Represents a set of clients doing simple CRUD operations. The relative 
@@ -54,10 +57,15 @@ import java.util.Vector;
  * <LI><b>insertproportion</b>: what proportion of operations should be inserts (default: 0)
  * <LI><b>scanproportion</b>: what proportion of operations should be scans (default: 0)
  * <LI><b>readmodifywriteproportion</b>: what proportion of operations should be read a record, modify it, write it back (default: 0)
+ * <LI><b>deleteproportion</b>: what proportion of operations should be deletes (default: 0)
+ * <LI><b>batchreadproportion</b>, <b>batchupdateproportion</b>, <b>batchinsertproportion</b>, <b>batchdeleteproportion</b>: what proportion of operations should read, update, insert or delete a batch of records in one call (default: 0)
+ * <LI><b>maxbatchsize</b>: for batch operations, what is the maximum number of records in a batch (default: 10)
+ * <LI><b>batchsizedistribution</b>: for batch operations, what distribution should be used to choose the number of records in each batch, between 1 and maxbatchsize (default: uniform)
  * <LI><b>requestdistribution</b>: what distribution should be used to select the records to operate on - uniform, zipfian, hotspot, or latest (default: uniform)
  * <LI><b>maxscanlength</b>: for scans, what is the maximum number of records to scan (default: 1000)
  * <LI><b>scanlengthdistribution</b>: for scans, what distribution should be used to choose the number of records to scan, for each scan, between 1 and maxscanlength (default: uniform)
  * <LI><b>insertorder</b>: should records be inserted in order by key ("ordered"), or in hashed order ("hashed") (default: hashed)
+ * <LI><b>insertpartitioning</b>: how the load phase divides the keys between the clients - "interleaved", taking turns through the whole range, or "range", a contiguous slice each (default: interleaved)
  * </ul> 
  */
 public class CoreWorkload extends Workload
@@ -118,11 +126,6 @@ public class CoreWorkload extends Workload
 	 */
 	public static final String FIELD_LENGTH_HISTOGRAM_FILE_PROPERTY_DEFAULT = "hist.txt";
 
-	/**
-	 * Generator object that produces field lengths.  The value of this depends on the properties that start with "FIELD_LENGTH_".
-	 */
-	IntegerGenerator fieldlengthgenerator;
-	
 	/**
 	 * The name of the property for deciding whether to read one field (false) or all fields (true) of a record.
 	 */
@@ -197,6 +200,64 @@ public class CoreWorkload extends Workload
 	 * The default proportion of transactions that are scans.
 	 */
 	public static final String READMODIFYWRITE_PROPORTION_PROPERTY_DEFAULT="0.0";
+
+	/**
+	 * The name of the property for the proportion of transactions that are deletes. Deleted records
+	 * are remembered, and other operations choose among the records that are left. Inserts always
+	 * use new keys, so deleted records are not inserted again.
+	 */
+	public static final String DELETE_PROPORTION_PROPERTY="deleteproportion";
+
+	/**
+	 * The default proportion of transactions that are deletes.
+	 */
+	public static final String DELETE_PROPORTION_PROPERTY_DEFAULT="0.0";
+
+	/**
+	 * The name of the property for the proportion of transactions that read a batch of records.
+	 */
+	public static final String BATCH_READ_PROPORTION_PROPERTY="batchreadproportion";
+
+	/**
+	 * The name of the property for the proportion of transactions that update a batch of records.
+	 */
+	public static final String BATCH_UPDATE_PROPORTION_PROPERTY="batchupdateproportion";
+
+	/**
+	 * The name of the property for the proportion of transactions that insert a batch of records.
+	 */
+	public static final String BATCH_INSERT_PROPORTION_PROPERTY="batchinsertproportion";
+
+	/**
+	 * The name of the property for the proportion of transactions that delete a batch of records.
+	 * Deleted records are remembered as for single deletes.
+	 */
+	public static final String BATCH_DELETE_PROPORTION_PROPERTY="batchdeleteproportion";
+
+	/**
+	 * The default proportion of transactions of each batch kind.
+	 */
+	public static final String BATCH_PROPORTION_PROPERTY_DEFAULT="0.0";
+
+	/**
+	 * The name of the property for the max number of records in a batch.
+	 */
+	public static final String MAX_BATCH_SIZE_PROPERTY="maxbatchsize";
+
+	/**
+	 * The default max batch size.
+	 */
+	public static final String MAX_BATCH_SIZE_PROPERTY_DEFAULT="10";
+
+	/**
+	 * The name of the property for the batch size distribution. Options are "uniform", "zipfian" (favoring small batches) and "constant".
+	 */
+	public static final String BATCH_SIZE_DISTRIBUTION_PROPERTY="batchsizedistribution";
+
+	/**
+	 * The default batch size distribution.
+	 */
+	public static final String BATCH_SIZE_DISTRIBUTION_PROPERTY_DEFAULT="uniform";
 	
 	/**
 	 * The name of the property for the the distribution of requests across the keyspace. Options are "uniform", "zipfian" and "latest"
@@ -237,6 +298,20 @@ public class CoreWorkload extends Workload
 	 * Default insert order.
 	 */
 	public static final String INSERT_ORDER_PROPERTY_DEFAULT="hashed";
+
+	/**
+	 * The name of the property for how the load phase divides the keys to insert between the clients.
+	 * Options are "interleaved", where the clients take turns through the range, and "range", where
+	 * each client loads its own contiguous slice of [insertstart, insertstart+insertcount) in order;
+	 * with ordered inserts, the clients then write to separate parts of the key space, such as the
+	 * regions of a pre-split table.
+	 */
+	public static final String INSERT_PARTITIONING_PROPERTY="insertpartitioning";
+
+	/**
+	 * Default insert partitioning.
+	 */
+	public static final String INSERT_PARTITIONING_PROPERTY_DEFAULT="interleaved";
 	
 	/**
    * Percentage data items that constitute the hot set.
@@ -258,21 +333,89 @@ public class CoreWorkload extends Workload
    */
   public static final String HOTSPOT_OPN_FRACTION_DEFAULT = "0.8";
 	
-	IntegerGenerator keysequence;
-
-	DiscreteGenerator operationchooser;
+	/**
+	 * The sequence of keys inserted during the transaction phase. This is the only generator the
+	 * clients share: it is a lock-free counter, and its last value, which only counts the inserts that
+	 * have completed, bounds the keys the other clients choose.
+	 */
+	AcknowledgedCounterGenerator transactioninsertkeysequence;
 
-	IntegerGenerator keychooser;
+	/**
+	 * The generator the clients' "latest" key choosers are copied from, so that zeta is only computed
+	 * once; null for other request distributions.
+	 */
+	SkewedLatestGenerator latestkeychooser;
 
-	Generator fieldchooser;
+	/**
+	 * The keys deleted so far, shared by the clients, which choose keys for the other operations
+	 * among those not in it.
+	 */
+	DeletedKeySet deletedkeys;
 
-	CounterGenerator transactioninsertkeysequence;
-	
-	IntegerGenerator scanlength;
+	/**
+	 * How many keys nextKeynum() draws in a row before it gives up looking for one that is live, and
+	 * returns a deleted key, so that a run that has deleted nearly every record does not stall.
+	 */
+	static final int LIVE_KEY_ATTEMPTS=1000;
 	
 	boolean orderedinserts;
 
-	int recordcount;
+	long recordcount;
+
+	long insertstart;
+	long insertcount;
+	boolean rangepartitioning;
+
+	/**
+	 * The generators one client uses to choose its operations, keys, fields and lengths. Each client
+	 * has its own, created by initThread(), so that clients on different threads never contend for a
+	 * generator. The state is only used by the thread running the client, so it needs no synchronization.
+	 */
+	protected static class ThreadState
+	{
+		DiscreteGenerator operationchooser;
+
+		IntegerGenerator keychooser;
+
+		Generator fieldchooser;
+
+		/**
+		 * Generator object that produces field lengths.  The value of this depends on the properties that start with "FIELD_LENGTH_".
+		 */
+		IntegerGenerator fieldlengthgenerator;
+
+		IntegerGenerator scanlength;
+
+		IntegerGenerator batchsize;
+
+		/**
+		 * The next key this client loads. Either the clients take turns through the key range, each
+		 * loading every insertstride'th key, or each loads a slice of the range with a stride of one;
+		 * either way, between them they load the same keys a single shared counter would.
+		 */
+		long nextinsertkey;
+
+		long insertstride;
+
+		Measurements measurements;
+
+		/**
+		 * Set when an insert of the load phase fails. Through a PipelinedDB that is only known once
+		 * the insert completes, so the client stops at its next insert instead.
+		 */
+		volatile boolean insertfailed=false;
+
+		DBFuture.Listener insertlistener=new DBFuture.Listener()
+		{
+			public void completed(int result)
+			{
+				if (result!=0)
+				{
+					insertfailed=true;
+				}
+			}
+		};
+	}
 	
 	protected static IntegerGenerator getFieldLengthGenerator(Properties p) throws WorkloadException{
 		IntegerGenerator fieldlengthgenerator;
@@ -306,19 +449,24 @@ public class CoreWorkload extends Workload
 		table = p.getProperty(TABLENAME_PROPERTY,TABLENAME_PROPERTY_DEFAULT);
 		
 		fieldcount=Integer.parseInt(p.getProperty(FIELD_COUNT_PROPERTY,FIELD_COUNT_PROPERTY_DEFAULT));
-		fieldlengthgenerator = CoreWorkload.getFieldLengthGenerator(p);
-		
-		double readproportion=Double.parseDouble(p.getProperty(READ_PROPORTION_PROPERTY,READ_PROPORTION_PROPERTY_DEFAULT));
-		double updateproportion=Double.parseDouble(p.getProperty(UPDATE_PROPORTION_PROPERTY,UPDATE_PROPORTION_PROPERTY_DEFAULT));
-		double insertproportion=Double.parseDouble(p.getProperty(INSERT_PROPORTION_PROPERTY,INSERT_PROPORTION_PROPERTY_DEFAULT));
-		double scanproportion=Double.parseDouble(p.getProperty(SCAN_PROPORTION_PROPERTY,SCAN_PROPORTION_PROPERTY_DEFAULT));
-		double readmodifywriteproportion=Double.parseDouble(p.getProperty(READMODIFYWRITE_PROPORTION_PROPERTY,READMODIFYWRITE_PROPORTION_PROPERTY_DEFAULT));
-		recordcount=Integer.parseInt(p.getProperty(Client.RECORD_COUNT_PROPERTY));
+		recordcount=Long.parseLong(p.getProperty(Client.RECORD_COUNT_PROPERTY));
 		String requestdistrib=p.getProperty(REQUEST_DISTRIBUTION_PROPERTY,REQUEST_DISTRIBUTION_PROPERTY_DEFAULT);
-		int maxscanlength=Integer.parseInt(p.getProperty(MAX_SCAN_LENGTH_PROPERTY,MAX_SCAN_LENGTH_PROPERTY_DEFAULT));
-		String scanlengthdistrib=p.getProperty(SCAN_LENGTH_DISTRIBUTION_PROPERTY,SCAN_LENGTH_DISTRIBUTION_PROPERTY_DEFAULT);
 		
-		int insertstart=Integer.parseInt(p.getProperty(INSERT_START_PROPERTY,INSERT_START_PROPERTY_DEFAULT));
+		insertstart=Long.parseLong(p.getProperty(INSERT_START_PROPERTY,INSERT_START_PROPERTY_DEFAULT));
+		insertcount=Long.parseLong(p.getProperty(Client.INSERT_COUNT_PROPERTY,Long.toString(recordcount)));
+		String partitioning=p.getProperty(INSERT_PARTITIONING_PROPERTY,INSERT_PARTITIONING_PROPERTY_DEFAULT);
+		if (partitioning.compareTo("range")==0)
+		{
+			rangepartitioning=true;
+		}
+		else if (partitioning.compareTo("interleaved")==0)
+		{
+			rangepartitioning=false;
+		}
+		else
+		{
+			throw new WorkloadException("Unknown insert partitioning \""+partitioning+"\"");
+		}
 		
 		readallfields=Boolean.parseBoolean(p.getProperty(READ_ALL_FIELDS_PROPERTY,READ_ALL_FIELDS_PROPERTY_DEFAULT));
 		writeallfields=Boolean.parseBoolean(p.getProperty(WRITE_ALL_FIELDS_PROPERTY,WRITE_ALL_FIELDS_PROPERTY_DEFAULT));
@@ -327,50 +475,116 @@ public class CoreWorkload extends Workload
 		{
 			orderedinserts=false;
 		}
-		else if (requestdistrib.compareTo("exponential")==0)
+		else
 		{
-                    double percentile = Double.parseDouble(p.getProperty(ExponentialGenerator.EXPONENTIAL_PERCENTILE_PROPERTY,
-                                                                         ExponentialGenerator.EXPONENTIAL_PERCENTILE_DEFAULT));
-                    double frac       = Double.parseDouble(p.getProperty(ExponentialGenerator.EXPONENTIAL_FRAC_PROPERTY,
-                                                                         ExponentialGenerator.EXPONENTIAL_FRAC_DEFAULT));
-                    keychooser = new ExponentialGenerator(percentile, recordcount*frac);
+			orderedinserts=true;
+		}
+
+		transactioninsertkeysequence=new AcknowledgedCounterGenerator(recordcount);
+		deletedkeys=new DeletedKeySet();
+		if (requestdistrib.compareTo("latest")==0)
+		{
+			latestkeychooser=new SkewedLatestGenerator(transactioninsertkeysequence);
+		}
+
+		//build one set of generators now, so that bad properties are reported before the clients start
+		initThread(p,0,1);
+	}
+
+	/**
+	 * Create the generators for one client. The key chooser of each client follows the same
+	 * distribution over the whole key space, so the clients together choose keys just as a single
+	 * shared generator would.
+	 */
+	public Object initThread(Properties p, int mythreadid, int threadcount) throws WorkloadException
+	{
+		ThreadState state=new ThreadState();
+
+		state.measurements=Measurements.getMeasurements();
+		state.fieldlengthgenerator = CoreWorkload.getFieldLengthGenerator(p);
+		
+		double readproportion=Double.parseDouble(p.getProperty(READ_PROPORTION_PROPERTY,READ_PROPORTION_PROPERTY_DEFAULT));
+		double updateproportion=Double.parseDouble(p.getProperty(UPDATE_PROPORTION_PROPERTY,UPDATE_PROPORTION_PROPERTY_DEFAULT));
+		double insertproportion=Double.parseDouble(p.getProperty(INSERT_PROPORTION_PROPERTY,INSERT_PROPORTION_PROPERTY_DEFAULT));
+		double scanproportion=Double.parseDouble(p.getProperty(SCAN_PROPORTION_PROPERTY,SCAN_PROPORTION_PROPERTY_DEFAULT));
+		double readmodifywriteproportion=Double.parseDouble(p.getProperty(READMODIFYWRITE_PROPORTION_PROPERTY,READMODIFYWRITE_PROPORTION_PROPERTY_DEFAULT));
+		String requestdistrib=p.getProperty(REQUEST_DISTRIBUTION_PROPERTY,REQUEST_DISTRIBUTION_PROPERTY_DEFAULT);
+		int maxscanlength=Integer.parseInt(p.getProperty(MAX_SCAN_LENGTH_PROPERTY,MAX_SCAN_LENGTH_PROPERTY_DEFAULT));
+		String scanlengthdistrib=p.getProperty(SCAN_LENGTH_DISTRIBUTION_PROPERTY,SCAN_LENGTH_DISTRIBUTION_PROPERTY_DEFAULT);
+		double deleteproportion=Double.parseDouble(p.getProperty(DELETE_PROPORTION_PROPERTY,DELETE_PROPORTION_PROPERTY_DEFAULT));
+		double batchreadproportion=Double.parseDouble(p.getProperty(BATCH_READ_PROPORTION_PROPERTY,BATCH_PROPORTION_PROPERTY_DEFAULT));
+		double batchupdateproportion=Double.parseDouble(p.getProperty(BATCH_UPDATE_PROPORTION_PROPERTY,BATCH_PROPORTION_PROPERTY_DEFAULT));
+		double batchinsertproportion=Double.parseDouble(p.getProperty(BATCH_INSERT_PROPORTION_PROPERTY,BATCH_PROPORTION_PROPERTY_DEFAULT));
+		double batchdeleteproportion=Double.parseDouble(p.getProperty(BATCH_DELETE_PROPORTION_PROPERTY,BATCH_PROPORTION_PROPERTY_DEFAULT));
+		int maxbatchsize=Integer.parseInt(p.getProperty(MAX_BATCH_SIZE_PROPERTY,MAX_BATCH_SIZE_PROPERTY_DEFAULT));
+		String batchsizedistrib=p.getProperty(BATCH_SIZE_DISTRIBUTION_PROPERTY,BATCH_SIZE_DISTRIBUTION_PROPERTY_DEFAULT);
+
+		if (rangepartitioning)
+		{
+			//the same number of keys each as the client is asked to insert
+			state.nextinsertkey=insertstart+mythreadid*(insertcount/threadcount);
+			state.insertstride=1;
 		}
 		else
 		{
-			orderedinserts=true;
+			state.nextinsertkey=insertstart+mythreadid;
+			state.insertstride=threadcount;
 		}
 
-		keysequence=new CounterGenerator(insertstart);
-		operationchooser=new DiscreteGenerator();
+		state.operationchooser=new DiscreteGenerator();
 		if (readproportion>0)
 		{
-			operationchooser.addValue(readproportion,"READ");
+			state.operationchooser.addValue(readproportion,"READ");
 		}
 
 		if (updateproportion>0)
 		{
-			operationchooser.addValue(updateproportion,"UPDATE");
+			state.operationchooser.addValue(updateproportion,"UPDATE");
 		}
 
 		if (insertproportion>0)
 		{
-			operationchooser.addValue(insertproportion,"INSERT");
+			state.operationchooser.addValue(insertproportion,"INSERT");
 		}
 		
 		if (scanproportion>0)
 		{
-			operationchooser.addValue(scanproportion,"SCAN");
+			state.operationchooser.addValue(scanproportion,"SCAN");
 		}
 		
 		if (readmodifywriteproportion>0)
 		{
-			operationchooser.addValue(readmodifywriteproportion,"READMODIFYWRITE");
+			state.operationchooser.addValue(readmodifywriteproportion,"READMODIFYWRITE");
+		}
+
+		if (deleteproportion>0)
+		{
+			state.operationchooser.addValue(deleteproportion,"DELETE");
+		}
+
+		if (batchreadproportion>0)
+		{
+			state.operationchooser.addValue(batchreadproportion,"BATCHREAD");
+		}
+
+		if (batchupdateproportion>0)
+		{
+			state.operationchooser.addValue(batchupdateproportion,"BATCHUPDATE");
+		}
+
+		if (batchinsertproportion>0)
+		{
+			state.operationchooser.addValue(batchinsertproportion,"BATCHINSERT");
+		}
+
+		if (batchdeleteproportion>0)
+		{
+			state.operationchooser.addValue(batchdeleteproportion,"BATCHDELETE");
 		}
 
-		transactioninsertkeysequence=new CounterGenerator(recordcount);
 		if (requestdistrib.compareTo("uniform")==0)
 		{
-			keychooser=new UniformIntegerGenerator(0,recordcount-1);
+			state.keychooser=new UniformIntegerGenerator(0,recordcount-1);
 		}
 		else if (requestdistrib.compareTo("zipfian")==0)
 		{
@@ -381,14 +595,23 @@ public class CoreWorkload extends Workload
 			//plus the number of predicted keys as the total keyspace. then, if the generator picks a key that hasn't been inserted yet, will
 			//just ignore it and pick another key. this way, the size of the keyspace doesn't change from the perspective of the scrambled zipfian generator
 			
-			int opcount=Integer.parseInt(p.getProperty(Client.OPERATION_COUNT_PROPERTY));
-			int expectednewkeys=(int)(((double)opcount)*insertproportion*2.0); //2 is fudge factor
+			long opcount=Long.parseLong(p.getProperty(Client.OPERATION_COUNT_PROPERTY));
+			double insertsperop=insertproportion+batchinsertproportion*maxbatchsize;
+			long expectednewkeys=(long)(((double)opcount)*insertsperop*2.0); //2 is fudge factor
 			
-			keychooser=new ScrambledZipfianGenerator(recordcount+expectednewkeys);
+			state.keychooser=new ScrambledZipfianGenerator(recordcount+expectednewkeys);
 		}
 		else if (requestdistrib.compareTo("latest")==0)
 		{
-			keychooser=new SkewedLatestGenerator(transactioninsertkeysequence);
+			state.keychooser=new SkewedLatestGenerator(latestkeychooser);
+		}
+		else if (requestdistrib.compareTo("exponential")==0)
+		{
+                    double percentile = Double.parseDouble(p.getProperty(ExponentialGenerator.EXPONENTIAL_PERCENTILE_PROPERTY,
+                                                                         ExponentialGenerator.EXPONENTIAL_PERCENTILE_DEFAULT));
+                    double frac       = Double.parseDouble(p.getProperty(ExponentialGenerator.EXPONENTIAL_FRAC_PROPERTY,
+                                                                         ExponentialGenerator.EXPONENTIAL_FRAC_DEFAULT));
+                    state.keychooser = new ExponentialGenerator(percentile, recordcount*frac);
 		}
 		else if (requestdistrib.equals("hotspot")) 
 		{
@@ -396,7 +619,7 @@ public class CoreWorkload extends Workload
           HOTSPOT_DATA_FRACTION, HOTSPOT_DATA_FRACTION_DEFAULT));
       double hotopnfraction = Double.parseDouble(p.getProperty(
           HOTSPOT_OPN_FRACTION, HOTSPOT_OPN_FRACTION_DEFAULT));
-      keychooser = new HotspotIntegerGenerator(0, recordcount - 1, 
+      state.keychooser = new HotspotIntegerGenerator(0, recordcount - 1, 
           hotsetfraction, hotopnfraction);
     }
 		else
@@ -404,20 +627,38 @@ public class CoreWorkload extends Workload
 			throw new WorkloadException("Unknown request distribution \""+requestdistrib+"\"");
 		}
 
-		fieldchooser=new UniformIntegerGenerator(0,fieldcount-1);
+		state.fieldchooser=new UniformIntegerGenerator(0,fieldcount-1);
 		
 		if (scanlengthdistrib.compareTo("uniform")==0)
 		{
-			scanlength=new UniformIntegerGenerator(1,maxscanlength);
+			state.scanlength=new UniformIntegerGenerator(1,maxscanlength);
 		}
 		else if (scanlengthdistrib.compareTo("zipfian")==0)
 		{
-			scanlength=new ZipfianGenerator(1,maxscanlength);
+			state.scanlength=new ZipfianGenerator(1,maxscanlength);
 		}
 		else
 		{
 			throw new WorkloadException("Distribution \""+scanlengthdistrib+"\" not allowed for scan length");
 		}
+
+		if (batchsizedistrib.compareTo("uniform")==0)
+		{
+			state.batchsize=new UniformIntegerGenerator(1,maxbatchsize);
+		}
+		else if (batchsizedistrib.compareTo("zipfian")==0)
+		{
+			state.batchsize=new ZipfianGenerator(1,maxbatchsize);
+		}
+		else if (batchsizedistrib.compareTo("constant")==0)
+		{
+			state.batchsize=new ConstantIntegerGenerator(maxbatchsize);
+		}
+		else
+		{
+			throw new WorkloadException("Distribution \""+batchsizedistrib+"\" not allowed for batch size");
+		}
+		return state;
 	}
 
 	public String buildKeyName(long keynum) {
@@ -427,22 +668,22 @@ public class CoreWorkload extends Workload
  		}
 		return "user"+keynum;
 	}
-	HashMap<String, ByteIterator> buildValues() {
+	HashMap<String, ByteIterator> buildValues(ThreadState state) {
  		HashMap<String,ByteIterator> values=new HashMap<String,ByteIterator>();
 
  		for (int i=0; i<fieldcount; i++)
  		{
  			String fieldkey="field"+i;
- 			ByteIterator data= new RandomByteIterator(fieldlengthgenerator.nextInt());
+ 			ByteIterator data= new RandomByteIterator(state.fieldlengthgenerator.nextInt());
  			values.put(fieldkey,data);
  		}
 		return values;
 	}
-	HashMap<String, ByteIterator> buildUpdate() {
+	HashMap<String, ByteIterator> buildUpdate(ThreadState state) {
 		//update a random field
 		HashMap<String, ByteIterator> values=new HashMap<String,ByteIterator>();
-		String fieldname="field"+fieldchooser.nextString();
-		ByteIterator data = new RandomByteIterator(fieldlengthgenerator.nextInt());
+		String fieldname="field"+state.fieldchooser.nextString();
+		ByteIterator data = new RandomByteIterator(state.fieldlengthgenerator.nextInt());
 		values.put(fieldname,data);
 		return values;
 	}
@@ -455,13 +696,21 @@ public class CoreWorkload extends Workload
 	 */
 	public boolean doInsert(DB db, Object threadstate)
 	{
-		int keynum=keysequence.nextInt();
-		String dbkey = buildKeyName(keynum);
-		HashMap<String, ByteIterator> values = buildValues();
-		if (db.insert(table,dbkey,values) == 0)
-			return true;
-		else
+		ThreadState state=(ThreadState)threadstate;
+		if (state.insertfailed)
+		{
 			return false;
+		}
+		long span=state.measurements.startSpan();
+		long keynum=state.nextinsertkey;
+		state.nextinsertkey+=state.insertstride;
+		String dbkey = buildKeyName(keynum);
+		state.measurements.endSpan(Measurements.SPAN_KEY,span);
+		span=state.measurements.startSpan();
+		HashMap<String, ByteIterator> values = buildValues(state);
+		state.measurements.endSpan(Measurements.SPAN_VALUE,span);
+		issueInsert(db,table,dbkey,values).addListener(state.insertlistener);
+		return !state.insertfailed;
 	}
 
 	/**
@@ -472,63 +721,97 @@ public class CoreWorkload extends Workload
 	 */
 	public boolean doTransaction(DB db, Object threadstate)
 	{
-		String op=operationchooser.nextString();
+		ThreadState state=(ThreadState)threadstate;
+		String op=state.operationchooser.nextString();
 
 		if (op.compareTo("READ")==0)
 		{
-			doTransactionRead(db);
+			doTransactionRead(db,state);
 		}
 		else if (op.compareTo("UPDATE")==0)
 		{
-			doTransactionUpdate(db);
+			doTransactionUpdate(db,state);
 		}
 		else if (op.compareTo("INSERT")==0)
 		{
-			doTransactionInsert(db);
+			doTransactionInsert(db,state);
 		}
 		else if (op.compareTo("SCAN")==0)
 		{
-			doTransactionScan(db);
+			doTransactionScan(db,state);
+		}
+		else if (op.compareTo("DELETE")==0)
+		{
+			doTransactionDelete(db,state);
+		}
+		else if (op.compareTo("BATCHREAD")==0)
+		{
+			doTransactionBatchRead(db,state);
+		}
+		else if (op.compareTo("BATCHUPDATE")==0)
+		{
+			doTransactionBatchUpdate(db,state);
+		}
+		else if (op.compareTo("BATCHINSERT")==0)
+		{
+			doTransactionBatchInsert(db,state);
+		}
+		else if (op.compareTo("BATCHDELETE")==0)
+		{
+			doTransactionBatchDelete(db,state);
 		}
 		else
 		{
-			doTransactionReadModifyWrite(db);
+			doTransactionReadModifyWrite(db,state);
 		}
 		
 		return true;
 	}
 
-    int nextKeynum() {
-        int keynum;
-        if(keychooser instanceof ExponentialGenerator) {
+    long nextKeynum(ThreadState state) {
+        long keynum;
+        int attempts=0;
+        do
+            {
+                keynum=nextInsertedKeynum(state);
+            }
+        while (deletedkeys.isDeleted(keynum) && (++attempts<LIVE_KEY_ATTEMPTS));
+        return keynum;
+    }
+
+    long nextInsertedKeynum(ThreadState state) {
+        long keynum;
+        if(state.keychooser instanceof ExponentialGenerator) {
             do
                 {
-                    keynum=transactioninsertkeysequence.lastInt() - keychooser.nextInt();
+                    keynum=transactioninsertkeysequence.lastLong() - state.keychooser.nextLong();
                 }
             while(keynum < 0);
         } else {
             do
                 {
-                    keynum=keychooser.nextInt();
+                    keynum=state.keychooser.nextLong();
                 }
-            while (keynum > transactioninsertkeysequence.lastInt());
+            while (keynum > transactioninsertkeysequence.lastLong());
         }
         return keynum;
     }
 
-	public void doTransactionRead(DB db)
+	public void doTransactionRead(DB db, ThreadState state)
 	{
 		//choose a random key
-		int keynum = nextKeynum();
+		long span=state.measurements.startSpan();
+		long keynum = nextKeynum(state);
 		
 		String keyname = buildKeyName(keynum);
+		state.measurements.endSpan(Measurements.SPAN_KEY,span);
 		
 		HashSet<String> fields=null;
 
 		if (!readallfields)
 		{
 			//read a random field  
-			String fieldname="field"+fieldchooser.nextString();
+			String fieldname="field"+state.fieldchooser.nextString();
 
 			fields=new HashSet<String>();
 			fields.add(fieldname);
@@ -537,19 +820,24 @@ public class CoreWorkload extends Workload
 		db.read(table,keyname,fields,new HashMap<String,ByteIterator>());
 	}
 	
-	public void doTransactionReadModifyWrite(DB db)
+	public void doTransactionReadModifyWrite(DB db, ThreadState state)
 	{
+		Measurements measurements=state.measurements;
+		measurements.nameSpans("READ-MODIFY-WRITE");
+
 		//choose a random key
-		int keynum = nextKeynum();
+		long span=measurements.startSpan();
+		long keynum = nextKeynum(state);
 
 		String keyname = buildKeyName(keynum);
+		measurements.endSpan(Measurements.SPAN_KEY,span);
 
 		HashSet<String> fields=null;
 
 		if (!readallfields)
 		{
 			//read a random field  
-			String fieldname="field"+fieldchooser.nextString();
+			String fieldname="field"+state.fieldchooser.nextString();
 
 			fields=new HashSet<String>();
 			fields.add(fieldname);
@@ -557,46 +845,54 @@ public class CoreWorkload extends Workload
 		
 		HashMap<String,ByteIterator> values;
 
+		span=measurements.startSpan();
 		if (writeallfields)
 		{
 		   //new data for all the fields
-		   values = buildValues();
+		   values = buildValues(state);
 		}
 		else
 		{
 		   //update a random field
-		   values = buildUpdate();
+		   values = buildUpdate(state);
 		}
+		measurements.endSpan(Measurements.SPAN_VALUE,span);
 
 		//do the transaction
-		
+
+		long ist=measurements.getIntendedStartTimeNs();
 		long st=System.nanoTime();
 
-		db.read(table,keyname,fields,new HashMap<String,ByteIterator>());
+		int readres=db.read(table,keyname,fields,new HashMap<String,ByteIterator>());
 		
-		db.update(table,keyname,values);
+		int updateres=db.update(table,keyname,values);
 
 		long en=System.nanoTime();
 		
-		Measurements.getMeasurements().measure("READ-MODIFY-WRITE", (int)((en-st)/1000));
+		int res=(readres!=0) ? readres : updateres;
+		measurements.measure("READ-MODIFY-WRITE", en-st, res);
+		measurements.measureIntended("READ-MODIFY-WRITE", en-ist, res);
+		measurements.reportReturnCode("READ-MODIFY-WRITE", res);
 	}
 	
-	public void doTransactionScan(DB db)
+	public void doTransactionScan(DB db, ThreadState state)
 	{
 		//choose a random key
-		int keynum = nextKeynum();
+		long span=state.measurements.startSpan();
+		long keynum = nextKeynum(state);
 
 		String startkeyname = buildKeyName(keynum);
+		state.measurements.endSpan(Measurements.SPAN_KEY,span);
 		
 		//choose a random scan length
-		int len=scanlength.nextInt();
+		int len=state.scanlength.nextInt();
 
 		HashSet<String> fields=null;
 
 		if (!readallfields)
 		{
 			//read a random field  
-			String fieldname="field"+fieldchooser.nextString();
+			String fieldname="field"+state.fieldchooser.nextString();
 
 			fields=new HashSet<String>();
 			fields.add(fieldname);
@@ -605,37 +901,292 @@ public class CoreWorkload extends Workload
 		db.scan(table,startkeyname,len,fields,new Vector<HashMap<String,ByteIterator>>());
 	}
 
-	public void doTransactionUpdate(DB db)
+	public void doTransactionUpdate(DB db, ThreadState state)
 	{
 		//choose a random key
-		int keynum = nextKeynum();
+		long span=state.measurements.startSpan();
+		long keynum = nextKeynum(state);
 
 		String keyname=buildKeyName(keynum);
+		state.measurements.endSpan(Measurements.SPAN_KEY,span);
 
 		HashMap<String,ByteIterator> values;
 
+		span=state.measurements.startSpan();
 		if (writeallfields)
 		{
 		   //new data for all the fields
-		   values = buildValues();
+		   values = buildValues(state);
 		}
 		else
 		{
 		   //update a random field
-		   values = buildUpdate();
+		   values = buildUpdate(state);
 		}
+		state.measurements.endSpan(Measurements.SPAN_VALUE,span);
 
 		db.update(table,keyname,values);
 	}
 
-	public void doTransactionInsert(DB db)
+	public void doTransactionInsert(DB db, ThreadState state)
 	{
 		//choose the next key
-		int keynum=transactioninsertkeysequence.nextInt();
+		long span=state.measurements.startSpan();
+		long keynum=transactioninsertkeysequence.nextLong();
 
 		String dbkey = buildKeyName(keynum);
+		state.measurements.endSpan(Measurements.SPAN_KEY,span);
 
-		HashMap<String, ByteIterator> values = buildValues();
-		db.insert(table,dbkey,values);
+		span=state.measurements.startSpan();
+		HashMap<String, ByteIterator> values = buildValues(state);
+		state.measurements.endSpan(Measurements.SPAN_VALUE,span);
+		DBFuture f;
+		try
+		{
+			f=issueInsert(db,table,dbkey,values);
+		}
+		catch (RuntimeException e)
+		{
+			acknowledgeInsert(keynum);
+			throw e;
+		}
+		//through a PipelinedDB the insert is still in flight, and the key cannot be chosen until it lands
+		f.addListener(new AcknowledgeListener(keynum));
+	}
+
+	public void doTransactionDelete(DB db, ThreadState state)
+	{
+		//choose a random live key, and mark it deleted before deleting it, so other clients stop choosing it
+		long span=state.measurements.startSpan();
+		long keynum;
+		boolean marked;
+		int attempts=0;
+		do
+		{
+			keynum=nextKeynum(state);
+			marked=deletedkeys.delete(keynum);
+		}
+		while (!marked && (++attempts<LIVE_KEY_ATTEMPTS));
+
+		String keyname=buildKeyName(keynum);
+		state.measurements.endSpan(Measurements.SPAN_KEY,span);
+
+		DBFuture f=issueDelete(db,table,keyname);
+		if (marked)
+		{
+			f.addListener(new UndeleteListener(keynum));
+		}
+	}
+
+	/**
+	 * If a delete fails the record is still there, so let the other operations choose its key again.
+	 */
+	class UndeleteListener implements DBFuture.Listener
+	{
+		long keynum;
+
+		UndeleteListener(long keynum)
+		{
+			this.keynum=keynum;
+		}
+
+		public void completed(int result)
+		{
+			if (result!=0)
+			{
+				deletedkeys.undelete(keynum);
+			}
+		}
+	}
+
+	/**
+	 * Insert a record, and return the insert's completion. A PipelinedDB only issues the insert,
+	 * which completes later; any other DB has inserted the record before this returns.
+	 */
+	static DBFuture issueInsert(DB db, String table, String key, HashMap<String,ByteIterator> values)
+	{
+		if (db instanceof PipelinedDB)
+		{
+			return ((PipelinedDB)db).insertAsync(table,key,values);
+		}
+		return DBFuture.completed(db.insert(table,key,values));
+	}
+
+	/**
+	 * Delete a record, and return the delete's completion, as issueInsert() does for inserts.
+	 */
+	static DBFuture issueDelete(DB db, String table, String key)
+	{
+		if (db instanceof PipelinedDB)
+		{
+			return ((PipelinedDB)db).deleteAsync(table,key);
+		}
+		return DBFuture.completed(db.delete(table,key));
+	}
+
+	/**
+	 * Acknowledges an inserted key when its insert completes.
+	 */
+	class AcknowledgeListener implements DBFuture.Listener
+	{
+		long keynum;
+
+		AcknowledgeListener(long keynum)
+		{
+			this.keynum=keynum;
+		}
+
+		public void completed(int result)
+		{
+			acknowledgeInsert(keynum);
+		}
+	}
+
+	/**
+	 * Acknowledge an inserted key, so that other operations can choose it. If the key is a whole
+	 * window ahead of an insert that has not finished, wait for that insert, checking every
+	 * millisecond whether the run has been asked to stop, so a hung insert cannot hold up the end
+	 * of the run.
+	 */
+	void acknowledgeInsert(long keynum)
+	{
+		while (!transactioninsertkeysequence.acknowledge(keynum))
+		{
+			if (isStopRequested())
+			{
+				return;
+			}
+			LockSupport.parkNanos(1000000);
+		}
+	}
+
+	/**
+	 * Choose the keys of a batch from the request distribution, as single-key operations would.
+	 */
+	List<String> chooseBatchKeys(ThreadState state)
+	{
+		int size=state.batchsize.nextInt();
+		List<String> keys=new ArrayList<String>(size);
+		for (int i=0; i<size; i++)
+		{
+			keys.add(buildKeyName(nextKeynum(state)));
+		}
+		return keys;
+	}
+
+	public void doTransactionBatchRead(DB db, ThreadState state)
+	{
+		//choose the keys
+		long span=state.measurements.startSpan();
+		List<String> keys=chooseBatchKeys(state);
+		state.measurements.endSpan(Measurements.SPAN_KEY,span);
+
+		HashSet<String> fields=null;
+
+		if (!readallfields)
+		{
+			//read a random field
+			String fieldname="field"+state.fieldchooser.nextString();
+
+			fields=new HashSet<String>();
+			fields.add(fieldname);
+		}
+
+		db.batchRead(table,keys,fields,new Vector<HashMap<String,ByteIterator>>());
+	}
+
+	public void doTransactionBatchUpdate(DB db, ThreadState state)
+	{
+		//choose the keys
+		long span=state.measurements.startSpan();
+		List<String> keys=chooseBatchKeys(state);
+		state.measurements.endSpan(Measurements.SPAN_KEY,span);
+
+		span=state.measurements.startSpan();
+		List<HashMap<String,ByteIterator>> values=new ArrayList<HashMap<String,ByteIterator>>(keys.size());
+		for (int i=0; i<keys.size(); i++)
+		{
+			if (writeallfields)
+			{
+			   //new data for all the fields
+			   values.add(buildValues(state));
+			}
+			else
+			{
+			   //update a random field
+			   values.add(buildUpdate(state));
+			}
+		}
+		state.measurements.endSpan(Measurements.SPAN_VALUE,span);
+
+		db.batchUpdate(table,keys,values);
+	}
+
+	public void doTransactionBatchInsert(DB db, ThreadState state)
+	{
+		//choose the next keys
+		long span=state.measurements.startSpan();
+		int size=state.batchsize.nextInt();
+		List<String> keys=new ArrayList<String>(size);
+		long[] keynums=new long[size];
+		for (int i=0; i<size; i++)
+		{
+			keynums[i]=transactioninsertkeysequence.nextLong();
+			keys.add(buildKeyName(keynums[i]));
+		}
+		state.measurements.endSpan(Measurements.SPAN_KEY,span);
+
+		span=state.measurements.startSpan();
+		List<HashMap<String,ByteIterator>> values=new ArrayList<HashMap<String,ByteIterator>>(size);
+		for (int i=0; i<size; i++)
+		{
+			values.add(buildValues(state));
+		}
+		state.measurements.endSpan(Measurements.SPAN_VALUE,span);
+
+		//batches run to completion on the calling thread, even through a PipelinedDB
+		try
+		{
+			db.batchInsert(table,keys,values);
+		}
+		finally
+		{
+			for (long keynum : keynums)
+			{
+				acknowledgeInsert(keynum);
+			}
+		}
+	}
+
+	public void doTransactionBatchDelete(DB db, ThreadState state)
+	{
+		//choose live keys, leaving out any another client, or this batch, deleted first
+		long span=state.measurements.startSpan();
+		int size=state.batchsize.nextInt();
+		List<String> keys=new ArrayList<String>(size);
+		long[] keynums=new long[size];
+		for (int i=0; i<size; i++)
+		{
+			long keynum=nextKeynum(state);
+			if (deletedkeys.delete(keynum))
+			{
+				keynums[keys.size()]=keynum;
+				keys.add(buildKeyName(keynum));
+			}
+		}
+		state.measurements.endSpan(Measurements.SPAN_KEY,span);
+
+		if (keys.isEmpty())
+		{
+			return;
+		}
+		//a failed batch does not say which records it deleted, so keep them all
+		if (db.batchDelete(table,keys)!=0)
+		{
+			for (int i=0; i<keys.size(); i++)
+			{
+				deletedkeys.undelete(keynums[i]);
+			}
+		}
 	}
 }
@@ -0,0 +1,152 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+
+package com.yahoo.ycsb.workloads;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The keys that have been deleted, as a bitmap over the key numbers, so that operations can choose
+ * only live keys. The bitmap is split into chunks that are only allocated once a key in them is
+ * deleted, so it costs nothing until deletes start and at most one bit per key after: 125 MB for
+ * a billion keys. Bits are set and cleared with compare-and-set, and looking up a key only reads
+ * memory, so the clients never wait for each other.
+ */
+class DeletedKeySet
+{
+	/**
+	 * The number of bits in a chunk is 1<<CHUNK_BITS: 64K keys, in 8 KB.
+	 */
+	static final int CHUNK_BITS=16;
+	static final int CHUNK_WORDS=1<<(CHUNK_BITS-6);
+
+	/**
+	 * The chunks, indexed by the key number shifted right by CHUNK_BITS; null where no key has been
+	 * deleted. The array is replaced, never modified in place, when it has to grow or a chunk is added.
+	 */
+	final AtomicReference<AtomicLongArray[]> _chunks=new AtomicReference<AtomicLongArray[]>(new AtomicLongArray[0]);
+
+	/**
+	 * @return true if the key has been deleted
+	 */
+	boolean isDeleted(long keynum)
+	{
+		AtomicLongArray chunk=chunk(keynum);
+		if (chunk==null)
+		{
+			return false;
+		}
+		return (chunk.get(word(keynum))&bit(keynum))!=0;
+	}
+
+	/**
+	 * Mark the key deleted.
+	 *
+	 * @return true if the key was live, false if it had already been deleted, in which case the caller
+	 * should not delete it again
+	 */
+	boolean delete(long keynum)
+	{
+		AtomicLongArray chunk=chunk(keynum);
+		if (chunk==null)
+		{
+			chunk=addChunk(keynum);
+		}
+		int word=word(keynum);
+		long bit=bit(keynum);
+		while (true)
+		{
+			long old=chunk.get(word);
+			if ((old&bit)!=0)
+			{
+				return false;
+			}
+			if (chunk.compareAndSet(word,old,old|bit))
+			{
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Mark the key live again, because deleting it failed.
+	 */
+	void undelete(long keynum)
+	{
+		AtomicLongArray chunk=chunk(keynum);
+		if (chunk==null)
+		{
+			return;
+		}
+		int word=word(keynum);
+		long bit=bit(keynum);
+		while (true)
+		{
+			long old=chunk.get(word);
+			if (((old&bit)==0) || chunk.compareAndSet(word,old,old&~bit))
+			{
+				return;
+			}
+		}
+	}
+
+	AtomicLongArray chunk(long keynum)
+	{
+		AtomicLongArray[] chunks=_chunks.get();
+		long index=keynum>>>CHUNK_BITS;
+		return (index<chunks.length) ? chunks[(int)index] : null;
+	}
+
+	/**
+	 * Add the chunk holding the key, unless another client gets there first, growing the array of
+	 * chunks to at least twice the size if it is too short.
+	 *
+	 * @return the chunk holding the key
+	 */
+	AtomicLongArray addChunk(long keynum)
+	{
+		int index=(int)(keynum>>>CHUNK_BITS);
+		AtomicLongArray chunk=new AtomicLongArray(CHUNK_WORDS);
+		while (true)
+		{
+			AtomicLongArray[] chunks=_chunks.get();
+			if ((index<chunks.length) && (chunks[index]!=null))
+			{
+				return chunks[index];
+			}
+			AtomicLongArray[] grown=new AtomicLongArray[(index<chunks.length) ? chunks.length : Math.max(index+1,2*chunks.length)];
+			System.arraycopy(chunks,0,grown,0,chunks.length);
+			grown[index]=chunk;
+			if (_chunks.compareAndSet(chunks,grown))
+			{
+				return chunk;
+			}
+		}
+	}
+
+	static int word(long keynum)
+	{
+		return (int)(keynum>>>6)&(CHUNK_WORDS-1);
+	}
+
+	static long bit(long keynum)
+	{
+		return 1L<<(keynum&63);
+	}
+}
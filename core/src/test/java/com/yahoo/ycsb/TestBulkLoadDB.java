@@ -0,0 +1,77 @@
+package com.yahoo.ycsb;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.Test;
+import static org.testng.AssertJUnit.*;
+
+public class TestBulkLoadDB {
+  /**
+   * A blocking DB whose batch inserts wait until the test lets them finish.
+   */
+  public static class SlowBatchDB extends BasicDB {
+    CountDownLatch finish = new CountDownLatch(0);
+    int running = 0;
+    int mostrunning = 0;
+    int records = 0;
+
+    public int batchInsert(String table, List<String> keys, List<HashMap<String, ByteIterator>> values) {
+      synchronized (this) {
+        running++;
+        mostrunning = Math.max(mostrunning, running);
+        notifyAll();
+      }
+      try {
+        finish.await();
+      } catch (InterruptedException e) {
+        return -1;
+      }
+      synchronized (this) {
+        running--;
+        records += keys.size();
+        notifyAll();
+      }
+      return 0;
+    }
+
+    synchronized void waitFor(int runningbatches, int insertedrecords) throws InterruptedException {
+      long deadline = System.currentTimeMillis() + 5000;
+      while (((running < runningbatches) || (records < insertedrecords)) && (System.currentTimeMillis() < deadline)) {
+        wait(100);
+      }
+    }
+  }
+
+  @Test
+  public void testBatchesOverlapOnClientThreads() throws Exception {
+    SlowBatchDB slow = new SlowBatchDB();
+    slow.finish = new CountDownLatch(1);
+    BulkLoadDB db = new BulkLoadDB(new AsyncDBAdapter(slow), 2, 60000, 2);
+    db.init();
+    for (int i = 0; i < 4; i++) {
+      // returns while the batches are still being written
+      db.insert("t", "k" + i, new HashMap<String, ByteIterator>());
+    }
+    slow.waitFor(2, 0);
+    assertEquals(2, slow.mostrunning);
+    slow.finish.countDown();
+    db.cleanup();
+    assertEquals(4, slow.records);
+  }
+
+  @Test
+  public void testIntervalFlushWithoutAnotherInsert() throws Exception {
+    SlowBatchDB slow = new SlowBatchDB();
+    BulkLoadDB db = new BulkLoadDB(new AsyncDBAdapter(slow), 100, 50, 1);
+    db.init();
+    long start = System.nanoTime();
+    db.insert("t", "k", new HashMap<String, ByteIterator>());
+    slow.waitFor(0, 1);
+    assertEquals(1, slow.records);
+    assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+    db.cleanup();
+  }
+}
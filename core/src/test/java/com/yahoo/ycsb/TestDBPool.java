@@ -0,0 +1,51 @@
+package com.yahoo.ycsb;
+
+import java.util.Properties;
+
+import com.yahoo.ycsb.measurements.Measurements;
+import org.testng.annotations.Test;
+import static org.testng.AssertJUnit.*;
+
+public class TestDBPool {
+  /**
+   * Counts the calls to flush() and cleanup().
+   */
+  public static class FlushCountingDB extends BasicDB {
+    static int flushes = 0;
+    static int cleanups = 0;
+
+    public void flush() {
+      flushes++;
+    }
+
+    public void cleanup() {
+      cleanups++;
+    }
+  }
+
+  @Test
+  public void testFlushedBetweenPhases() throws Exception {
+    Properties props = new Properties();
+    props.setProperty("basicdb.verbose", "false");
+    Measurements.setProperties(props);
+    DBPool dbpool = new DBPool();
+
+    // a phase followed by another: the DB is flushed, not cleaned up
+    DB db = dbpool.get(0, FlushCountingDB.class.getName(), props);
+    db.init();
+    db.cleanup();
+    assertEquals(1, FlushCountingDB.flushes);
+    assertEquals(0, FlushCountingDB.cleanups);
+
+    // the last phase gets the same DB, and cleans it up
+    dbpool.lastPhase();
+    assertSame(db, dbpool.get(0, FlushCountingDB.class.getName(), props));
+    db.init();
+    db.cleanup();
+    assertEquals(1, FlushCountingDB.flushes);
+    assertEquals(1, FlushCountingDB.cleanups);
+
+    dbpool.close();
+    assertEquals(1, FlushCountingDB.cleanups);
+  }
+}
@@ -0,0 +1,43 @@
+package com.yahoo.ycsb;
+
+import java.util.Properties;
+
+import com.yahoo.ycsb.measurements.Measurements;
+import org.testng.annotations.Test;
+import static org.testng.AssertJUnit.*;
+
+public class TestDBWrapper {
+  /**
+   * Complete an operation on a thread of its own, as an asynchronous binding's callback would.
+   */
+  static void completeOnOtherThread(final DBFuture f, final int result) throws InterruptedException {
+    Thread t = new Thread() {
+      public void run() {
+        f.complete(result);
+      }
+    };
+    t.start();
+    t.join();
+  }
+
+  @Test
+  public void testCorrectedWhenCompletedOnOtherThread() throws Exception {
+    Properties props = new Properties();
+    props.setProperty("measurementtype", "hdrhistogram");
+    props.setProperty(Measurements.MEASUREMENT_CORRECTION, "true");
+    Measurements.setProperties(props);
+    Measurements measurements = Measurements.getMeasurements();
+    TestPipelinedDB.HeldDB held = new TestPipelinedDB.HeldDB();
+    DBWrapper db = new DBWrapper(held);
+
+    measurements.setExpectedIntervalNs(1000000L);
+    db.readAsync("t", "k", null, null);
+    measurements.setExpectedIntervalNs(0);
+    Thread.sleep(5);
+    completeOnOtherThread(held.pending.get(0), 0);
+
+    // the operations the slow read held up were added, at the interval the read was issued with
+    assertTrue(measurements.getPercentileLatencyMs("Corrected-READ", 100) >= 5.0);
+    assertTrue(measurements.getPercentileLatencyMs("Corrected-READ", 1) < 5.0);
+  }
+}
@@ -0,0 +1,97 @@
+package com.yahoo.ycsb;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.Vector;
+
+import org.testng.annotations.Test;
+import static org.testng.AssertJUnit.*;
+
+public class TestPipelinedDB {
+  /**
+   * Holds every operation until the test completes it, and fails to issue inserts of the key "bad".
+   */
+  public static class HeldDB extends AsyncDB {
+    public List<DBFuture> pending = new ArrayList<DBFuture>();
+
+    DBFuture hold() {
+      DBFuture f = new DBFuture();
+      pending.add(f);
+      return f;
+    }
+
+    public DBFuture readAsync(String table, String key, Set<String> fields, HashMap<String, ByteIterator> result) {
+      return hold();
+    }
+
+    public DBFuture scanAsync(String table, String startkey, int recordcount, Set<String> fields, Vector<HashMap<String, ByteIterator>> result) {
+      return hold();
+    }
+
+    public DBFuture updateAsync(String table, String key, HashMap<String, ByteIterator> values) {
+      return hold();
+    }
+
+    public DBFuture insertAsync(String table, String key, HashMap<String, ByteIterator> values) {
+      if (key.equals("bad")) {
+        throw new IllegalStateException("not connected");
+      }
+      return hold();
+    }
+
+    public DBFuture deleteAsync(String table, String key) {
+      return hold();
+    }
+  }
+
+  @Test
+  public void testOutOfOrderCompletion() {
+    HeldDB held = new HeldDB();
+    PipelinedDB db = new PipelinedDB(held, 3);
+    final int[] results = new int[3];
+    for (int i = 0; i < 3; i++) {
+      final int op = i;
+      db.readAsync("t", "k" + i, null, null).addListener(new DBFuture.Listener() {
+        public void completed(int result) {
+          results[op] = result;
+        }
+      });
+    }
+    assertEquals(0, db._inflight.availablePermits());
+
+    held.pending.get(2).complete(7);
+    assertEquals(7, results[2]);
+    assertEquals(0, results[0]);
+    assertEquals(1, db._inflight.availablePermits());
+    // the slot the last operation freed takes the next one
+    assertEquals(0, db.update("t", "k", null));
+    assertEquals(0, db._inflight.availablePermits());
+
+    held.pending.get(0).complete(5);
+    held.pending.get(3).complete(0);
+    held.pending.get(1).complete(6);
+    assertEquals(5, results[0]);
+    assertEquals(6, results[1]);
+    assertEquals(6, held.pending.get(1).waitForResult());
+    assertEquals(3, db._inflight.availablePermits());
+  }
+
+  @Test
+  public void testFailedIssueReleasesSlot() throws DBException {
+    HeldDB held = new HeldDB();
+    PipelinedDB db = new PipelinedDB(held, 2);
+    try {
+      db.insert("t", "bad", null);
+      fail();
+    } catch (IllegalStateException e) {
+      // passed through to the caller
+    }
+    assertEquals(2, db._inflight.availablePermits());
+    db.insert("t", "good", null);
+    held.pending.get(0).complete(0);
+    // returns, rather than waiting for a slot that is never released
+    db.flush();
+  }
+}
@@ -0,0 +1,79 @@
+package com.yahoo.ycsb;
+
+import java.util.Properties;
+
+import com.yahoo.ycsb.measurements.Measurements;
+import org.testng.annotations.Test;
+import static org.testng.AssertJUnit.*;
+
+public class TestThroughputSchedule {
+  static final long SEC = 1000000000L;
+
+  void assertSkipsTo(ThroughputSchedule schedule, long from, long expected) {
+    long next = schedule.getNextPositiveTime(from);
+    assertTrue("no later than the end of the stretch", next <= expected + 1);
+    assertTrue("well past the start of the stretch", next >= expected - 1000);
+    assertTrue(schedule.getTarget(next + 1000) > 0);
+  }
+
+  @Test
+  public void testPositiveTargetNotSkipped() {
+    ThroughputSchedule schedule = new ThroughputSchedule.Ramp(10, 100, 10 * SEC);
+    assertEquals(5 * SEC, schedule.getNextPositiveTime(5 * SEC));
+  }
+
+  @Test
+  public void testStepFromZero() throws WorkloadException {
+    ThroughputSchedule schedule = new ThroughputSchedule.Step(0, 100, 10, 3600 * SEC);
+    assertSkipsTo(schedule, 10 * SEC, 3600 * SEC);
+  }
+
+  @Test
+  public void testRampFromBelowZero() {
+    ThroughputSchedule schedule = new ThroughputSchedule.Ramp(-100, 100, 3600 * SEC);
+    assertSkipsTo(schedule, 0, 1800 * SEC);
+  }
+
+  @Test
+  public void testSineTrough() {
+    // zero from 3/4 of the period, at the bottom of the wave, until it comes back up to 1/2 of the amplitude
+    ThroughputSchedule schedule = new ThroughputSchedule.Sine(50, 100, 1200 * SEC);
+    assertSkipsTo(schedule, 900 * SEC, 1100 * SEC);
+    assertSkipsTo(new ThroughputSchedule.Sine(50, -100, 1200 * SEC), 1500 * SEC, 1700 * SEC);
+  }
+
+  @Test
+  public void testPiecewiseGap() {
+    ThroughputSchedule schedule = new ThroughputSchedule.Piecewise(
+        new long[] {0, 10 * SEC, 3600 * SEC, 3610 * SEC},
+        new double[] {100, 0, 0, 100});
+    assertSkipsTo(schedule, 100 * SEC, 3600 * SEC);
+  }
+
+  @Test
+  public void testScheduledGapCostDoesNotGrowWithGap() {
+    final int[] evaluations = new int[1];
+    ThroughputSchedule schedule = new ThroughputSchedule.Sine(20000, 10000, 60 * SEC) {
+      double getTargetAfter(long elapsedns) {
+        evaluations[0]++;
+        return super.getTargetAfter(elapsedns);
+      }
+    };
+    schedule.start();
+    Properties props = new Properties();
+    Measurements.setProperties(props);
+    // 20000 clients sharing 20000 ops/sec: each is due about once a second
+    ClientTask client = new ClientTask(new BasicDB(), true, null, 0, 20000, props, 0, 0, schedule);
+    client._nextintendedns = System.nanoTime();
+    long total = 0;
+    for (int i = 0; i < 100; i++) {
+      long gap = client.nextInterArrivalNanos();
+      total += gap;
+      client._nextintendedns += gap;
+    }
+    assertTrue(total / 100 > SEC / 2);
+    assertTrue(total / 100 < 2 * SEC);
+    // a few steps per operation, not one per millisecond of the gap
+    assertTrue(evaluations[0] < 100 * 50);
+  }
+}
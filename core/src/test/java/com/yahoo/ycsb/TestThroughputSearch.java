@@ -0,0 +1,84 @@
+package com.yahoo.ycsb;
+
+import java.util.HashMap;
+import java.util.Properties;
+import java.util.Set;
+import java.util.Vector;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.Test;
+import static org.testng.AssertJUnit.*;
+
+public class TestThroughputSearch {
+  /**
+   * Counts the calls to init() and cleanup(), and the operations done on a DB after its cleanup().
+   */
+  public static class CountingDB extends DB {
+    static final AtomicInteger inits = new AtomicInteger();
+    static final AtomicInteger cleanups = new AtomicInteger();
+    static final AtomicInteger closedops = new AtomicInteger();
+
+    volatile boolean closed = false;
+
+    public void init() {
+      inits.incrementAndGet();
+    }
+
+    public void cleanup() {
+      cleanups.incrementAndGet();
+      closed = true;
+    }
+
+    int op() {
+      if (closed) {
+        closedops.incrementAndGet();
+      }
+      return 0;
+    }
+
+    public int read(String table, String key, Set<String> fields, HashMap<String, ByteIterator> result) {
+      return op();
+    }
+
+    public int scan(String table, String startkey, int recordcount, Set<String> fields, Vector<HashMap<String, ByteIterator>> result) {
+      return op();
+    }
+
+    public int update(String table, String key, HashMap<String, ByteIterator> values) {
+      return op();
+    }
+
+    public int insert(String table, String key, HashMap<String, ByteIterator> values) {
+      return op();
+    }
+
+    public int delete(String table, String key) {
+      return op();
+    }
+  }
+
+  @Test
+  public void testWindowsShareOpenDBs() {
+    Properties props = new Properties();
+    props.setProperty("db", CountingDB.class.getName());
+    props.setProperty(Client.WORKLOAD_PROPERTY, "com.yahoo.ycsb.workloads.CoreWorkload");
+    props.setProperty(Client.RECORD_COUNT_PROPERTY, "10");
+    props.setProperty(ThroughputSearch.SEARCH_PROPERTY, "true");
+    props.setProperty(ThroughputSearch.LATENCY_PROPERTY, "1000");
+    props.setProperty(ThroughputSearch.MIN_TARGET_PROPERTY, "100");
+    props.setProperty(ThroughputSearch.MAX_TARGET_PROPERTY, "100");
+    props.setProperty(ThroughputSearch.WINDOW_PROPERTY, "1");
+    props.setProperty(ThroughputSearch.CONFIRM_WINDOW_PROPERTY, "1");
+    props.setProperty(ThroughputSearch.THROUGHPUT_TOLERANCE_PROPERTY, "0");
+
+    // a search window and a confirmation window, as the last phase of the run
+    DBPool dbpool = new DBPool();
+    Client.runPhase(props, true, false, "", dbpool, null, true);
+    assertEquals(1, CountingDB.inits.get());
+    assertEquals(0, CountingDB.cleanups.get());
+    assertEquals(0, CountingDB.closedops.get());
+
+    dbpool.close();
+    assertEquals(1, CountingDB.cleanups.get());
+  }
+}
@@ -0,0 +1,70 @@
+package com.yahoo.ycsb.generator;
+
+import org.testng.annotations.Test;
+import static org.testng.AssertJUnit.*;
+
+public class TestAcknowledgedCounterGenerator {
+  @Test
+  public void testOutOfOrderAcknowledgements() {
+    AcknowledgedCounterGenerator gen = new AcknowledgedCounterGenerator(10);
+    assertEquals(9, gen.lastLong());
+    long a = gen.nextLong();
+    long b = gen.nextLong();
+    long c = gen.nextLong();
+    gen.acknowledge(c);
+    gen.acknowledge(b);
+    // 10 is still in progress, so neither 11 nor 12 can be chosen yet
+    assertEquals(9, gen.lastLong());
+    gen.acknowledge(a);
+    assertEquals(12, gen.lastLong());
+  }
+
+  @Test
+  public void testAroundTheWindow() {
+    AcknowledgedCounterGenerator gen = new AcknowledgedCounterGenerator(0);
+    for (int i = 0; i < 3 * AcknowledgedCounterGenerator.WINDOW_SIZE; i++) {
+      gen.acknowledge(gen.nextLong());
+    }
+    assertEquals(3 * AcknowledgedCounterGenerator.WINDOW_SIZE - 1, gen.lastLong());
+  }
+
+  @Test
+  public void testWindowFull() {
+    AcknowledgedCounterGenerator gen = new AcknowledgedCounterGenerator(0);
+    long stuck = gen.nextLong();
+    for (int i = 1; i < AcknowledgedCounterGenerator.WINDOW_SIZE; i++) {
+      assertTrue(gen.acknowledge(gen.nextLong()));
+    }
+    // a window ahead of the stuck value: refused rather than waited for
+    long ahead = gen.nextLong();
+    assertFalse(gen.acknowledge(ahead));
+    assertTrue(gen.acknowledge(stuck));
+    assertTrue(gen.acknowledge(ahead));
+    assertEquals(ahead, gen.lastLong());
+  }
+
+  @Test
+  public void testConcurrentAcknowledgements() throws InterruptedException {
+    final AcknowledgedCounterGenerator gen = new AcknowledgedCounterGenerator(0);
+    final int perthread = 100000;
+    Thread[] threads = new Thread[4];
+    for (int t = 0; t < threads.length; t++) {
+      threads[t] = new Thread() {
+        public void run() {
+          for (int i = 0; i < perthread; i++) {
+            long value = gen.nextLong();
+            // another thread may hold the window back for a moment
+            while (!gen.acknowledge(value)) {
+              Thread.yield();
+            }
+          }
+        }
+      };
+      threads[t].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals(threads.length * perthread - 1, gen.lastLong());
+  }
+}
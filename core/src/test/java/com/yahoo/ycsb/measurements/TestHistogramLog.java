@@ -0,0 +1,74 @@
+package com.yahoo.ycsb.measurements;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.testng.annotations.Test;
+import static org.testng.AssertJUnit.*;
+
+public class TestHistogramLog {
+  @Test
+  public void testRoundTrip() throws IOException {
+    LogHistogram h = new LogHistogram();
+    for (long i = 0; i < 100000; i += 7) {
+      h.record(i);
+    }
+    h.record(Long.MAX_VALUE / 2);
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    HistogramLogWriter writer = new HistogramLogWriter(bytes, 1000);
+    writer.write(1000, 1500, "READ", h);
+    writer.write(1500, 2000, "UPDATE", new LogHistogram());
+    writer.close();
+
+    HistogramLogReader reader = new HistogramLogReader(new ByteArrayInputStream(bytes.toByteArray()));
+    assertEquals(1000, reader.getStartTimeMs());
+    HistogramLogReader.Interval interval = reader.next();
+    assertEquals(1000, interval._startms);
+    assertEquals(1500, interval._endms);
+    assertEquals("READ", interval._operation);
+    assertEquals(h.getCount(), interval._histogram.getCount());
+    assertEquals(h.getTotal(), interval._histogram.getTotal());
+    assertEquals(h.getMin(), interval._histogram.getMin());
+    assertEquals(h.getMax(), interval._histogram.getMax());
+    assertEquals(h.getValueAtPercentile(99.9), interval._histogram.getValueAtPercentile(99.9));
+
+    interval = reader.next();
+    assertEquals("UPDATE", interval._operation);
+    assertEquals(0, interval._histogram.getCount());
+    assertNull(reader.next());
+  }
+
+  @Test
+  public void testFlushedIntervalsReadableBeforeClose() throws IOException {
+    LogHistogram h = new LogHistogram();
+    h.record(42);
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    HistogramLogWriter writer = new HistogramLogWriter(bytes, 1000);
+    writer.write(1000, 1500, "READ", h);
+    writer.flush();
+    int flushed = bytes.size();
+    writer.write(1500, 2000, "UPDATE", h);
+    writer.flush();
+    writer.write(2000, 2500, "INSERT", h);
+
+    // the last interval was never flushed, and the second is cut short as a killed client would leave it
+    byte[] log = bytes.toByteArray();
+    byte[] cut = new byte[flushed + (bytes.size() - flushed) / 2];
+    System.arraycopy(log, 0, cut, 0, cut.length);
+
+    HistogramLogReader reader = new HistogramLogReader(new ByteArrayInputStream(cut));
+    assertEquals(1000, reader.getStartTimeMs());
+    HistogramLogReader.Interval interval = reader.next();
+    assertEquals("READ", interval._operation);
+    assertEquals(1, interval._histogram.getCount());
+    assertNull(reader.next());
+
+    reader = new HistogramLogReader(new ByteArrayInputStream(log));
+    assertEquals("READ", reader.next()._operation);
+    assertEquals("UPDATE", reader.next()._operation);
+    assertNull(reader.next());
+  }
+}
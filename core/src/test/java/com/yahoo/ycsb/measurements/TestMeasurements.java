@@ -0,0 +1,61 @@
+package com.yahoo.ycsb.measurements;
+
+import java.io.IOException;
+import java.util.Properties;
+
+import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
+import org.testng.annotations.Test;
+import static org.testng.AssertJUnit.*;
+
+public class TestMeasurements {
+  @Test
+  public void testFailedLatenciesKeptApart() {
+    Properties props = new Properties();
+    props.setProperty("measurementtype", "hdrhistogram");
+    Measurements m = new Measurements(props);
+    for (int i = 0; i < 10; i++) {
+      m.measure("READ", 10000000L, 0);
+      m.reportReturnCode("READ", 0);
+      m.measure("READ", 1000000L, -1);
+      m.reportReturnCode("READ", -1);
+    }
+    // the fast failures do not pull down the latency of the reads that succeeded
+    assertEquals(10.0, m.getPercentileLatencyMs("READ", 1), 0.01);
+    assertEquals(1.0, m.getPercentileLatencyMs("READ-FAILED(-1)", 100), 0.01);
+
+    // but they count towards the throughput and errors of READ
+    Measurements.OperationTotals totals = m.getTotals().get("READ");
+    assertEquals(20, totals._operations);
+    assertEquals(10, totals._errors.count() - totals._errors._ok);
+    assertNull(m.getTotals().get("READ-FAILED(-1)"));
+  }
+
+  @Test
+  public void testTimeSeriesThroughputCountsFailures() throws IOException {
+    Properties props = new Properties();
+    props.setProperty("measurementtype", "timeseries");
+    Measurements m = new Measurements(props);
+    for (int i = 0; i < 10; i++) {
+      m.measure("READ", 1000000L, 0);
+      m.reportReturnCode("READ", 0);
+      m.measure("READ", 1000000L, -1);
+      m.reportReturnCode("READ", -1);
+    }
+    final double[] ops = new double[1];
+    m.exportMeasurements(new MeasurementsExporter() {
+      public void write(String metric, String measurement, int i) {
+      }
+      public void write(String metric, String measurement, double d) {
+        if (metric.equals("READ Throughput(ops/sec)")) {
+          // one-second units
+          ops[0] += d;
+        }
+      }
+      public void write(String metric, String measurement, long l) {
+      }
+      public void close() {
+      }
+    });
+    assertEquals(20.0, ops[0], 0.0);
+  }
+}
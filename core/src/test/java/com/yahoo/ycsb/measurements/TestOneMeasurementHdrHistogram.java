@@ -0,0 +1,83 @@
+package com.yahoo.ycsb.measurements;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
+
+import org.testng.annotations.Test;
+import static org.testng.AssertJUnit.*;
+
+public class TestOneMeasurementHdrHistogram {
+  @Test
+  public void testPercentiles() {
+    OneMeasurementHdrHistogram m = new OneMeasurementHdrHistogram("READ", new Properties());
+    for (int i = 1; i <= 100000; i++) {
+      m.measure(i * 1000L);
+    }
+    // three significant digits: within 0.1% of the exact percentile
+    assertEquals(50.0, m.getPercentileLatencyMs(50), 0.05);
+    assertEquals(99.9, m.getPercentileLatencyMs(99.9), 0.1);
+    assertEquals(100.0, m.getPercentileLatencyMs(100), 0.0);
+  }
+
+  @Test
+  public void testMerge() {
+    Properties props = new Properties();
+    OneMeasurementHdrHistogram a = new OneMeasurementHdrHistogram("READ", props);
+    OneMeasurementHdrHistogram b = new OneMeasurementHdrHistogram("READ", props);
+    for (int i = 0; i < 1000; i++) {
+      a.measure(100000L);
+      b.measure(100000000L);
+    }
+    a.reportReturnCode(0);
+    b.reportReturnCode(0);
+    a.add(b);
+    assertEquals(2000, a.histogram.getCount());
+    assertEquals(2L, a.returncodes._ok);
+    assertEquals(0.1, a.getPercentileLatencyMs(50), 0.0001);
+    assertEquals(100.0, a.getPercentileLatencyMs(50.1), 0.1);
+  }
+
+  @Test
+  public void testExpectedInterval() {
+    OneMeasurementHdrHistogram m = new OneMeasurementHdrHistogram("READ", new Properties());
+    m.measure(500000L, 1000000L);
+    // a 10 ms operation due every ms held up the nine that should have followed it
+    m.measure(10000000L, 1000000L);
+    assertEquals(11, m.histogram.getCount());
+    assertEquals(1.0, m.getPercentileLatencyMs(10), 0.001);
+    assertEquals(10.0, m.getPercentileLatencyMs(100), 0.01);
+  }
+
+  @Test
+  public void testExportWithoutSamples() throws IOException {
+    final Map<String, Number> written = new HashMap<String, Number>();
+    MeasurementsExporter exporter = new MeasurementsExporter() {
+      public void write(String metric, String measurement, int i) {
+        written.put(measurement, i);
+      }
+      public void write(String metric, String measurement, double d) {
+        written.put(measurement, d);
+      }
+      public void write(String metric, String measurement, long l) {
+        written.put(measurement, l);
+      }
+      public void close() {
+      }
+    };
+    new OneMeasurementHdrHistogram("READ", new Properties()).exportMeasurements(exporter);
+    // "no samples", not -0.001 us
+    assertEquals(-1L, written.get("MinLatency(us)"));
+    assertEquals(-1L, written.get("MaxLatency(us)"));
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testBadPercentile() {
+    Properties props = new Properties();
+    props.setProperty(OneMeasurementHdrHistogram.PERCENTILES, "50,101");
+    new OneMeasurementHdrHistogram("READ", props);
+  }
+}
@@ -0,0 +1,64 @@
+package com.yahoo.ycsb.workloads;
+
+import java.util.Properties;
+
+import com.yahoo.ycsb.PipelinedDB;
+import com.yahoo.ycsb.TestPipelinedDB;
+import com.yahoo.ycsb.measurements.Measurements;
+import org.testng.annotations.Test;
+import static org.testng.AssertJUnit.*;
+
+public class TestCoreWorkload {
+  CoreWorkload workload(Properties props) throws Exception {
+    props.setProperty("recordcount", "10");
+    Measurements.setProperties(props);
+    CoreWorkload workload = new CoreWorkload();
+    workload.init(props);
+    return workload;
+  }
+
+  @Test
+  public void testInsertAcknowledgedWhenItCompletes() throws Exception {
+    Properties props = new Properties();
+    CoreWorkload workload = workload(props);
+    CoreWorkload.ThreadState state = (CoreWorkload.ThreadState) workload.initThread(props, 0, 1);
+    TestPipelinedDB.HeldDB held = new TestPipelinedDB.HeldDB();
+    PipelinedDB db = new PipelinedDB(held, 4);
+
+    workload.doTransactionInsert(db, state);
+    workload.doTransactionInsert(db, state);
+    // both inserts are still in flight, so neither key can be chosen
+    assertEquals(9, workload.transactioninsertkeysequence.lastLong());
+
+    held.pending.get(1).complete(0);
+    assertEquals(9, workload.transactioninsertkeysequence.lastLong());
+    held.pending.get(0).complete(0);
+    assertEquals(11, workload.transactioninsertkeysequence.lastLong());
+  }
+
+  @Test
+  public void testFailedDeleteUndeletedWhenItCompletes() throws Exception {
+    Properties props = new Properties();
+    props.setProperty("requestdistribution", "uniform");
+    CoreWorkload workload = workload(props);
+    CoreWorkload.ThreadState state = (CoreWorkload.ThreadState) workload.initThread(props, 0, 1);
+    TestPipelinedDB.HeldDB held = new TestPipelinedDB.HeldDB();
+    PipelinedDB db = new PipelinedDB(held, 4);
+
+    workload.doTransactionDelete(db, state);
+    workload.doTransactionDelete(db, state);
+    int deleted = 0;
+    for (long k = 0; k < 10; k++) {
+      deleted += workload.deletedkeys.isDeleted(k) ? 1 : 0;
+    }
+    assertEquals(2, deleted);
+
+    held.pending.get(0).complete(0);
+    held.pending.get(1).complete(-1);
+    deleted = 0;
+    for (long k = 0; k < 10; k++) {
+      deleted += workload.deletedkeys.isDeleted(k) ? 1 : 0;
+    }
+    assertEquals(1, deleted);
+  }
+}
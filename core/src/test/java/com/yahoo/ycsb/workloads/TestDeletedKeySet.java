@@ -0,0 +1,62 @@
+package com.yahoo.ycsb.workloads;
+
+import org.testng.annotations.Test;
+import static org.testng.AssertJUnit.*;
+
+public class TestDeletedKeySet {
+  @Test
+  public void testDeleteAndUndelete() {
+    DeletedKeySet deleted = new DeletedKeySet();
+    assertFalse(deleted.isDeleted(5));
+    assertTrue(deleted.delete(5));
+    assertFalse(deleted.delete(5));
+    assertTrue(deleted.isDeleted(5));
+    assertFalse(deleted.isDeleted(4));
+    assertFalse(deleted.isDeleted(6));
+    deleted.undelete(5);
+    assertFalse(deleted.isDeleted(5));
+    assertTrue(deleted.delete(5));
+  }
+
+  @Test
+  public void testChunksAllocatedOnDelete() {
+    DeletedKeySet deleted = new DeletedKeySet();
+    long far = 1000000000L;
+    deleted.undelete(far);
+    assertEquals(0, deleted._chunks.get().length);
+    assertTrue(deleted.delete(far));
+    assertTrue(deleted.delete(3));
+    assertTrue(deleted.isDeleted(far));
+    assertTrue(deleted.isDeleted(3));
+    assertFalse(deleted.isDeleted(far + 1));
+    assertFalse(deleted.isDeleted(far + (1 << DeletedKeySet.CHUNK_BITS)));
+  }
+
+  @Test
+  public void testConcurrentDeletes() throws InterruptedException {
+    final DeletedKeySet deleted = new DeletedKeySet();
+    final int keys = 1 << 18;
+    final int[] won = new int[4];
+    Thread[] threads = new Thread[won.length];
+    for (int t = 0; t < threads.length; t++) {
+      final int id = t;
+      threads[t] = new Thread() {
+        public void run() {
+          for (int k = 0; k < keys; k++) {
+            if (deleted.delete(k)) {
+              won[id]++;
+            }
+          }
+        }
+      };
+      threads[t].start();
+    }
+    int total = 0;
+    for (int t = 0; t < threads.length; t++) {
+      threads[t].join();
+      total += won[t];
+    }
+    // every key is deleted by exactly one thread
+    assertEquals(keys, total);
+  }
+}
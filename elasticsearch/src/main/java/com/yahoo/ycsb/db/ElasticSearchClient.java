@@ -5,10 +5,13 @@ import com.yahoo.ycsb.DB;
 import com.yahoo.ycsb.DBException;
 import com.yahoo.ycsb.StringByteIterator;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map.Entry;
 import java.util.Properties;
 import java.util.Set;
 import java.util.Vector;
+import org.elasticsearch.action.bulk.BulkRequestBuilder;
+import org.elasticsearch.action.bulk.BulkResponse;
 import org.elasticsearch.action.get.GetResponse;
 import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.client.Client;
@@ -127,6 +130,44 @@ public class ElasticSearchClient extends DB {
         return 1;
     }
 
+    /**
+     * Insert several records in the database with one bulk request.
+     *
+     * @param table The name of the table
+     * @param keys The record keys of the records to insert.
+     * @param values For each key, a HashMap of field/value pairs to insert in
+     * its record
+     * @return Zero on success, a non-zero error code on error or if any record
+     * failed.
+     */
+    @Override
+    public int batchInsert(String table, List<String> keys, List<HashMap<String, ByteIterator>> values) {
+        try {
+            BulkRequestBuilder bulk = client.prepareBulk();
+            for (int i = 0; i < keys.size(); i++) {
+                final XContentBuilder doc = jsonBuilder().startObject();
+
+                for (Entry<String, String> entry : StringByteIterator.getStringMap(values.get(i)).entrySet()) {
+                    doc.field(entry.getKey(), entry.getValue());
+                }
+
+                doc.endObject();
+
+                bulk.add(client.prepareIndex(indexKey, table, keys.get(i)).setSource(doc));
+            }
+
+            BulkResponse response = bulk.execute().actionGet();
+            if (response.hasFailures()) {
+                System.err.println(response.buildFailureMessage());
+                return 1;
+            }
+            return 0;
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return 1;
+    }
+
     /**
      * Delete a record from the database.
      *
@@ -96,6 +96,14 @@ public class HBaseClient extends com.yahoo.ycsb.DB
      * Called once per DB instance; there is one DB instance per client thread.
      */
     public void cleanup() throws DBException
+    {
+        flush();
+    }
+
+    /**
+     * Write out the buffered puts, at cleanup or at the end of a phase that is not the last.
+     */
+    public void flush() throws DBException
     {
         // Get the measurements instance as this is the only client that should
         // count clean up time like an update since autoflush is off.
@@ -106,7 +114,7 @@ public class HBaseClient extends com.yahoo.ycsb.DB
                 _hTable.flushCommits();
             }
             long en=System.nanoTime();
-            _measurements.measure("UPDATE", (int)((en-st)/1000));
+            _measurements.measure("UPDATE", en-st);
         } catch (IOException e) {
             throw new DBException(e);
         }
@@ -401,6 +409,177 @@ public class HBaseClient extends com.yahoo.ycsb.DB
         return Ok;
     }
 
+    /**
+     * Make the given table the current one, if it is not already.
+     *
+     * @return false if the table could not be opened
+     */
+    private boolean useTable(String table)
+    {
+        if (!_table.equals(table)) {
+            _hTable = null;
+            try
+            {
+                getHTable(table);
+                _table = table;
+            }
+            catch (IOException e)
+            {
+                System.err.println("Error accessing HBase table: "+e);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Read several records from the database in one multi-get.
+     *
+     * @param table The name of the table
+     * @param keys The record keys of the records to read.
+     * @param fields The list of fields to read, or null for all of them
+     * @param result A Vector of HashMaps, where each HashMap is a set field/value pairs for one record
+     * @return Zero on success, a non-zero error code on error
+     */
+    public int batchRead(String table, List<String> keys, Set<String> fields, Vector<HashMap<String,ByteIterator>> result)
+    {
+        if (!useTable(table)) {
+            return ServerError;
+        }
+
+        List<Get> gets = new ArrayList<Get>(keys.size());
+        for (String key : keys)
+        {
+            Get g = new Get(Bytes.toBytes(key));
+            if (fields == null) {
+                g.addFamily(_columnFamilyBytes);
+            } else {
+                for (String field : fields) {
+                    g.addColumn(_columnFamilyBytes, Bytes.toBytes(field));
+                }
+            }
+            gets.add(g);
+        }
+
+        Result[] rs = null;
+        try
+        {
+            rs = _hTable.get(gets);
+        }
+        catch (IOException e)
+        {
+            System.err.println("Error doing multi-get: "+e);
+            return ServerError;
+        }
+        catch (ConcurrentModificationException e)
+        {
+            return ServerError;
+        }
+
+        for (Result r : rs)
+        {
+            HashMap<String,ByteIterator> rowResult = new HashMap<String, ByteIterator>();
+            for (KeyValue kv : r.raw()) {
+                rowResult.put(
+                    Bytes.toString(kv.getQualifier()),
+                    new ByteArrayByteIterator(kv.getValue()));
+            }
+            result.add(rowResult);
+        }
+        return Ok;
+    }
+
+    /**
+     * Update several records in the database with one list of puts.
+     *
+     * @param table The name of the table
+     * @param keys The record keys of the records to write
+     * @param values For each key, a HashMap of field/value pairs to update in its record
+     * @return Zero on success, a non-zero error code on error
+     */
+    public int batchUpdate(String table, List<String> keys, List<HashMap<String,ByteIterator>> values)
+    {
+        if (!useTable(table)) {
+            return ServerError;
+        }
+
+        List<Put> puts = new ArrayList<Put>(keys.size());
+        for (int i = 0; i < keys.size(); i++)
+        {
+            Put p = new Put(Bytes.toBytes(keys.get(i)));
+            for (Map.Entry<String, ByteIterator> entry : values.get(i).entrySet())
+            {
+                p.add(_columnFamilyBytes,Bytes.toBytes(entry.getKey()),entry.getValue().toArray());
+            }
+            puts.add(p);
+        }
+
+        try
+        {
+            _hTable.put(puts);
+        }
+        catch (IOException e)
+        {
+            if (_debug) {
+                System.err.println("Error doing batch put: "+e);
+            }
+            return ServerError;
+        }
+        catch (ConcurrentModificationException e)
+        {
+            return ServerError;
+        }
+
+        return Ok;
+    }
+
+    /**
+     * Insert several records in the database with one list of puts.
+     *
+     * @param table The name of the table
+     * @param keys The record keys of the records to insert.
+     * @param values For each key, a HashMap of field/value pairs to insert in its record
+     * @return Zero on success, a non-zero error code on error
+     */
+    public int batchInsert(String table, List<String> keys, List<HashMap<String,ByteIterator>> values)
+    {
+        return batchUpdate(table,keys,values);
+    }
+
+    /**
+     * Delete several records from the database with one list of deletes.
+     *
+     * @param table The name of the table
+     * @param keys The record keys of the records to delete.
+     * @return Zero on success, a non-zero error code on error
+     */
+    public int batchDelete(String table, List<String> keys)
+    {
+        if (!useTable(table)) {
+            return ServerError;
+        }
+
+        List<Delete> deletes = new ArrayList<Delete>(keys.size());
+        for (String key : keys)
+        {
+            deletes.add(new Delete(Bytes.toBytes(key)));
+        }
+
+        try
+        {
+            _hTable.delete(deletes);
+        }
+        catch (IOException e)
+        {
+            if (_debug) {
+                System.err.println("Error doing batch delete: "+e);
+            }
+            return ServerError;
+        }
+
+        return Ok;
+    }
+
     public static void main(String[] args)
     {
         if (args.length!=3)
@@ -21,6 +21,7 @@ import com.yahoo.ycsb.DB;
 import com.yahoo.ycsb.DBException;
 import com.yahoo.ycsb.ByteIterator;
 import com.yahoo.ycsb.StringByteIterator;
+import com.yahoo.ycsb.measurements.Measurements;
 
 import java.sql.*;
 import java.util.*;
@@ -58,6 +59,8 @@ public class JdbcDBClient extends DB implements JdbcDBClientConstants {
   private Integer jdbcFetchSize;
   private static final String DEFAULT_PROP = "";
   private ConcurrentMap<StatementType, PreparedStatement> cachedStatements;
+  /** Times the spans of each operation spent binding parameters and reading results. */
+  private Measurements measurements;
   
   /**
    * The statement type for the prepared statements.
@@ -172,6 +175,7 @@ public class JdbcDBClient extends DB implements JdbcDBClientConstants {
 		  return;
 		}
 		props = getProperties();
+		measurements = Measurements.getMeasurements();
 		String urls = props.getProperty(CONNECTION_URL, DEFAULT_PROP);
 		String user = props.getProperty(CONNECTION_USER, DEFAULT_PROP);
 		String passwd = props.getProperty(CONNECTION_PASSWD, DEFAULT_PROP);
@@ -328,20 +332,27 @@ public class JdbcDBClient extends DB implements JdbcDBClientConstants {
       if (readStatement == null) {
         readStatement = createAndCacheReadStatement(type, key);
       }
+      long span = measurements.startSpan();
       readStatement.setString(1, key);
+      measurements.endSpan(Measurements.SPAN_SERIALIZE, span);
       ResultSet resultSet = readStatement.executeQuery();
-      if (!resultSet.next()) {
-        resultSet.close();
-        return 1;
-      }
-      if (result != null && fields != null) {
-        for (String field : fields) {
-          String value = resultSet.getString(field);
-          result.put(field, new StringByteIterator(value));
+      span = measurements.startSpan();
+      try {
+        if (!resultSet.next()) {
+          resultSet.close();
+          return 1;
+        }
+        if (result != null && fields != null) {
+          for (String field : fields) {
+            String value = resultSet.getString(field);
+            result.put(field, new StringByteIterator(value));
+          }
         }
+        resultSet.close();
+        return SUCCESS;
+      } finally {
+        measurements.endSpan(Measurements.SPAN_DECODE, span);
       }
-      resultSet.close();
-      return SUCCESS;
     } catch (SQLException e) {
         System.err.println("Error in processing read of table " + tableName + ": "+e);
       return -2;
@@ -363,20 +374,27 @@ public class JdbcDBClient extends DB implements JdbcDBClientConstants {
       if (scanStatement == null) {
         scanStatement = createAndCacheScanStatement(type, startKey);
       }
+      long span = measurements.startSpan();
       scanStatement.setString(1, startKey);
+      measurements.endSpan(Measurements.SPAN_SERIALIZE, span);
       ResultSet resultSet = scanStatement.executeQuery();
-      for (int i = 0; i < recordcount && resultSet.next(); i++) {
-        if (result != null && fields != null) {
-          HashMap<String, ByteIterator> values = new HashMap<String, ByteIterator>();
-          for (String field : fields) {
-            String value = resultSet.getString(field);
-            values.put(field, new StringByteIterator(value));
+      span = measurements.startSpan();
+      try {
+        for (int i = 0; i < recordcount && resultSet.next(); i++) {
+          if (result != null && fields != null) {
+            HashMap<String, ByteIterator> values = new HashMap<String, ByteIterator>();
+            for (String field : fields) {
+              String value = resultSet.getString(field);
+              values.put(field, new StringByteIterator(value));
+            }
+            result.add(values);
           }
-          result.add(values);
         }
+        resultSet.close();
+        return SUCCESS;
+      } finally {
+        measurements.endSpan(Measurements.SPAN_DECODE, span);
       }
-      resultSet.close();
-      return SUCCESS;
     } catch (SQLException e) {
       System.err.println("Error in processing scan of table: " + tableName + e);
       return -2;
@@ -398,11 +416,13 @@ public class JdbcDBClient extends DB implements JdbcDBClientConstants {
       if (updateStatement == null) {
         updateStatement = createAndCacheUpdateStatement(type, key);
       }
+      long span = measurements.startSpan();
       int index = 1;
       for (Map.Entry<String, ByteIterator> entry : values.entrySet()) {
         updateStatement.setString(index++, entry.getValue().toString());
       }
       updateStatement.setString(index, key);
+      measurements.endSpan(Measurements.SPAN_SERIALIZE, span);
       int result = updateStatement.executeUpdate();
       if (result == 1) return SUCCESS;
       else return 1;
@@ -427,12 +447,14 @@ public class JdbcDBClient extends DB implements JdbcDBClientConstants {
 	    if (insertStatement == null) {
 	      insertStatement = createAndCacheInsertStatement(type, key);
 	    }
+      long span = measurements.startSpan();
       insertStatement.setString(1, key);
       int index = 2;
       for (Map.Entry<String, ByteIterator> entry : values.entrySet()) {
         String field = entry.getValue().toString();
         insertStatement.setString(index++, field);
       }
+      measurements.endSpan(Measurements.SPAN_SERIALIZE, span);
       int result = insertStatement.executeUpdate();
       if (result == 1) return SUCCESS;
       else return 1;
@@ -465,4 +487,121 @@ public class JdbcDBClient extends DB implements JdbcDBClientConstants {
       return -1;
     }
 	}
+
+  /**
+   * Run the batches added to each statement, and check that every row was written.
+   */
+  private int executeBatches(Set<PreparedStatement> statements) throws SQLException {
+    int ret = SUCCESS;
+    for (PreparedStatement statement : statements) {
+      for (int result : statement.executeBatch()) {
+        if (result != 1 && result != Statement.SUCCESS_NO_INFO) ret = 1;
+      }
+    }
+    return ret;
+  }
+
+  /**
+   * Drop whatever a failed batch left in its statements, so the next batch does not run it.
+   */
+  private void clearBatches(Set<PreparedStatement> statements) {
+    for (PreparedStatement statement : statements) {
+      try {
+        statement.clearBatch();
+      } catch (SQLException e) {
+        System.err.println("Error in clearing batch: " + e);
+      }
+    }
+  }
+
+  @Override
+  public int batchUpdate(String tableName, List<String> keys, List<HashMap<String, ByteIterator>> values) {
+    if (tableName == null) {
+      return -1;
+    }
+    Set<PreparedStatement> statements = new LinkedHashSet<PreparedStatement>();
+    try {
+      long span = measurements.startSpan();
+      for (int i = 0; i < keys.size(); i++) {
+        String key = keys.get(i);
+        HashMap<String, ByteIterator> record = values.get(i);
+        StatementType type = new StatementType(StatementType.Type.UPDATE, tableName, record.size(), getShardIndexByKey(key));
+        PreparedStatement updateStatement = cachedStatements.get(type);
+        if (updateStatement == null) {
+          updateStatement = createAndCacheUpdateStatement(type, key);
+        }
+        int index = 1;
+        for (Map.Entry<String, ByteIterator> entry : record.entrySet()) {
+          updateStatement.setString(index++, entry.getValue().toString());
+        }
+        updateStatement.setString(index, key);
+        updateStatement.addBatch();
+        statements.add(updateStatement);
+      }
+      measurements.endSpan(Measurements.SPAN_SERIALIZE, span);
+      return executeBatches(statements);
+    } catch (SQLException e) {
+      System.err.println("Error in processing batch update to table: " + tableName + e);
+      clearBatches(statements);
+      return -1;
+    }
+  }
+
+  @Override
+  public int batchInsert(String tableName, List<String> keys, List<HashMap<String, ByteIterator>> values) {
+    if (tableName == null) {
+      return -1;
+    }
+    Set<PreparedStatement> statements = new LinkedHashSet<PreparedStatement>();
+    try {
+      long span = measurements.startSpan();
+      for (int i = 0; i < keys.size(); i++) {
+        String key = keys.get(i);
+        HashMap<String, ByteIterator> record = values.get(i);
+        StatementType type = new StatementType(StatementType.Type.INSERT, tableName, record.size(), getShardIndexByKey(key));
+        PreparedStatement insertStatement = cachedStatements.get(type);
+        if (insertStatement == null) {
+          insertStatement = createAndCacheInsertStatement(type, key);
+        }
+        insertStatement.setString(1, key);
+        int index = 2;
+        for (Map.Entry<String, ByteIterator> entry : record.entrySet()) {
+          insertStatement.setString(index++, entry.getValue().toString());
+        }
+        insertStatement.addBatch();
+        statements.add(insertStatement);
+      }
+      measurements.endSpan(Measurements.SPAN_SERIALIZE, span);
+      return executeBatches(statements);
+    } catch (SQLException e) {
+      System.err.println("Error in processing batch insert to table: " + tableName + e);
+      clearBatches(statements);
+      return -1;
+    }
+  }
+
+  @Override
+  public int batchDelete(String tableName, List<String> keys) {
+    if (tableName == null) {
+      return -1;
+    }
+    Set<PreparedStatement> statements = new LinkedHashSet<PreparedStatement>();
+    try {
+      for (String key : keys) {
+        StatementType type = new StatementType(StatementType.Type.DELETE, tableName, 1, getShardIndexByKey(key));
+        PreparedStatement deleteStatement = cachedStatements.get(type);
+        if (deleteStatement == null) {
+          deleteStatement = createAndCacheDeleteStatement(type, key);
+        }
+        deleteStatement.setString(1, key);
+        deleteStatement.addBatch();
+        statements.add(deleteStatement);
+      }
+      return executeBatches(statements);
+    } catch (SQLException e) {
+      System.err.println("Error in processing batch delete to table: " + tableName + e);
+      clearBatches(statements);
+      return -1;
+    }
+  }
 }
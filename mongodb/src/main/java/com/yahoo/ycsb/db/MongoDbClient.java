@@ -9,8 +9,11 @@
 
 package com.yahoo.ycsb.db;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
@@ -358,6 +361,134 @@ public class MongoDbClient extends DB {
 
     }
 
+    /**
+     * Read several records from the database with one query on their ids.
+     *
+     * @param table The name of the table
+     * @param keys The record keys of the records to read.
+     * @param fields The list of fields to read, or null for all of them
+     * @param result A Vector of HashMaps, where each HashMap is a set field/value pairs for one record
+     * @return Zero on success, a non-zero error code on error or if a record was not found.
+     */
+    @Override
+    public int batchRead(String table, List<String> keys, Set<String> fields,
+            Vector<HashMap<String, ByteIterator>> result) {
+        com.mongodb.DB db = null;
+        try {
+            db = mongo.getDB(database);
+            db.requestStart();
+            DBCollection collection = db.getCollection(table);
+            DBObject q = new BasicDBObject().append("_id",
+                    new BasicDBObject().append("$in", keys));
+            DBCursor cursor;
+            if (fields != null) {
+                DBObject fieldsToReturn = new BasicDBObject();
+                for (String field : fields) {
+                    fieldsToReturn.put(field, INCLUDE);
+                }
+                cursor = collection.find(q, fieldsToReturn);
+            }
+            else {
+                cursor = collection.find(q);
+            }
+
+            // the records come back in no particular order
+            HashMap<Object, DBObject> found = new HashMap<Object, DBObject>();
+            while (cursor.hasNext()) {
+                DBObject obj = cursor.next();
+                found.put(obj.get("_id"), obj);
+            }
+            for (String key : keys) {
+                HashMap<String, ByteIterator> resultMap = new HashMap<String, ByteIterator>();
+                DBObject obj = found.get(key);
+                if (obj != null) {
+                    fillMap(resultMap, obj);
+                }
+                result.add(resultMap);
+            }
+            return found.size() == new HashSet<String>(keys).size() ? 0 : 1;
+        }
+        catch (Exception e) {
+            System.err.println(e.toString());
+            return 1;
+        }
+        finally {
+            if (db != null) {
+                db.requestDone();
+            }
+        }
+    }
+
+    /**
+     * Insert several records in the database with one bulk insert.
+     *
+     * @param table The name of the table
+     * @param keys The record keys of the records to insert.
+     * @param values For each key, a HashMap of field/value pairs to insert in its record
+     * @return Zero on success, a non-zero error code on error.
+     */
+    @Override
+    public int batchInsert(String table, List<String> keys,
+            List<HashMap<String, ByteIterator>> values) {
+        com.mongodb.DB db = null;
+        try {
+            db = mongo.getDB(database);
+
+            db.requestStart();
+
+            DBCollection collection = db.getCollection(table);
+            List<DBObject> records = new ArrayList<DBObject>(keys.size());
+            for (int i = 0; i < keys.size(); i++) {
+                DBObject r = new BasicDBObject().append("_id", keys.get(i));
+                for (Map.Entry<String, ByteIterator> entry : values.get(i).entrySet()) {
+                    r.put(entry.getKey(), entry.getValue().toArray());
+                }
+                records.add(r);
+            }
+            WriteResult res = collection.insert(records, writeConcern);
+            return res.getError() == null ? 0 : 1;
+        }
+        catch (Exception e) {
+            e.printStackTrace();
+            return 1;
+        }
+        finally {
+            if (db != null) {
+                db.requestDone();
+            }
+        }
+    }
+
+    /**
+     * Delete several records from the database with one remove on their ids.
+     *
+     * @param table The name of the table
+     * @param keys The record keys of the records to delete.
+     * @return Zero on success, a non-zero error code on error or if a record was not found.
+     */
+    @Override
+    public int batchDelete(String table, List<String> keys) {
+        com.mongodb.DB db = null;
+        try {
+            db = mongo.getDB(database);
+            db.requestStart();
+            DBCollection collection = db.getCollection(table);
+            DBObject q = new BasicDBObject().append("_id",
+                    new BasicDBObject().append("$in", keys));
+            WriteResult res = collection.remove(q, writeConcern);
+            return res.getN() == new HashSet<String>(keys).size() ? 0 : 1;
+        }
+        catch (Exception e) {
+            System.err.println(e.toString());
+            return 1;
+        }
+        finally {
+            if (db != null) {
+                db.requestDone();
+            }
+        }
+    }
+
     /**
      * TODO - Finish
      * 